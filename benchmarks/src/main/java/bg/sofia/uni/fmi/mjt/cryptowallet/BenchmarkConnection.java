@@ -0,0 +1,54 @@
+package bg.sofia.uni.fmi.mjt.cryptowallet;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * A loopback client connection registered with a {@link CryptoServer} that has no users or journal files,
+ * with a logged in user holding the given number of cryptocurrencies.
+ */
+final class BenchmarkConnection implements AutoCloseable {
+
+    static final String USERNAME = "bench";
+    static final int OFFERINGS = 500;
+    private static final String HOST = "localhost";
+
+    final CryptoServer server;
+    final SocketChannel client;
+    final Selector selector;
+    final SelectionKey key;
+    private final ServerSocketChannel listener;
+
+    BenchmarkConnection(int holdings) throws IOException {
+        server = new CryptoServer();
+        server.setCryptocurrencies(BenchmarkData.cryptocurrencies(OFFERINGS));
+
+        listener = ServerSocketChannel.open().bind(new InetSocketAddress(HOST, 0));
+        client = SocketChannel.open(listener.getLocalAddress());
+        SocketChannel accepted = listener.accept();
+        accepted.configureBlocking(false);
+        selector = Selector.open();
+        key = accepted.register(selector, SelectionKey.OP_READ,
+                server.newClientSession(new ConcurrentLinkedQueue<>()));
+
+        server.executeRequest("register " + USERNAME + " " + USERNAME, key);
+        server.executeRequest("login " + USERNAME + " " + USERNAME, key);
+        server.executeRequest("deposit-money " + Double.MAX_VALUE / 2, key);
+        for (int i = 0; i < holdings; i++) {
+            server.executeRequest("buy " + BenchmarkData.assetID(i) + " 10", key);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        client.close();
+        key.channel().close();
+        selector.close();
+        listener.close();
+    }
+}
@@ -0,0 +1,56 @@
+package bg.sofia.uni.fmi.mjt.cryptowallet;
+
+import bg.sofia.uni.fmi.mjt.cryptowallet.coinapi.dto.CryptoInformation;
+import bg.sofia.uni.fmi.mjt.cryptowallet.coinapi.dto.Cryptocurrencies;
+import bg.sofia.uni.fmi.mjt.cryptowallet.exception.InsufficientAvailabilityException;
+import bg.sofia.uni.fmi.mjt.cryptowallet.user.User;
+
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+final class BenchmarkData {
+
+    private static final double BASE_PRICE = 100.0;
+    private static final double INVESTMENT = 10.0;
+    private static final String LAST_UPDATE = "2999-01-01T00:00:00";
+
+    private BenchmarkData() {
+    }
+
+    static String assetID(int index) {
+        return "A" + index;
+    }
+
+    static CryptoInformation crypto(int index) {
+        return new CryptoInformation(assetID(index), "Asset " + index, 1, BASE_PRICE + index);
+    }
+
+    static Cryptocurrencies cryptocurrencies(int assets) {
+        Set<CryptoInformation> offerings = new LinkedHashSet<>();
+        for (int i = 0; i < assets; i++) {
+            offerings.add(crypto(i));
+        }
+        return new Cryptocurrencies(offerings, LAST_UPDATE);
+    }
+
+    static User user(String username, int holdings) {
+        User user = new User(username, username);
+        user.depositMoney(INVESTMENT * (holdings + 1));
+        try {
+            for (int i = 0; i < holdings; i++) {
+                user.buyCrypto(crypto(i), INVESTMENT);
+            }
+        } catch (InsufficientAvailabilityException e) {
+            throw new IllegalStateException(e);
+        }
+        return user;
+    }
+
+    static Set<User> users(int count, int holdings) {
+        Set<User> users = new LinkedHashSet<>();
+        for (int i = 0; i < count; i++) {
+            users.add(user("user" + i, holdings));
+        }
+        return users;
+    }
+}
@@ -0,0 +1,94 @@
+package bg.sofia.uni.fmi.mjt.cryptowallet;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Every command dispatched by {@link CryptoServer} for a logged in user holding {@code holdings} cryptocurrencies.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CommandBenchmark {
+
+    private static final String LOGIN = "login " + BenchmarkConnection.USERNAME + " " + BenchmarkConnection.USERNAME;
+    private static final String TRADED_ASSET = BenchmarkData.assetID(BenchmarkConnection.OFFERINGS - 1);
+
+    @Param({"1", "10", "100"})
+    private int holdings;
+
+    private BenchmarkConnection connection;
+    private int registrations;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        connection = new BenchmarkConnection(holdings);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        connection.close();
+    }
+
+    private String execute(String request) throws IOException {
+        return connection.server.executeRequest(request, connection.key);
+    }
+
+    @Benchmark
+    public String executeRegister() throws IOException {
+        return execute("register user" + registrations++ + " password");
+    }
+
+    @Benchmark
+    public String executeLogin() throws IOException {
+        return execute(LOGIN);
+    }
+
+    @Benchmark
+    public String executeListOfferings() throws IOException {
+        return execute("list-offerings");
+    }
+
+    @Benchmark
+    public String executeDeposit() throws IOException {
+        return execute("deposit-money 1");
+    }
+
+    @Benchmark
+    public String executeBuyAndSell() throws IOException {
+        execute("buy " + TRADED_ASSET + " 10");
+        return execute("sell " + TRADED_ASSET);
+    }
+
+    @Benchmark
+    public String executeWalletSummary() throws IOException {
+        return execute("get-wallet-summary");
+    }
+
+    @Benchmark
+    public String executeWalletOverallSummary() throws IOException {
+        return execute("get-wallet-overall-summary");
+    }
+
+    @Benchmark
+    public String executeUnknownCommand() throws IOException {
+        return execute("unknown-command");
+    }
+}
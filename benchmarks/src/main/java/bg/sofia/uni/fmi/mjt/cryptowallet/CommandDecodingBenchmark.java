@@ -0,0 +1,55 @@
+package bg.sofia.uni.fmi.mjt.cryptowallet;
+
+import bg.sofia.uni.fmi.mjt.cryptowallet.command.Command;
+import bg.sofia.uni.fmi.mjt.cryptowallet.command.CommandDecoder;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Decoding a request in place with {@link CommandDecoder} against copying it into a String and splitting it.
+ * Run with {@code -prof gc} to compare the allocation per request.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CommandDecodingBenchmark {
+
+    @Param({"buy BTC 12.5", "deposit-money 1000", "get-wallet-summary"})
+    private String request;
+
+    private byte[] requestBytes;
+    private final Command command = new Command();
+
+    @Setup
+    public void setUp() {
+        requestBytes = request.getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Benchmark
+    public double decodeInPlace() {
+        CommandDecoder.decode(requestBytes, 0, requestBytes.length, command);
+        int lastArgument = command.argumentsCount() - 1;
+        return lastArgument < 0 ? command.type().ordinal() : command.numberArgument(lastArgument);
+    }
+
+    @Benchmark
+    public double splitString() {
+        String[] words = new String(requestBytes, 0, requestBytes.length, StandardCharsets.UTF_8).strip().split(" ");
+        return words.length == 1 ? words[0].length() : Double.parseDouble(words[words.length - 1]);
+    }
+}
@@ -0,0 +1,86 @@
+package bg.sofia.uni.fmi.mjt.cryptowallet;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A full round trip through the readable key handling of {@link CryptoServer}: reading the socket,
+ * framing {@code pipelinedRequests} requests, executing them and writing the responses back.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RequestReadingBenchmark {
+
+    private static final String REQUEST = "deposit-money 1" + System.lineSeparator();
+    private static final int RESPONSE_BUFFER_SIZE = 64 * 1024;
+
+    @Param({"1", "16", "128"})
+    private int pipelinedRequests;
+
+    private BenchmarkConnection connection;
+    private ByteBuffer requests;
+    private ByteBuffer responses;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        connection = new BenchmarkConnection(0);
+        connection.client.configureBlocking(false);
+        requests = ByteBuffer.wrap(REQUEST.repeat(pipelinedRequests).getBytes(StandardCharsets.UTF_8));
+        responses = ByteBuffer.allocate(RESPONSE_BUFFER_SIZE);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        connection.close();
+    }
+
+    @Benchmark
+    public int readRequests() throws IOException {
+        requests.rewind();
+        int received = 0;
+        while (received < pipelinedRequests) {
+            if (requests.hasRemaining()) {
+                connection.client.write(requests);
+            }
+            if (connection.selector.selectNow() > 0) {
+                connection.selector.selectedKeys().clear();
+                connection.server.handleClientKey(connection.key);
+            }
+            received += readResponses();
+        }
+        return received;
+    }
+
+    private int readResponses() throws IOException {
+        responses.clear();
+        connection.client.read(responses);
+
+        int received = 0;
+        for (int i = 0; i < responses.position(); i++) {
+            if (responses.get(i) == '\n') {
+                received++;
+            }
+        }
+        return received;
+    }
+}
@@ -0,0 +1,67 @@
+package bg.sofia.uni.fmi.mjt.cryptowallet;
+
+import bg.sofia.uni.fmi.mjt.cryptowallet.coinapi.dto.CryptoInformation;
+import bg.sofia.uni.fmi.mjt.cryptowallet.coinapi.dto.Cryptocurrencies;
+import bg.sofia.uni.fmi.mjt.cryptowallet.exception.InsufficientAvailabilityException;
+import bg.sofia.uni.fmi.mjt.cryptowallet.exception.InvalidSellingException;
+import bg.sofia.uni.fmi.mjt.cryptowallet.user.User;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Wallet operations of a single user holding {@code holdings} different cryptocurrencies.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class UserBenchmark {
+
+    private static final double INVESTMENT = 10.0;
+
+    @Param({"1", "10", "100", "1000"})
+    private int holdings;
+
+    private User user;
+    private Cryptocurrencies cryptocurrencies;
+    private CryptoInformation traded;
+
+    @Setup(Level.Iteration)
+    public void setUp() {
+        user = BenchmarkData.user("bench", holdings);
+        user.depositMoney(Double.MAX_VALUE / 2);
+        cryptocurrencies = BenchmarkData.cryptocurrencies(holdings + 1);
+        traded = BenchmarkData.crypto(holdings);
+    }
+
+    @Benchmark
+    public User buyAndSell() throws InsufficientAvailabilityException, InvalidSellingException {
+        user.buyCrypto(traded, INVESTMENT);
+        user.sellCrypto(traded);
+        return user;
+    }
+
+    @Benchmark
+    public StringBuilder walletSummary() {
+        return user.getWalletSummary();
+    }
+
+    @Benchmark
+    public StringBuilder walletOverallSummary() {
+        return user.getWalletOverall(cryptocurrencies);
+    }
+}
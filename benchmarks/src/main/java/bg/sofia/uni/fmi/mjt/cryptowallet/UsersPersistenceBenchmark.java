@@ -0,0 +1,93 @@
+package bg.sofia.uni.fmi.mjt.cryptowallet;
+
+import bg.sofia.uni.fmi.mjt.cryptowallet.snapshot.BinaryUsersSnapshot;
+import bg.sofia.uni.fmi.mjt.cryptowallet.snapshot.JsonUsersSnapshot;
+import bg.sofia.uni.fmi.mjt.cryptowallet.user.User;
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.reflect.TypeToken;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.Writer;
+import java.lang.reflect.Type;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Loading and saving all registered users, the way the server does it on startup and on every full save.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = {"-Xms6g", "-Xmx6g"})
+public class UsersPersistenceBenchmark {
+
+    private static final int HOLDINGS_PER_USER = 5;
+
+    @Param({"1000", "100000", "1000000"})
+    private int users;
+
+    private final Gson gson = new GsonBuilder().excludeFieldsWithoutExposeAnnotation().create();
+    private final Type usersType = new TypeToken<Set<User>>() {
+    }.getType();
+    private Set<User> registeredUsers;
+    private String usersJson;
+    private byte[] usersBinary;
+
+    @Setup
+    public void setUp() {
+        registeredUsers = BenchmarkData.users(users, HOLDINGS_PER_USER);
+        usersJson = gson.toJson(registeredUsers);
+        usersBinary = BinaryUsersSnapshot.encode(registeredUsers);
+    }
+
+    @Benchmark
+    public Writer saveJson() {
+        Writer writer = Writer.nullWriter();
+        gson.toJson(registeredUsers, usersType, writer);
+        return writer;
+    }
+
+    @Benchmark
+    public Set<User> loadJson() {
+        return gson.fromJson(new StringReader(usersJson), usersType);
+    }
+
+    @Benchmark
+    public Writer saveStreamingJson() throws IOException {
+        Writer writer = Writer.nullWriter();
+        JsonUsersSnapshot.write(writer, registeredUsers);
+        return writer;
+    }
+
+    @Benchmark
+    public List<User> loadStreamingJson() throws IOException {
+        return JsonUsersSnapshot.read(new StringReader(usersJson));
+    }
+
+    @Benchmark
+    public byte[] saveBinary() {
+        return BinaryUsersSnapshot.encode(registeredUsers);
+    }
+
+    @Benchmark
+    public List<User> loadBinary() throws IOException {
+        return BinaryUsersSnapshot.decode(ByteBuffer.wrap(usersBinary));
+    }
+}
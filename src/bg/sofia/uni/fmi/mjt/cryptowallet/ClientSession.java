@@ -0,0 +1,342 @@
+package bg.sofia.uni.fmi.mjt.cryptowallet;
+
+import bg.sofia.uni.fmi.mjt.cryptowallet.command.BinaryCommandDecoder;
+import bg.sofia.uni.fmi.mjt.cryptowallet.command.Command;
+import bg.sofia.uni.fmi.mjt.cryptowallet.command.CommandDecoder;
+import bg.sofia.uni.fmi.mjt.cryptowallet.protocol.AssetIds;
+import bg.sofia.uni.fmi.mjt.cryptowallet.protocol.BinaryProtocol;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The buffers and the request queues of one connection. The protocol of the connection is negotiated by its
+ * first bytes: the {@link BinaryProtocol#HANDSHAKE} selects length-prefixed binary frames and anything else
+ * newline-delimited text.
+ */
+class ClientSession {
+
+    private static final byte NEW_LINE = '\n';
+    private static final int MAX_GATHERED_BUFFERS = 16;
+    private static final int MAX_QUEUED_REQUESTS = 64;
+    private final ByteBuffer readBuffer;
+    private final Command command = new Command();
+    private final Deque<ByteBuffer> pendingResponses;
+    private final ByteBuffer[] gatheredResponses = new ByteBuffer[MAX_GATHERED_BUFFERS];
+    private final int maxPendingBytes;
+    private int pendingBytes;
+    private final Queue<SelectionKey> completedKeys;
+    private final Queue<byte[]> queuedRequests;
+    private final AtomicInteger queuedRequestsCount;
+    private final Queue<ByteBuffer> completedResponses;
+    private final AtomicBoolean isExecuting;
+    private final AssetIds assetIds;
+    private volatile boolean isFailed;
+    private volatile boolean isReadingPaused;
+    private boolean isNegotiated;
+    private volatile boolean isBinary;
+    private int consumedBytes;
+    private int scannedBytes;
+    private int requestStart;
+    private int requestEnd;
+
+    ClientSession(int bufferSize, int maxPendingBytes, Queue<SelectionKey> completedKeys, AssetIds assetIds) {
+        this.readBuffer = ByteBuffer.allocate(bufferSize);
+        this.assetIds = assetIds;
+        this.pendingResponses = new ArrayDeque<>();
+        this.maxPendingBytes = maxPendingBytes;
+        this.completedKeys = completedKeys;
+        this.queuedRequests = new ConcurrentLinkedQueue<>();
+        this.queuedRequestsCount = new AtomicInteger();
+        this.completedResponses = new ConcurrentLinkedQueue<>();
+        this.isExecuting = new AtomicBoolean();
+    }
+
+    int readFrom(SocketChannel channel) throws IOException {
+        return channel.read(readBuffer);
+    }
+
+    /**
+     * Returns a copy of the next complete request, or null when only a partial request is buffered.
+     * The partial request is kept and completed by the following reads.
+     */
+    byte[] nextRequest() {
+        if (!findNextRequest()) {
+            return null;
+        }
+
+        byte[] request = Arrays.copyOfRange(readBuffer.array(), requestStart, requestEnd);
+        consumeRequest();
+        return request;
+    }
+
+    /**
+     * Decodes the next complete request in place into the command of this session without copying it.
+     * The command refers to the read buffer, so it has to be executed before the next call.
+     * @return the decoded command, or null when only a partial request is buffered
+     */
+    Command nextCommand() {
+        if (!findNextRequest()) {
+            return null;
+        }
+
+        decode(readBuffer.array(), requestStart, requestEnd, command);
+        consumeRequest();
+        return command;
+    }
+
+    /**
+     * Decodes a request returned by {@link #nextRequest()} into a new command.
+     */
+    Command decode(byte[] request) {
+        return decode(request, 0, request.length, new Command());
+    }
+
+    private Command decode(byte[] source, int from, int to, Command into) {
+        return isBinary ? BinaryCommandDecoder.decode(source, from, to, assetIds, into)
+                : CommandDecoder.decode(source, from, to, into);
+    }
+
+    boolean isBinary() {
+        return isBinary;
+    }
+
+    private boolean findNextRequest() {
+        if (!isNegotiated && !negotiate()) {
+            return false;
+        }
+        return isBinary ? findNextFrame() : findNextLine();
+    }
+
+    /**
+     * Selects the protocol by the first bytes of the connection and answers the binary handshake.
+     * @return false if more bytes are needed to decide
+     */
+    private boolean negotiate() {
+        byte[] handshake = BinaryProtocol.HANDSHAKE;
+        int available = readBuffer.position();
+        if (available == 0 || (readBuffer.get(0) == handshake[0] && available < handshake.length)) {
+            return false;
+        }
+
+        isNegotiated = true;
+        if (Arrays.equals(readBuffer.array(), 0, handshake.length, handshake, 0, handshake.length)) {
+            isBinary = true;
+            consumedBytes = handshake.length;
+            scannedBytes = consumedBytes;
+            queueResponse(ByteBuffer.wrap(handshake.clone()));
+        }
+        return true;
+    }
+
+    private boolean findNextLine() {
+        for (int i = Math.max(scannedBytes, consumedBytes); i < readBuffer.position(); i++) {
+            if (readBuffer.get(i) == NEW_LINE) {
+                requestStart = consumedBytes;
+                requestEnd = i;
+                return true;
+            }
+        }
+
+        scannedBytes = readBuffer.position();
+        compactReadBuffer();
+        return false;
+    }
+
+    private boolean findNextFrame() {
+        int available = readBuffer.position() - consumedBytes;
+        if (available >= BinaryProtocol.REQUEST_HEADER_BYTES) {
+            int length = Short.toUnsignedInt(readBuffer.getShort(consumedBytes));
+            if (available >= BinaryProtocol.REQUEST_HEADER_BYTES + length) {
+                requestStart = consumedBytes + BinaryProtocol.REQUEST_HEADER_BYTES;
+                requestEnd = requestStart + length;
+                return true;
+            }
+            if (BinaryProtocol.REQUEST_HEADER_BYTES + length > readBuffer.capacity()) {
+                isFailed = true;
+                return false;
+            }
+        }
+
+        compactReadBuffer();
+        return false;
+    }
+
+    private void consumeRequest() {
+        consumedBytes = isBinary ? requestEnd : requestEnd + 1;
+        scannedBytes = consumedBytes;
+    }
+
+    /**
+     * Drops the buffered bytes if they fill the whole buffer without a newline. A binary frame which does not
+     * fit in the buffer cannot be skipped, so it fails the session instead.
+     * @return true if the request was too long and has been discarded
+     */
+    boolean discardIfOverflown() {
+        if (isBinary || readBuffer.hasRemaining()) {
+            return false;
+        }
+
+        readBuffer.clear();
+        consumedBytes = 0;
+        scannedBytes = 0;
+        return true;
+    }
+
+    private void compactReadBuffer() {
+        if (consumedBytes == 0) {
+            return;
+        }
+
+        readBuffer.flip();
+        readBuffer.position(consumedBytes);
+        readBuffer.compact();
+        scannedBytes -= consumedBytes;
+        consumedBytes = 0;
+    }
+
+    /**
+     * Adds the remaining bytes of the buffer to the outbound queue. The buffer is written as it is,
+     * so a shared response has to be passed as a duplicate.
+     * @return false if the response would exceed the pending bytes limit of the connection
+     */
+    boolean queueResponse(ByteBuffer response) {
+        if (pendingBytes + response.remaining() > maxPendingBytes) {
+            return false;
+        }
+
+        pendingBytes += response.remaining();
+        pendingResponses.add(response);
+        return true;
+    }
+
+    /**
+     * Writes as much of the outbound queue as the socket accepts without blocking. A single response is
+     * written directly and several are gathered through an array owned by the session, so no write allocates.
+     * @return true if the whole queue has been written
+     */
+    boolean flush(SocketChannel channel) throws IOException {
+        while (!pendingResponses.isEmpty()) {
+            long written = pendingResponses.size() == 1 ? channel.write(pendingResponses.peek())
+                    : gatherWrite(channel);
+            pendingBytes -= (int) written;
+            while (!pendingResponses.isEmpty() && !pendingResponses.peek().hasRemaining()) {
+                pendingResponses.poll();
+            }
+
+            if (written == 0) {
+                break;
+            }
+        }
+
+        return pendingResponses.isEmpty();
+    }
+
+    private long gatherWrite(SocketChannel channel) throws IOException {
+        int count = 0;
+        for (var response : pendingResponses) {
+            if (count == gatheredResponses.length) {
+                break;
+            }
+            gatheredResponses[count++] = response;
+        }
+
+        try {
+            return channel.write(gatheredResponses, 0, count);
+        } finally {
+            // the written responses are not kept alive by the array
+            Arrays.fill(gatheredResponses, 0, count, null);
+        }
+    }
+
+    int getPendingBytes() {
+        return pendingBytes;
+    }
+
+    void addRequest(byte[] request) {
+        queuedRequests.add(request);
+        queuedRequestsCount.incrementAndGet();
+    }
+
+    byte[] pollRequest() {
+        byte[] request = queuedRequests.poll();
+        if (request != null) {
+            queuedRequestsCount.decrementAndGet();
+        }
+        return request;
+    }
+
+    /**
+     * @return true if the connection has as many requests waiting for execution as it may have, so the reactor
+     * has to stop reading it until they are executed
+     */
+    boolean isRequestsQueueFull() {
+        return queuedRequestsCount.get() >= MAX_QUEUED_REQUESTS;
+    }
+
+    void pauseReading() {
+        isReadingPaused = true;
+    }
+
+    void resumeReading() {
+        isReadingPaused = false;
+    }
+
+    boolean isReadingPaused() {
+        return isReadingPaused;
+    }
+
+    /**
+     * Claims the right to execute the queued requests, so that requests of one connection run one at a time.
+     * @return true if no other thread is executing requests of this connection
+     */
+    boolean startExecuting() {
+        return !queuedRequests.isEmpty() && isExecuting.compareAndSet(false, true);
+    }
+
+    void stopExecuting() {
+        isExecuting.set(false);
+    }
+
+    /**
+     * Hands a response produced off the selector thread back to the reactor that owns the connection.
+     */
+    void complete(SelectionKey key, ByteBuffer response) {
+        completedResponses.add(response);
+        wakeUp(key);
+    }
+
+    void fail(SelectionKey key) {
+        isFailed = true;
+        wakeUp(key);
+    }
+
+    /**
+     * Hands the connection back to its reactor, e.g. to resume reading once the queued requests are executed.
+     */
+    void wakeUp(SelectionKey key) {
+        completedKeys.add(key);
+        key.selector().wakeup();
+    }
+
+    ByteBuffer pollResponse() {
+        return completedResponses.poll();
+    }
+
+    /**
+     * @return true if the connection has to be closed, because a command failed off the selector thread
+     * or a binary frame was too long
+     */
+    boolean isFailed() {
+        return isFailed;
+    }
+}
@@ -6,6 +6,8 @@ import java.io.PrintWriter;
 import java.net.InetSocketAddress;
 import java.nio.channels.Channels;
 import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Scanner;
 
 public class CryptoClient {
@@ -16,6 +18,10 @@ public class CryptoClient {
     private static final String LIST_OFFERINGS = "list-offerings";
     private static final String SUMMARY = "get-wallet-summary";
     private static final String SUMMARY_OVERALL = "get-wallet-overall-summary";
+    private static final String STATS = "stats";
+    private static final String BATCH = "batch";
+    private static final String PIPELINE_SEPARATOR = ";";
+    private static final String BATCH_SEPARATOR = "; ";
     private static final String INVALID_LOGGING = "You have not logged to your profile";
     private static final String SPACE = " ";
     private static final String HELP = "help";
@@ -23,9 +29,13 @@ public class CryptoClient {
 
     public static String formatStringOutput(String message, String serverAnswer) {
 
+        if (message.startsWith(BATCH)) {
+            return serverAnswer.replace(BATCH_SEPARATOR, System.lineSeparator());
+        }
         if (message.equals(LIST_OFFERINGS) ||
                 (message.equals(SUMMARY) && !serverAnswer.equals(INVALID_LOGGING)) ||
-                (message.equals(SUMMARY_OVERALL) && !serverAnswer.equals(INVALID_LOGGING))) {
+                (message.equals(SUMMARY_OVERALL) && !serverAnswer.equals(INVALID_LOGGING)) ||
+                (message.equals(STATS) && !serverAnswer.equals(INVALID_LOGGING))) {
 
             return serverAnswer.replace(SPACE , System.lineSeparator());
         }
@@ -51,11 +61,58 @@ public class CryptoClient {
         builder.append(System.lineSeparator());
         builder.append("Write: get-wallet-overall-summary to see the profit/loss of your investments");
         builder.append(System.lineSeparator());
+        builder.append("Write: stats to see the statistics of the server, if you are an administrator");
+        builder.append(System.lineSeparator());
+        builder.append("Write: batch and several of deposit-money, buy, sell and the summaries separated by ; "
+                + "to run them at once");
+        builder.append(System.lineSeparator());
+        builder.append("Write: several commands separated by ; to send them without waiting for each response");
+        builder.append(System.lineSeparator());
         builder.append("Write: disconnect to save your current activity and disconnect from the server");
 
         return builder;
     }
 
+    /**
+     * Sends all requests without waiting for their responses and then reads the responses, which the server
+     * returns in the order of the requests, so the whole list costs a single round trip.
+     * The server closes connections which let too many responses pile up, so long scripts should be
+     * sent in parts.
+     */
+    public static List<String> sendPipelined(PrintWriter writer, BufferedReader reader, List<String> requests)
+            throws IOException {
+        StringBuilder builder = new StringBuilder();
+        for (var request : requests) {
+            builder.append(request).append(System.lineSeparator());
+        }
+        writer.print(builder);
+        writer.flush();
+
+        List<String> replies = new ArrayList<>();
+        for (int i = 0; i < requests.size(); i++) {
+            String reply = reader.readLine();
+            if (reply == null) {
+                throw new IOException("The server closed the connection");
+            }
+            replies.add(reply);
+        }
+        return replies;
+    }
+
+    private static List<String> splitPipeline(String message) {
+        if (message.startsWith(BATCH)) {
+            return List.of(message);
+        }
+
+        List<String> requests = new ArrayList<>();
+        for (var request : message.split(PIPELINE_SEPARATOR)) {
+            if (!request.isBlank()) {
+                requests.add(request.strip());
+            }
+        }
+        return requests;
+    }
+
     public static void main(String[] args) throws IOException {
         try (SocketChannel socketChannel = SocketChannel.open();
              BufferedReader reader = new BufferedReader(Channels.newReader(socketChannel, CS_NAME));
@@ -75,17 +132,27 @@ public class CryptoClient {
                     continue;
                 }
 
-                writer.println(message);
-                String reply = reader.readLine();
+                List<String> requests = splitPipeline(message);
+                List<String> replies = sendPipelined(writer, reader, requests);
+                boolean isDisconnected = false;
+                for (int i = 0; i < replies.size(); i++) {
+                    String request = requests.get(i);
+                    String reply = replies.get(i);
+                    if (reply.equals(EXIT)) {
+                        isDisconnected = true;
+                        break;
+                    }
+                    if (request.equals(LIST_OFFERINGS) || request.equals(SUMMARY) || request.equals(SUMMARY_OVERALL)
+                            || request.equals(STATS) || request.startsWith(BATCH)) {
+                        reply = formatStringOutput(request, reply);
+                    }
 
-                if (reply.equals(EXIT)) {
-                    break;
+                    System.out.println("The server replied: " + System.lineSeparator() + reply
+                            + System.lineSeparator());
                 }
-                if (message.equals(LIST_OFFERINGS) || message.equals(SUMMARY) || message.equals(SUMMARY_OVERALL)) {
-                    reply = formatStringOutput(message, reply);
+                if (isDisconnected) {
+                    break;
                 }
-
-                System.out.println("The server replied: " + System.lineSeparator() + reply + System.lineSeparator());
             }
         } catch (IOException e) {
             saver.saveErrorInfoToFile(e);
@@ -1,13 +1,35 @@
 package bg.sofia.uni.fmi.mjt.cryptowallet;
 
+import bg.sofia.uni.fmi.mjt.cryptowallet.coinapi.CryptocurrenciesRefresher;
+import bg.sofia.uni.fmi.mjt.cryptowallet.coinapi.StubCoinApi;
 import bg.sofia.uni.fmi.mjt.cryptowallet.coinapi.dto.CryptoInformation;
 import bg.sofia.uni.fmi.mjt.cryptowallet.coinapi.dto.Cryptocurrencies;
+import bg.sofia.uni.fmi.mjt.cryptowallet.command.Command;
+import bg.sofia.uni.fmi.mjt.cryptowallet.command.CommandDecoder;
+import bg.sofia.uni.fmi.mjt.cryptowallet.command.CommandType;
 import bg.sofia.uni.fmi.mjt.cryptowallet.exception.InsufficientAvailabilityException;
 import bg.sofia.uni.fmi.mjt.cryptowallet.exception.InvalidSellingException;
+import bg.sofia.uni.fmi.mjt.cryptowallet.journal.FsyncPolicy;
+import bg.sofia.uni.fmi.mjt.cryptowallet.journal.JournalEvent;
+import bg.sofia.uni.fmi.mjt.cryptowallet.journal.SnapshotWriter;
+import bg.sofia.uni.fmi.mjt.cryptowallet.journal.WalletJournal;
+import bg.sofia.uni.fmi.mjt.cryptowallet.logging.AccessLog;
+import bg.sofia.uni.fmi.mjt.cryptowallet.logging.LogLevel;
+import bg.sofia.uni.fmi.mjt.cryptowallet.metrics.LatencyHistogram;
+import bg.sofia.uni.fmi.mjt.cryptowallet.metrics.MetricsRegistry;
+import bg.sofia.uni.fmi.mjt.cryptowallet.protocol.AssetIds;
+import bg.sofia.uni.fmi.mjt.cryptowallet.protocol.BinaryProtocol;
+import bg.sofia.uni.fmi.mjt.cryptowallet.snapshot.BinaryUsersSnapshot;
+import bg.sofia.uni.fmi.mjt.cryptowallet.snapshot.JsonUsersSnapshot;
+import bg.sofia.uni.fmi.mjt.cryptowallet.storage.CachingUserRegistry;
+import bg.sofia.uni.fmi.mjt.cryptowallet.storage.JsonFileUserRepository;
+import bg.sofia.uni.fmi.mjt.cryptowallet.storage.LsmUserRepository;
+import bg.sofia.uni.fmi.mjt.cryptowallet.storage.ShardedUserStore;
+import bg.sofia.uni.fmi.mjt.cryptowallet.storage.UserRepository;
 import bg.sofia.uni.fmi.mjt.cryptowallet.user.User;
+import bg.sofia.uni.fmi.mjt.cryptowallet.user.UserLocks;
+import bg.sofia.uni.fmi.mjt.cryptowallet.user.UserRegistry;
 import com.google.gson.Gson;
-import com.google.gson.GsonBuilder;
-import com.google.gson.reflect.TypeToken;
 
 import java.io.File;
 import java.io.FileReader;
@@ -21,86 +43,239 @@ import java.nio.channels.Selector;
 import java.nio.channels.ServerSocketChannel;
 import java.nio.channels.SocketChannel;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.time.Duration;
 import java.time.LocalDateTime;
+import java.time.ZoneId;
 import java.time.format.DateTimeFormatter;
-import java.util.HashMap;
+import java.time.format.DateTimeParseException;
+import java.util.Arrays;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
+import java.util.Queue;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Lock;
 
 public class CryptoServer {
     public static final int SERVER_PORT = 7777;
     private static final String SERVER_HOST = "localhost";
     private static final int BUFFER_SIZE = 10000;
+    private static final int DEFAULT_MAX_PENDING_BYTES = 1024 * 1024;
     private static final String CRYPTO_INFO_FILE = "CryptoInformation.txt";
     private static final String USERS_INFO_FILE = "UsersInformation.txt";
-    private static final String TIME_FORMAT = "yyyy-MM-dd HH:mm:ss";
+    private static final String USERS_BINARY_FILE = "UsersInformation.bin";
+    private static final String JOURNAL_DIRECTORY = "WalletJournal";
+    private static final String USER_SHARDS_DIRECTORY = "UserShards";
+    private static final String USER_STORE_DIRECTORY = "UserStore";
+    private static final String ACCESS_LOG_FILE = "AccessLog.txt";
     private static final String SPACE = " ";
     private static final String ID = "ID:";
     private static final String PRICE = "Price:";
     private static final String NAME = "Name:";
-    private static final String REGISTER = "register";
     private static final String INVALID_USERNAME = "Invalid username, choose another one";
     private static final String SUCCESSFUL_REGISTRATION = "User registered successfully";
     private static final String INVALID_LOGGING = "Invalid logging";
     private static final String NOT_LOGGED = "You have not logged to your profile";
     private static final String INVALID_INPUT = "User's input is invalid, check the help menu";
     private static final String UNAVAILABLE_CRYPTO = "This cryptocurrency is unavailable at the moment";
-    private static final String LOGIN = "login";
+    private static final String UNAVAILABLE_OFFERINGS = "The cryptocurrencies are unavailable at the moment";
     private static final String SUCCESSFUL_LOGIN = "User logged successfully";
-    private static final String LIST_OFFERINGS = "list-offerings";
     private static final String DEPOSIT = "deposit-money";
     private static final String SUCCESSFUL_DEPOSIT = "Money are deposit successfully";
     private static final String BUY = "buy";
     private static final String SUCCESSFUL_BUY = "You successfully bought ";
     private static final String SELL = "sell";
     private static final String SUCCESSFUL_SELL = "You successfully sold ";
-    private static final String SUMMARY = "get-wallet-summary";
-    private static final String SUMMARY_OVERALL = "get-wallet-overall-summary";
     private static final String DISCONNECT = "disconnect";
+    private static final String NOT_ADMIN = "Only administrators can see the statistics";
+    private static final String NOT_IN_BATCH = "This command cannot be part of a batch";
+    private static final String BATCH_SEPARATOR = "; ";
     private static final String UNKNOWN_COMMAND = "Unknown command";
+    private static final String TOO_LONG_REQUEST = "Request is too long";
     private static final int VALID_MINUTES = 30;
-    private static final int INPUT_LENGTH = 3;
+    private static final String WORKER_REACTORS_PROPERTY = "cryptowallet.reactors";
+    private static final String MAX_PENDING_BYTES_PROPERTY = "cryptowallet.maxPendingBytes";
+    private static final String OFFLOAD_COMMANDS_PROPERTY = "cryptowallet.offloadCommands";
+    private static final String JOURNAL_FSYNC_PROPERTY = "cryptowallet.journal.fsync";
+    private static final String JOURNAL_FSYNC_INTERVAL_PROPERTY = "cryptowallet.journal.fsyncIntervalMillis";
+    private static final String JOURNAL_COMPACTION_PROPERTY = "cryptowallet.journal.compactionMinutes";
+    private static final String BINARY_SNAPSHOT_PROPERTY = "cryptowallet.binarySnapshot";
+    private static final String USER_SHARDS_PROPERTY = "cryptowallet.userShards";
+    private static final String USER_SHARDS_FLUSH_PROPERTY = "cryptowallet.userShards.flushMillis";
+    private static final String KEY_VALUE_STORE_PROPERTY = "cryptowallet.keyValueStore";
+    private static final String MEMTABLE_BYTES_PROPERTY = "cryptowallet.keyValueStore.memtableBytes";
+    private static final String CACHED_USERS_PROPERTY = "cryptowallet.cachedUsers";
+    private static final String STUB_PRICES_PROPERTY = "cryptowallet.stubPrices";
+    private static final String ADMINS_PROPERTY = "cryptowallet.admins";
+    private static final String METRICS_DUMP_PROPERTY = "cryptowallet.metrics.dumpSeconds";
+    private static final String ACCESS_LOG_LEVEL_PROPERTY = "cryptowallet.accessLog.level";
+    private static final String ACCESS_LOG_SAMPLE_PROPERTY = "cryptowallet.accessLog.sampleRate";
+    private static final String ADMINS_SEPARATOR = ",";
+    private static final String METRICS_FILE = "Metrics.txt";
+    private static final String TIME_FORMAT = "yyyy-MM-dd HH:mm:ss";
+    private static final String COMMAND_METRIC = "command.";
+    private static final long PERCENT = 100;
+    private static final long DEFAULT_FSYNC_INTERVAL_MILLIS = 100;
+    private static final long DEFAULT_COMPACTION_MINUTES = 10;
+    private static final long DEFAULT_SHARDS_FLUSH_MILLIS = 1000;
+    private static final long DEFAULT_MEMTABLE_BYTES = 4 * 1024 * 1024;
+    private static final String WORKER_THREAD_NAME = "crypto-reactor-";
+    private static final int USER_LOCK_STRIPES = 64;
+    private static final int ALL_USERS = -1;
+    private static final long COMMANDS_TERMINATION_SECONDS = 30;
     private static final Gson GSON = new Gson();
     private final int port;
-    private final ByteBuffer messageBuffer;
     private Selector selector;
-    private boolean isStarted = true;
-    private Cryptocurrencies cryptocurrencies;
-    private Set<User> registeredUsers;
+    private volatile boolean isStarted = true;
+    private volatile Cryptocurrencies cryptocurrencies;
+    private int workerReactorsCount;
+    private WorkerReactor[] workerReactors;
+    private Thread[] workerThreads;
+    private int nextWorkerReactor;
+    private int maxPendingBytes = DEFAULT_MAX_PENDING_BYTES;
+    private final Queue<SelectionKey> completedKeys = new ConcurrentLinkedQueue<>();
+    private boolean offloadCommands;
+    private ExecutorService commandExecutor;
+    private UserRegistry registeredUsers;
     private Map<SocketChannel, User> userChannels;
+    private final UserLocks userLocks = new UserLocks(USER_LOCK_STRIPES);
+    private final Object usersFileLock = new Object();
     private SaveInformationToFiles saver;
+    private CryptocurrenciesRefresher refresher;
+    private WalletJournal journal;
+    private UserRepository userRepository;
+    private AccessLog accessLog;
+    private boolean binarySnapshot;
+    private boolean isUsersFilePending;
+    private int maxCachedUsers = ALL_USERS;
+    private volatile Set<String> admins = Set.of();
+    private volatile long cryptocurrenciesUpdateMillis;
+    private Duration metricsDumpInterval;
+    private final MetricsRegistry metrics = new MetricsRegistry();
+    private final LatencyHistogram[] commandLatencies = Arrays.stream(CommandType.values())
+            .map(type -> metrics.histogram(COMMAND_METRIC + type.verb()))
+            .toArray(LatencyHistogram[]::new);
+    private final LatencyHistogram selectorIterations = metrics.histogram("selector.iteration");
+    private final LatencyHistogram coinApiFetches = metrics.histogram("coinapi.fetch");
+    private final LatencyHistogram persistenceWrites = metrics.histogram("persistence.write");
+    private final LatencyHistogram journalAppends = metrics.histogram("journal.append");
+    private final LongAdder bytesIn = metrics.counter("network.bytesIn");
+    private final LongAdder bytesOut = metrics.counter("network.bytesOut");
+    private final LongAdder acceptedConnections = metrics.counter("connections.accepted");
+    private final LongAdder priceHits = metrics.counter("prices.hits");
+    private final LongAdder priceMisses = metrics.counter("prices.misses");
+    private final AssetIds assetIds = new AssetIds();
+    private volatile EncodedOfferings offerings;
+
+    /**
+     * The list-offerings response of one price snapshot with its UTF-8 bytes, including the line separator,
+     * and its binary protocol frame in read-only direct buffers. Every connection writes its own duplicate.
+     */
+    private record EncodedOfferings(Cryptocurrencies snapshot, String text, ByteBuffer payload,
+                                    ByteBuffer binaryPayload) {
+    }
 
     public CryptoServer(int port) throws IOException {
         this.port = port;
-        this.messageBuffer = ByteBuffer.allocate(BUFFER_SIZE);
-        userChannels = new HashMap<>();
+        userChannels = new ConcurrentHashMap<>();
         saver = new SaveInformationToFiles();
-        initializeUsers();
+        userRepository = new JsonFileUserRepository(Path.of(USERS_INFO_FILE), userLocks);
+        registeredUsers = new UserRegistry();
+        isUsersFilePending = true;
         readCryptocurrenciesInfoFromFile();
+        refresher = new CryptocurrenciesRefresher(this::fetchCryptocurrenciesFromApi,
+                this::publishCryptocurrencies, Duration.ofMinutes(VALID_MINUTES));
+        registerGauges();
+    }
+
+    /**
+     * Creates a server without users files which takes the cryptocurrencies from the given source instead of
+     * CoinAPI, e.g. a {@link StubCoinApi} for load tests.
+     */
+    public CryptoServer(int port, Callable<Cryptocurrencies> cryptocurrenciesSource) {
+        this.port = port;
+        userChannels = new ConcurrentHashMap<>();
+        registeredUsers = new UserRegistry();
+        Callable<Cryptocurrencies> timedSource = () -> {
+            long start = System.nanoTime();
+            try {
+                return cryptocurrenciesSource.call();
+            } finally {
+                coinApiFetches.record(System.nanoTime() - start);
+            }
+        };
+        try {
+            publishCryptocurrencies(timedSource.call());
+        } catch (Exception e) {
+            System.err.println("Could not load the cryptocurrencies: " + e.getMessage());
+        }
+        refresher = new CryptocurrenciesRefresher(timedSource, this::publishCryptocurrencies,
+                Duration.ofMinutes(VALID_MINUTES));
+        registerGauges();
     }
 
     public CryptoServer() {
         this.port = CryptoServer.SERVER_PORT;
-        this.messageBuffer = ByteBuffer.allocate(BUFFER_SIZE);
-        userChannels = new HashMap<>();
-        registeredUsers = new HashSet<>();
+        userChannels = new ConcurrentHashMap<>();
+        registeredUsers = new UserRegistry();
+        registerGauges();
+    }
+
+    private void registerGauges() {
+        metrics.gauge("connections.loggedIn", () -> userChannels.size());
+        metrics.gauge("users.registered", () -> registeredUsers.size());
+        if (saver != null) {
+            metrics.gauge("errors.dropped", saver::getDroppedErrors);
+        }
+        metrics.gauge("prices.ageSeconds", () -> cryptocurrencies == null ? -1
+                : (System.currentTimeMillis() - cryptocurrenciesUpdateMillis) / Duration.ofSeconds(1).toMillis());
+        metrics.gauge("prices.hitRatioPercent", () -> {
+            long hits = priceHits.sum();
+            long lookups = hits + priceMisses.sum();
+            return lookups == 0 ? PERCENT : hits * PERCENT / lookups;
+        });
+    }
+
+    /**
+     * Reads the users file the first time its users are needed, so it is not read at all by a server
+     * which keeps its users in a repository they were already moved to.
+     */
+    private void loadUsersFile() throws IOException {
+        if (isUsersFilePending) {
+            isUsersFilePending = false;
+            initializeUsers();
+        }
     }
 
     private void initializeUsers() throws IOException {
         File usersFile = new File(USERS_INFO_FILE);
-        try (Reader reader = new FileReader(usersFile)) {
-            if (usersFile.length() == 0) {
-                registeredUsers = new HashSet<>();
-            } else {
-                Type cryptoListType = new TypeToken<Set<User>>() {
-                }.getType();
-                Gson gson = new GsonBuilder().excludeFieldsWithoutExposeAnnotation().create();
-                registeredUsers = gson.fromJson(reader, cryptoListType);
+        File binaryFile = new File(USERS_BINARY_FILE);
+        if (binaryFile.isFile() && binaryFile.lastModified() >= usersFile.lastModified()) {
+            try {
+                registeredUsers = new UserRegistry(BinaryUsersSnapshot.read(binaryFile.toPath()));
+                // the users file repository rewrites only the users it knows
+                for (var user : registeredUsers.getUsers()) {
+                    userRepository.save(user);
+                }
+                return;
+            } catch (IOException | RuntimeException e) {
+                saver.saveErrorInfoToFile(e);
             }
+        }
+
+        try {
+            registeredUsers = new UserRegistry(userRepository.loadAll());
         } catch (IOException e) {
-            registeredUsers = new HashSet<>();
+            registeredUsers = new UserRegistry();
             saver.saveErrorInfoToFile(e);
         }
     }
@@ -109,39 +284,282 @@ public class CryptoServer {
         File cryptoFile = new File(CRYPTO_INFO_FILE);
         try (Reader reader = new FileReader(cryptoFile)) {
             if (cryptoFile.length() == 0) {
-                cryptocurrencies = saver.getCryptocurrenciesFromApi();
+                publishCryptocurrencies(fetchCryptocurrenciesFromApi());
             } else {
-                cryptocurrencies = GSON.fromJson(reader, Cryptocurrencies.class);
+                publishCryptocurrencies(GSON.fromJson(reader, Cryptocurrencies.class));
             }
         } catch (IOException e) {
-            cryptocurrencies = saver.getCryptocurrenciesFromApi();
+            publishCryptocurrencies(fetchCryptocurrenciesFromApi());
             saver.saveErrorInfoToFile(e);
         }
     }
 
-    private void updateCryptocurrenciesIfNeeded() {
-        DateTimeFormatter formatter = DateTimeFormatter.ofPattern(TIME_FORMAT);
-        LocalDateTime dateTime = LocalDateTime.parse(cryptocurrencies.lastUpdateOfInformation(), formatter);
+    private Cryptocurrencies fetchCryptocurrenciesFromApi() {
+        long start = System.nanoTime();
+        try {
+            return saver.getCryptocurrenciesFromApi();
+        } finally {
+            coinApiFetches.record(System.nanoTime() - start);
+        }
+    }
 
-        LocalDateTime validUntilTime = dateTime.plusMinutes(VALID_MINUTES);
+    /**
+     * Returns the current cryptocurrencies, counting a price cache hit when they are still within
+     * their validity and a miss when they are stale or missing.
+     */
+    private Cryptocurrencies currentCryptocurrencies() {
+        Cryptocurrencies snapshot = cryptocurrencies;
+        if (snapshot != null && System.currentTimeMillis() - cryptocurrenciesUpdateMillis
+                < Duration.ofMinutes(VALID_MINUTES).toMillis()) {
+            priceHits.increment();
+        } else {
+            priceMisses.increment();
+        }
+        return snapshot;
+    }
 
-        if (validUntilTime.isBefore(LocalDateTime.now())) {
-            if (saver != null) {
-                cryptocurrencies = saver.getCryptocurrenciesFromApi();
+    /**
+     * Records every registration, deposit, buy and sell in an append-only journal instead of rewriting
+     * the users file, replays the journal tail over the loaded users and folds it into the users file
+     * at the given compaction interval.
+     */
+    public void enableJournal(FsyncPolicy fsyncPolicy, Duration fsyncInterval, Duration compactionInterval)
+            throws IOException {
+        if (saver == null || !usesUsersFile()) {
+            throw new IllegalStateException("The journal can be enabled only for a server with a users file");
+        }
+
+        loadUsersFile();
+        journal = new WalletJournal(Path.of(JOURNAL_DIRECTORY), fsyncPolicy, fsyncInterval);
+        for (var user : registeredUsers.getUsers()) {
+            journal.advanceSequence(user.getJournalSequence());
+        }
+        journal.replay(this::applyJournalEvent);
+        journal.start();
+        journal.startCompaction(usersSnapshotWriter(), compactionInterval);
+    }
+
+    /**
+     * Keeps the users in hash-sharded files instead of rewriting the whole users file, writing only the shards
+     * of the users changed since the last flush at the given interval. The first time the users of the users
+     * file are moved into the shards.
+     */
+    public void enableUserShards(int shardsCount, Duration flushInterval) throws IOException {
+        ShardedUserStore userShards = new ShardedUserStore(Path.of(USER_SHARDS_DIRECTORY), shardsCount, userLocks);
+        useUserRepository(userShards);
+        userShards.start(flushInterval);
+        metrics.gauge("persistence.dirtyShards", userShards::getDirtyShardsCount);
+        metrics.gauge("persistence.writtenShards", userShards::getWrittenShardsCount);
+    }
+
+    /**
+     * Keeps the users in an embedded log-structured key-value store, saving a user with every change and
+     * reading it by username. The first time the users of the users file are moved into the store.
+     */
+    public void enableKeyValueStore(long memtableLimitBytes) throws IOException {
+        LsmUserRepository keyValueStore = new LsmUserRepository(Path.of(USER_STORE_DIRECTORY), memtableLimitBytes);
+        useUserRepository(keyValueStore);
+        metrics.gauge("persistence.segments", keyValueStore::getSegmentsCount);
+    }
+
+    /**
+     * Replaces the users file with the given repository, taking the users from it or, if it is empty,
+     * moving the users of the users file into it. Once moved, the users file is not read anymore.
+     */
+    private void useUserRepository(UserRepository repository) throws IOException {
+        if (saver == null || !usesUsersFile()) {
+            throw new IllegalStateException("The user storage can be changed only for a server with a users file");
+        }
+        if (journal != null) {
+            throw new IllegalStateException("The user storage cannot be changed together with the journal");
+        }
+
+        if (maxCachedUsers != ALL_USERS) {
+            useCachedUsers(repository);
+            return;
+        }
+
+        List<User> storedUsers = repository.loadAll();
+        if (storedUsers.isEmpty()) {
+            moveUsersFile(repository);
+        } else {
+            isUsersFilePending = false;
+            registeredUsers = new UserRegistry(storedUsers);
+        }
+        userRepository = repository;
+    }
+
+    /**
+     * Reads the users from the repository only when they log in. The users file is read only to move its
+     * users into an empty repository, and the moved users are dropped with the registry which read them.
+     */
+    private void useCachedUsers(UserRepository repository) throws IOException {
+        if (repository.isEmpty()) {
+            moveUsersFile(repository);
+        }
+        isUsersFilePending = false;
+
+        CachingUserRegistry cachedUsers = new CachingUserRegistry(repository, userLocks, maxCachedUsers);
+        registeredUsers = cachedUsers;
+        userRepository = repository;
+        metrics.gauge("users.cached", () -> cachedUsers.size());
+        metrics.gauge("users.cacheHits", cachedUsers::getHits);
+        metrics.gauge("users.cacheMisses", cachedUsers::getMisses);
+        metrics.gauge("users.cacheEvictions", cachedUsers::getEvictions);
+    }
+
+    private void moveUsersFile(UserRepository repository) throws IOException {
+        loadUsersFile();
+        for (var user : registeredUsers.getUsers()) {
+            repository.save(user);
+        }
+        repository.flush();
+    }
+
+    private boolean usesUsersFile() {
+        return userRepository instanceof JsonFileUserRepository;
+    }
+
+    /**
+     * Logs connections and requests to the access log. Only one in {@code sampleRate} requests is logged.
+     */
+    public void enableAccessLog(LogLevel level, int sampleRate) {
+        accessLog = new AccessLog(Path.of(ACCESS_LOG_FILE), level, sampleRate);
+        metrics.gauge("accessLog.dropped", accessLog::getDroppedCount);
+    }
+
+    private void applyJournalEvent(JournalEvent event, long sequence) {
+        User user = registeredUsers.get(event.username());
+        if (event.type() == JournalEvent.Type.REGISTER) {
+            if (user == null) {
+                user = new User(event.username(), event.password());
+                user.setJournalSequence(sequence);
+                registeredUsers.register(user);
+            }
+            return;
+        }
+
+        if (user == null || sequence <= user.getJournalSequence()) {
+            return;
+        }
+
+        try {
+            switch (event.type()) {
+                case DEPOSIT -> user.depositMoney(event.amount());
+                case BUY -> user.buyCrypto(event.crypto(), event.amount());
+                case SELL -> user.sellCrypto(event.crypto());
+                default -> { }
+            }
+            user.setJournalSequence(sequence);
+        } catch (InsufficientAvailabilityException | InvalidSellingException | IllegalArgumentException e) {
+            System.err.println("Could not replay journal event " + sequence + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Captures only which users are registered and writes them afterwards, each one copied under its own lock.
+     * A user registered after the capture is left to the replay of its journaled registration, and a user
+     * changed after it carries the sequence of its last change, so replay skips what the snapshot has.
+     */
+    private SnapshotWriter<List<User>> usersSnapshotWriter() {
+        return new SnapshotWriter<>() {
+            @Override
+            public List<User> capture() {
+                return List.copyOf(registeredUsers.getUsers());
+            }
+
+            @Override
+            public void write(List<User> users) throws IOException {
+                long start = System.nanoTime();
+                writeUsersSnapshot(users);
+                persistenceWrites.record(System.nanoTime() - start);
+            }
+        };
+    }
+
+    /**
+     * Streams the JSON users file to the disk one user copy at a time. The binary snapshot writes its
+     * string and cryptocurrency tables before the users, so it is still encoded in memory first.
+     */
+    private void writeUsersSnapshot(List<User> users) throws IOException {
+        synchronized (usersFileLock) {
+            if (binarySnapshot) {
+                saver.saveUsersSnapshotToFile(USERS_BINARY_FILE,
+                        BinaryUsersSnapshot.encode(userLocks.copyEach(users)));
+            } else {
+                JsonUsersSnapshot.write(Path.of(USERS_INFO_FILE),
+                        () -> users.stream().map(userLocks::copy).iterator());
+            }
+        }
+    }
+
+    /**
+     * Rewrites the users file. Each user is copied under its own lock and the copies are written without
+     * holding any, so the other users keep changing while the file is written. The saves are serialized,
+     * so an older copy never overwrites a newer one.
+     */
+    private void saveUsers() throws IOException {
+        long start = System.nanoTime();
+        synchronized (usersFileLock) {
+            if (binarySnapshot) {
+                saver.saveUsersSnapshotToFile(USERS_BINARY_FILE,
+                        BinaryUsersSnapshot.encode(userLocks.copyEach(registeredUsers.getUsers())));
+            } else {
+                userRepository.flush();
             }
         }
+        persistenceWrites.record(System.nanoTime() - start);
+    }
+
+    private void closeUserRepository() throws IOException {
+        if (userRepository == null) {
+            return;
+        }
+
+        try {
+            userRepository.close();
+        } finally {
+            userRepository = null;
+        }
+    }
+
+    private void closeJournal() throws IOException {
+        if (journal == null) {
+            return;
+        }
+
+        try {
+            journal.compact(usersSnapshotWriter());
+        } finally {
+            journal.close();
+            journal = null;
+        }
     }
 
     public void start() throws IOException {
+        loadUsersFile();
         try (ServerSocketChannel serverSocketChannel = ServerSocketChannel.open()) {
             serverSocketChannel.bind(new InetSocketAddress(SERVER_HOST, port));
             serverSocketChannel.configureBlocking(false);
 
             selector = Selector.open();
             serverSocketChannel.register(selector, SelectionKey.OP_ACCEPT);
+            if (offloadCommands) {
+                commandExecutor = Executors.newVirtualThreadPerTaskExecutor();
+            }
+            if (refresher != null) {
+                refresher.start(cryptocurrencies);
+            }
+            if (metricsDumpInterval != null) {
+                metrics.startDumping(Path.of(METRICS_FILE), metricsDumpInterval);
+            }
+            startWorkerReactors();
             while (isStarted) {
                     int readyChannels = selector.select();
+                    long iterationStart = System.nanoTime();
+                    handleCompletedKeys(completedKeys);
                     if (readyChannels == 0) {
+                        recordSelectorIteration(iterationStart);
                         continue;
                     }
 
@@ -151,64 +569,159 @@ public class CryptoServer {
                     while (keyIterator.hasNext()) {
                         SelectionKey key = keyIterator.next();
 
-                            if (key.isReadable()) {
-                                SocketChannel socketChannel = (SocketChannel) key.channel();
-                                messageBuffer.clear();
-                                int r = socketChannel.read(messageBuffer);
-                                if (r <= 0) {
-                                    System.out.println("Client has closed the connection");
-                                    socketChannel.close();
-                                    continue;
-                                }
-
-                                handleKeyIsReadable(key, messageBuffer);
-
-                            } else if (key.isAcceptable()) {
+                            if (key.isAcceptable()) {
                                 handleKeyIsAcceptable(key);
+                            } else {
+                                handleClientKey(key);
                             }
                             keyIterator.remove();
                     }
+                    recordSelectorIteration(iterationStart);
             }
-        } catch (IOException | InterruptedException e) {
+        } catch (IOException e) {
             System.err.println("There is a problem with the server socket: " + e.getMessage());
             if (saver != null) {
                 saver.saveErrorInfoToFile(e);
             }
+        } finally {
+            if (refresher != null) {
+                refresher.stop();
+            }
+            metrics.stopDumping();
+            stopWorkerReactors();
+            awaitCommands();
+            closeJournal();
+            closeUserRepository();
+            if (accessLog != null) {
+                accessLog.close();
+            }
         }
         System.out.println("Server stopped");
     }
 
+    private void startWorkerReactors() throws IOException {
+        if (workerReactorsCount <= 1) {
+            return;
+        }
+
+        workerReactors = new WorkerReactor[workerReactorsCount];
+        workerThreads = new Thread[workerReactorsCount];
+        for (int i = 0; i < workerReactorsCount; i++) {
+            workerReactors[i] = new WorkerReactor(this);
+            workerThreads[i] = new Thread(workerReactors[i], WORKER_THREAD_NAME + i);
+            workerThreads[i].start();
+        }
+    }
+
+    /**
+     * Waits for the offloaded commands which are still executing, so they are journaled and saved
+     * before the journal and the user repository are closed.
+     */
+    private void awaitCommands() {
+        if (commandExecutor == null) {
+            return;
+        }
+
+        commandExecutor.shutdown();
+        try {
+            if (!commandExecutor.awaitTermination(COMMANDS_TERMINATION_SECONDS, TimeUnit.SECONDS)) {
+                System.err.println("The offloaded commands did not finish in time");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Stops the worker reactors and waits for them to close their clients, so no command of a worker is still
+     * running when the journal and the user repository are closed.
+     */
+    private void stopWorkerReactors() {
+        if (workerReactors == null) {
+            return;
+        }
+
+        for (var worker : workerReactors) {
+            worker.stop();
+        }
+        try {
+            for (var thread : workerThreads) {
+                thread.join();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        workerReactors = null;
+        workerThreads = null;
+    }
+
     private String registerUser(String username, String password) throws IOException {
-        for (var curr : registeredUsers) {
-            if (curr.getUsername().equals(username)) {
+        if (admins.contains(username)) {
+            // otherwise anyone could register a configured administrator which is not stored yet
+            return INVALID_USERNAME;
+        }
+
+        User newUser = new User(username, password);
+        beginMutation();
+        try {
+            if (!registeredUsers.register(newUser)) {
                 return INVALID_USERNAME;
             }
+            try {
+                long sequence;
+                try {
+                    sequence = journalChange(JournalEvent.register(username, password));
+                } catch (IOException e) {
+                    registeredUsers.unregister(newUser);
+                    throw e;
+                }
+                saveChange(newUser, sequence);
+            } finally {
+                registeredUsers.release(newUser);
+            }
+        } finally {
+            endMutation();
         }
 
-        User newUser = new User(username, password);
-        registeredUsers.add(newUser);
-        if (saver != null) {
-            saver.saveUsersInfoToFile(registeredUsers);
+        if (savesWholeUsersFile()) {
+            saveUsers();
         }
         return SUCCESSFUL_REGISTRATION;
     }
 
     private String loginUser(String username, String password, SocketChannel channel) {
-        for (var currUser : registeredUsers) {
-            String currUserPassword = new String(currUser.getPasswordBytes(), StandardCharsets.UTF_8);
-            if (username.equals(currUser.getUsername()) && password.equals(currUserPassword)) {
-                userChannels.put(channel, currUser);
-                return SUCCESSFUL_LOGIN;
-            }
+        User user = registeredUsers.login(username, password);
+        if (user == null) {
+            return INVALID_LOGGING;
+        }
+
+        User previousUser = userChannels.put(channel, user);
+        if (previousUser != null) {
+            registeredUsers.release(previousUser);
         }
-        return INVALID_LOGGING;
+        return SUCCESSFUL_LOGIN;
     }
 
-    private StringBuilder listOfferings() {
-        updateCryptocurrenciesIfNeeded();
+    /**
+     * Returns the offerings of the current snapshot, building and encoding them only once per snapshot.
+     */
+    private String listOfferings() {
+        Cryptocurrencies snapshot = currentCryptocurrencies();
+        if (snapshot == null) {
+            return UNAVAILABLE_OFFERINGS;
+        }
+
+        EncodedOfferings cached = offerings;
+        if (cached == null || cached.snapshot() != snapshot) {
+            cached = encodeOfferings(snapshot);
+            offerings = cached;
+        }
+        return cached.text();
+    }
 
+    private EncodedOfferings encodeOfferings(Cryptocurrencies snapshot) {
         StringBuilder builder = new StringBuilder();
-        for (var currCrypto : cryptocurrencies.cryptocurrencies()) {
+        for (var currCrypto : snapshot.cryptocurrencies()) {
             builder.append(ID);
             builder.append(currCrypto.assetID());
             builder.append(SPACE);
@@ -221,7 +734,11 @@ public class CryptoServer {
             builder.append(SPACE);
         }
 
-        return builder;
+        String text = builder.toString();
+        byte[] bytes = (text + System.lineSeparator()).getBytes(StandardCharsets.UTF_8);
+        ByteBuffer payload = ByteBuffer.allocateDirect(bytes.length).put(bytes).flip();
+        return new EncodedOfferings(snapshot, text, payload.asReadOnlyBuffer(),
+                BinaryProtocol.encodeOfferings(snapshot.cryptocurrencies(), assetIds));
     }
 
     private String depositMoney(SocketChannel channel, double amount) throws IOException {
@@ -229,14 +746,21 @@ public class CryptoServer {
         if (!userChannels.containsKey(channel)) {
             response = NOT_LOGGED;
         } else {
+            User user = userChannels.get(channel);
+            Lock userLock = lockUser(user);
+            beginMutation();
             try {
-                userChannels.get(channel).depositMoney(amount);
+                user.checkDeposit(amount);
+                long sequence = journalChange(JournalEvent.deposit(user.getUsername(), amount));
+                user.depositMoney(amount);
+                saveChange(user, sequence);
                 response = SUCCESSFUL_DEPOSIT;
             } catch (IllegalArgumentException e) {
                 response = e.getMessage();
-                if (saver != null) {
-                    saver.saveUserErrorsToFile(e, channel, userChannels);
-                }
+                saveUserError(e, channel, DEPOSIT);
+            } finally {
+                endMutation();
+                userLock.unlock();
             }
         }
 
@@ -244,90 +768,167 @@ public class CryptoServer {
     }
 
     private void updateUserInfo(User user) {
-        Iterator<User> it = registeredUsers.iterator();
-        while (it.hasNext()) {
-            var currUser = it.next();
-            if (currUser.getUsername().equals(user.getUsername())) {
-                it.remove();
-                break;
-            }
+        if (user != null) {
+            registeredUsers.update(user);
+        }
+    }
+
+    private StringBuilder stats(SocketChannel channel) {
+        User user = userChannels.get(channel);
+        if (user == null) {
+            return new StringBuilder(NOT_LOGGED);
+        }
+        if (!admins.contains(user.getUsername())) {
+            return new StringBuilder(NOT_ADMIN);
         }
-        registeredUsers.add(user);
+        return metrics.report(SPACE);
     }
 
     private String disconnect(SelectionKey key) throws IOException {
         SocketChannel socketChannel = (SocketChannel) key.channel();
         User user = userChannels.get(socketChannel);
         updateUserInfo(user);
-        userChannels.remove(socketChannel);
-        if (saver != null) {
-            saver.saveUsersInfoToFile(registeredUsers);
+        logout(socketChannel);
+        if (savesWholeUsersFile()) {
+            saveUsers();
         }
         return DISCONNECT;
     }
 
+    private void logout(SocketChannel channel) {
+        User user = userChannels.remove(channel);
+        if (user != null) {
+            registeredUsers.release(user);
+        }
+    }
+
+    /**
+     * Locks the stripe of the user, so the operations on one user and their journal events keep the same
+     * order even when several sessions are logged into it. The stripe is always taken before the journal lock.
+     */
+    private Lock lockUser(User user) {
+        Lock lock = userLocks.lockFor(user.getUsername());
+        lock.lock();
+        return lock;
+    }
+
+    private void beginMutation() {
+        if (journal != null) {
+            journal.beginMutation();
+        }
+    }
+
+    private void endMutation() {
+        if (journal != null) {
+            journal.endMutation();
+        }
+    }
+
+    /**
+     * Appends the checked but not yet applied change to the journal if it is enabled, so a change which
+     * cannot be journaled is never applied.
+     * @return the sequence number of the event or 0 without a journal
+     */
+    private long journalChange(JournalEvent event) throws IOException {
+        if (journal == null) {
+            return 0;
+        }
+
+        long start = System.nanoTime();
+        long sequence = journal.append(event);
+        journalAppends.record(System.nanoTime() - start);
+        return sequence;
+    }
+
+    /**
+     * Saves the user with the applied change to the repository if there is one.
+     */
+    private void saveChange(User user, long sequence) throws IOException {
+        if (journal != null) {
+            user.setJournalSequence(sequence);
+        }
+        if (userRepository != null) {
+            userRepository.save(user);
+        }
+    }
+
+    /**
+     * @return whether the whole users file is rewritten after a registration or disconnect, because
+     * neither the journal nor another user storage keeps the changes
+     */
+    private boolean savesWholeUsersFile() {
+        return journal == null && usesUsersFile();
+    }
+
+    private void saveUserError(Exception e, SocketChannel channel, String command) {
+        if (saver != null) {
+            User user = userChannels.get(channel);
+            saver.saveUserErrorsToFile(e, user == null ? null : user.getUsername(), command);
+        }
+    }
+
+    private CryptoInformation findCryptocurrency(Cryptocurrencies snapshot, String cryptoID) {
+        return snapshot == null ? null : snapshot.findByAssetID(cryptoID);
+    }
+
     private String buyCrypto(String cryptoID, double amount, SocketChannel channel) throws IOException {
-        updateCryptocurrenciesIfNeeded();
         String response;
         if (!userChannels.containsKey(channel)) {
             response = NOT_LOGGED;
         } else {
             User user = userChannels.get(channel);
-            CryptoInformation cryptoInfo = null;
-            for (var currCrypto : cryptocurrencies.cryptocurrencies()) {
-                if (currCrypto.assetID().equals(cryptoID)) {
-                    cryptoInfo = currCrypto;
-                    break;
-                }
-            }
+            CryptoInformation cryptoInfo = findCryptocurrency(currentCryptocurrencies(), cryptoID);
+            Lock userLock = lockUser(user);
+            beginMutation();
             try {
                 if (cryptoInfo == null) {
                     response = UNAVAILABLE_CRYPTO;
                 } else {
+                    user.checkBuy(cryptoInfo, amount);
+                    long sequence = journalChange(JournalEvent.buy(user.getUsername(), cryptoInfo, amount));
                     user.buyCrypto(cryptoInfo, amount);
+                    saveChange(user, sequence);
                     response = SUCCESSFUL_BUY + cryptoID;
-                    userChannels.remove(channel);
-                    userChannels.put(channel, user);
+                    userChannels.replace(channel, user);
                 }
             } catch (InsufficientAvailabilityException | IllegalArgumentException e) {
                 response = e.getMessage();
-                if (saver != null) {
-                    saver.saveUserErrorsToFile(e, channel, userChannels);
-                }
+                saveUserError(e, channel, BUY);
+            } finally {
+                endMutation();
+                userLock.unlock();
             }
         }
         return response;
     }
 
     private String sellCrypto(String cryptoID, SocketChannel channel) throws IOException {
-        updateCryptocurrenciesIfNeeded();
         String response;
 
         if (!userChannels.containsKey(channel)) {
             response = NOT_LOGGED;
         } else {
             User user = userChannels.get(channel);
-            CryptoInformation cryptoInfo = null;
-            for (var currCrypto : cryptocurrencies.cryptocurrencies()) {
-                if (currCrypto.assetID().equals(cryptoID)) {
-                    cryptoInfo = currCrypto;
-                    break;
-                }
-            }
+            CryptoInformation cryptoInfo = findCryptocurrency(currentCryptocurrencies(), cryptoID);
+            Lock userLock = lockUser(user);
+            beginMutation();
             try {
                 if (cryptoInfo == null) {
                     response = UNAVAILABLE_CRYPTO;
                 } else {
+                    user.checkSell(cryptoInfo);
+                    long sequence = journalChange(JournalEvent.sell(user.getUsername(), cryptoInfo));
                     user.sellCrypto(cryptoInfo);
+                    saveChange(user, sequence);
                     response = SUCCESSFUL_SELL + cryptoID;
-                    userChannels.remove(channel);
-                    userChannels.put(channel, user);
+                    userChannels.replace(channel, user);
                 }
             } catch (InvalidSellingException e) {
                 response = e.getMessage();
-                if (saver != null) {
-                    saver.saveUserErrorsToFile(e, channel, userChannels);
-                }
+                saveUserError(e, channel, SELL);
+            } finally {
+                endMutation();
+                userLock.unlock();
             }
         }
         return response;
@@ -340,66 +941,72 @@ public class CryptoServer {
             builder.append(NOT_LOGGED);
         } else {
             User user = userChannels.get(channel);
-            builder = user.getWalletSummary();
+            Lock userLock = lockUser(user);
+            try {
+                builder = user.getWalletSummary();
+            } finally {
+                userLock.unlock();
+            }
         }
         return builder;
     }
 
     private StringBuilder getWalletOverallSummary(SocketChannel channel) {
-        updateCryptocurrenciesIfNeeded();
+        Cryptocurrencies snapshot = currentCryptocurrencies();
         StringBuilder builder = new StringBuilder();
 
         if (!userChannels.containsKey(channel)) {
             builder.append(NOT_LOGGED);
+        } else if (snapshot == null) {
+            builder.append(UNAVAILABLE_OFFERINGS);
         } else {
             User user = userChannels.get(channel);
-            builder = user.getWalletOverall(cryptocurrencies);
+            Lock userLock = lockUser(user);
+            try {
+                builder = user.getWalletOverall(snapshot);
+            } finally {
+                userLock.unlock();
+            }
         }
         return builder;
     }
 
-    private boolean checkNullEmptyBlank(String first, String second) {
-        if (first == null || first.isEmpty() || first.isBlank()) {
-            return false;
-        }
-        return second != null && !second.isEmpty() && !second.isBlank();
-    }
-
-    private String executeOperations(String[] words, SocketChannel socketChannel, SelectionKey key) throws IOException {
+    private String executeOperations(Command command, SocketChannel socketChannel, SelectionKey key)
+            throws IOException {
         String response;
-        switch (words[0]) {
+        switch (command.type()) {
             case REGISTER -> {
-                if (words.length == INPUT_LENGTH && checkNullEmptyBlank(words[1], words[2])) {
-                    String username = words[1];
-                    String password = words[2];
+                if (command.hasArguments(2)) {
+                    String username = command.argument(0);
+                    String password = command.argument(1);
                     response = registerUser(username, password);
                 } else {
                     response = INVALID_INPUT;
                 }
             }
             case LOGIN -> {
-                if (words.length == INPUT_LENGTH && checkNullEmptyBlank(words[1], words[2])) {
-                    String username = words[1];
-                    String password = words[2];
+                if (command.hasArguments(2)) {
+                    String username = command.argument(0);
+                    String password = command.argument(1);
 
                     response = loginUser(username, password, socketChannel);
                 } else {
                     response = INVALID_INPUT;
                 }
             }
-            case LIST_OFFERINGS -> response = new String(listOfferings());
+            case LIST_OFFERINGS -> response = listOfferings();
             case DEPOSIT -> {
-                if (words.length == 2 && words[1] != null && !words[1].isEmpty() && !words[1].isBlank()) {
-                    double amount = Double.parseDouble(words[1]);
+                Double amount = command.hasArguments(1) ? numberArgument(command, 0) : null;
+                if (amount != null) {
                     response = depositMoney(socketChannel, amount);
                 } else {
                     response = INVALID_INPUT;
                 }
             }
             case BUY -> {
-                if (words.length == INPUT_LENGTH && checkNullEmptyBlank(words[1], words[2])) {
-                    String cryptoID = words[1];
-                    double amount = Double.parseDouble(words[2]);
+                Double amount = command.hasArguments(2) ? numberArgument(command, 1) : null;
+                if (amount != null) {
+                    String cryptoID = command.argument(0);
                     response = buyCrypto(cryptoID, amount, socketChannel);
                 } else {
                     response = INVALID_INPUT;
@@ -407,8 +1014,8 @@ public class CryptoServer {
             }
             case SUMMARY -> response = new String(getWalletSummary(socketChannel));
             case SELL -> {
-                if (words.length == 2 && words[1] != null && !words[1].isBlank() && !words[1].isEmpty()) {
-                    String cryptoID = words[1];
+                if (command.hasArguments(1)) {
+                    String cryptoID = command.argument(0);
                     response = sellCrypto(cryptoID, socketChannel);
                 } else {
                     response = INVALID_INPUT;
@@ -416,59 +1023,462 @@ public class CryptoServer {
             }
             case SUMMARY_OVERALL -> response = new String(getWalletOverallSummary(socketChannel));
             case DISCONNECT -> response = disconnect(key);
+            case STATS -> response = new String(stats(socketChannel));
+            case BATCH -> response = executeBatch(command, socketChannel, key);
             default -> response = UNKNOWN_COMMAND;
         }
         return response;
     }
-    private void handleKeyIsReadable(SelectionKey key, ByteBuffer buffer) throws IOException, InterruptedException {
+
+    /**
+     * @return the argument as a finite number or null if it is not one
+     */
+    private static Double numberArgument(Command command, int index) {
+        try {
+            double number = command.numberArgument(index);
+            return Double.isFinite(number) ? number : null;
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Executes the wallet commands of a batch in order and joins their responses, so a client can run
+     * many operations in a single round trip.
+     */
+    private String executeBatch(Command batch, SocketChannel socketChannel, SelectionKey key) throws IOException {
+        if (!userChannels.containsKey(socketChannel)) {
+            return NOT_LOGGED;
+        }
+
+        StringBuilder builder = new StringBuilder();
+        Command command = new Command();
+        while (batch.nextBatchCommand(command) != null) {
+            if (!builder.isEmpty()) {
+                builder.append(BATCH_SEPARATOR);
+            }
+            builder.append(switch (command.type()) {
+                case LIST_OFFERINGS, DEPOSIT, BUY, SELL, SUMMARY, SUMMARY_OVERALL ->
+                        executeOperations(command, socketChannel, key);
+                default -> NOT_IN_BATCH;
+            });
+        }
+        return builder.isEmpty() ? INVALID_INPUT : builder.toString();
+    }
+
+    void handleClientKey(SelectionKey key) {
+        try {
+            if (key.isReadable()) {
+                handleKeyIsReadable(key);
+            } else if (key.isWritable()) {
+                flushResponses(key, (ClientSession) key.attachment());
+            }
+        } catch (IOException e) {
+            System.err.println("There is a problem with the client connection: " + e.getMessage());
+            closeClient(key);
+        } catch (RuntimeException e) {
+            // a failing request closes only its own client, never the reactor which serves the others
+            System.err.println("There is a problem with the client request: " + e.getMessage());
+            if (saver != null) {
+                saver.saveErrorInfoToFile(e);
+            }
+            closeClient(key);
+        }
+    }
+
+    private void handleKeyIsReadable(SelectionKey key) throws IOException {
         SocketChannel socketChannel = (SocketChannel) key.channel();
-        buffer.flip();
+        ClientSession session = (ClientSession) key.attachment();
+        int r = session.readFrom(socketChannel);
+        if (r < 0) {
+            logConnection(LogLevel.DEBUG, "closed", socketChannel);
+            closeClient(key);
+            return;
+        }
+        bytesIn.add(r);
+
+        if (commandExecutor != null) {
+            submitBufferedRequests(key, session);
+        } else {
+            Command command;
+            while ((command = session.nextCommand()) != null) {
+                ByteBuffer response = respond(session, command, key);
+                if (response != null && !queueResponse(key, session, response)) {
+                    return;
+                }
+            }
+        }
+
+        if (session.isFailed()) {
+            closeClient(key);
+            return;
+        }
+        if (!session.isReadingPaused() && session.discardIfOverflown()
+                && !queueResponse(key, session, encodeText(TOO_LONG_REQUEST))) {
+            return;
+        }
+        flushResponses(key, session);
+    }
+
+    String executeRequest(String clientInput, SelectionKey key) throws IOException {
+        byte[] request = clientInput.getBytes(StandardCharsets.UTF_8);
+        return executeCommand(CommandDecoder.decode(request, 0, request.length, new Command()), key);
+    }
+
+    private String executeCommand(Command command, SelectionKey key) throws IOException {
+        long start = System.nanoTime();
+        try {
+            return executeOperations(command, (SocketChannel) key.channel(), key);
+        } finally {
+            commandLatencies[command.type().ordinal()].record(System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Executes the command and encodes its response in the protocol of the session. The access log gets
+     * the size of the encoded response, i.e. the bytes sent to the client.
+     * @return the encoded response or null if the command has no response
+     */
+    private ByteBuffer respond(ClientSession session, Command command, SelectionKey key) throws IOException {
+        long start = System.nanoTime();
+        ByteBuffer response = null;
+        try {
+            String text = executeCommand(command, key);
+            if (text != null) {
+                response = encodeResponse(session, command.type(), text);
+            }
+            return response;
+        } finally {
+            if (accessLog != null && accessLog.sampleRequest()) {
+                User user = userChannels.get((SocketChannel) key.channel());
+                accessLog.request(user == null ? null : user.getUsername(), command.type().verb(),
+                        System.nanoTime() - start, response == null ? 0 : response.remaining());
+            }
+        }
+    }
+
+    void logConnection(LogLevel level, String event, SocketChannel channel) {
+        if (accessLog != null && accessLog.isEnabled(level)) {
+            accessLog.connection(level, event, String.valueOf(channel.socket().getRemoteSocketAddress()));
+        }
+    }
+
+    /**
+     * Submits the buffered requests for execution off the selector thread. A connection with a full requests
+     * queue is not read until its queued requests are executed, so a pipelining client cannot queue
+     * requests without a limit.
+     */
+    private void submitBufferedRequests(SelectionKey key, ClientSession session) {
+        byte[] request;
+        while (!session.isRequestsQueueFull() && (request = session.nextRequest()) != null) {
+            submitRequest(key, session, request);
+        }
+        if (session.isRequestsQueueFull()) {
+            session.pauseReading();
+        }
+    }
+
+    private void submitRequest(SelectionKey key, ClientSession session, byte[] request) {
+        session.addRequest(request);
+        if (session.startExecuting()) {
+            commandExecutor.execute(() -> executeQueuedRequests(key, session));
+        }
+    }
+
+    private void executeQueuedRequests(SelectionKey key, ClientSession session) {
+        do {
+            try {
+                byte[] request;
+                while ((request = session.pollRequest()) != null) {
+                    ByteBuffer response = respond(session, session.decode(request), key);
+                    if (response != null) {
+                        session.complete(key, response);
+                    }
+                }
+            } catch (IOException | RuntimeException e) {
+                System.err.println("There is a problem with executing the client command: " + e.getMessage());
+                session.fail(key);
+            } finally {
+                session.stopExecuting();
+            }
+        } while (session.startExecuting());
+
+        if (session.isReadingPaused()) {
+            session.wakeUp(key);
+        }
+    }
+
+    void handleCompletedKeys(Queue<SelectionKey> completedKeys) {
+        SelectionKey key;
+        while ((key = completedKeys.poll()) != null) {
+            if (!key.isValid()) {
+                continue;
+            }
+
+            ClientSession session = (ClientSession) key.attachment();
+            if (session.isFailed()) {
+                closeClient(key);
+                continue;
+            }
+
+            ByteBuffer response;
+            while ((response = session.pollResponse()) != null) {
+                if (!queueResponse(key, session, response)) {
+                    break;
+                }
+            }
 
-        byte[] clientInputBytes = new byte[buffer.remaining()];
-        buffer.get(clientInputBytes);
-        String clientInput = new String(clientInputBytes, StandardCharsets.UTF_8);
+            try {
+                if (key.isValid() && session.isReadingPaused() && !session.isRequestsQueueFull()) {
+                    session.resumeReading();
+                    submitBufferedRequests(key, session);
+                }
+                if (key.isValid()) {
+                    flushResponses(key, session);
+                }
+            } catch (IOException e) {
+                System.err.println("There is a problem with the client connection: " + e.getMessage());
+                closeClient(key);
+            }
+        }
+    }
 
-        String[] words = clientInput.strip().split(SPACE);
-        String response = executeOperations(words, socketChannel, key);
+    /**
+     * Encodes the response in the protocol of the session. The offerings are sent as duplicates of the buffers
+     * encoded once per snapshot; the cached text is recognised by identity.
+     */
+    private ByteBuffer encodeResponse(ClientSession session, CommandType type, String response) {
+        EncodedOfferings cached = offerings;
+        if (!session.isBinary()) {
+            return cached != null && cached.text() == response ? cached.payload().duplicate() : encodeText(response);
+        }
 
-        if (response != null) {
-            System.out.println("Sending response to client: ");
-            response += System.lineSeparator();
-            buffer.clear();
-            buffer.put(response.getBytes());
-            buffer.flip();
-            socketChannel.write(buffer);
+        if (type == CommandType.LIST_OFFERINGS && cached != null && !response.equals(UNAVAILABLE_OFFERINGS)) {
+            return cached.binaryPayload().duplicate();
         }
+        boolean isSuccessful = isSuccessful(type, response);
+        boolean hasText = type == CommandType.SUMMARY || type == CommandType.SUMMARY_OVERALL
+                || type == CommandType.STATS;
+        return BinaryProtocol.encodeResponse(type, isSuccessful, isSuccessful && !hasText ? null : response);
+    }
+
+    private static ByteBuffer encodeText(String response) {
+        return ByteBuffer.wrap((response + System.lineSeparator()).getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Tells the successful responses apart from the errors for the status of the binary protocol.
+     */
+    private static boolean isSuccessful(CommandType type, String response) {
+        return switch (type) {
+            case REGISTER -> response.equals(SUCCESSFUL_REGISTRATION);
+            case LOGIN -> response.equals(SUCCESSFUL_LOGIN);
+            case DEPOSIT -> response.equals(SUCCESSFUL_DEPOSIT);
+            case BUY -> response.startsWith(SUCCESSFUL_BUY);
+            case SELL -> response.startsWith(SUCCESSFUL_SELL);
+            case SUMMARY, SUMMARY_OVERALL, STATS -> !response.equals(NOT_LOGGED)
+                    && !response.equals(UNAVAILABLE_OFFERINGS) && !response.equals(NOT_ADMIN);
+            case DISCONNECT -> true;
+            default -> false;
+        };
+    }
+
+    private boolean queueResponse(SelectionKey key, ClientSession session, ByteBuffer response) {
+        if (!session.queueResponse(response)) {
+            logConnection(LogLevel.WARN, "slow-client-closed", (SocketChannel) key.channel());
+            closeClient(key);
+            return false;
+        }
+        return true;
+    }
+
+    private void flushResponses(SelectionKey key, ClientSession session) throws IOException {
+        long pendingBytes = session.getPendingBytes();
+        boolean flushed = session.flush((SocketChannel) key.channel());
+        bytesOut.add(pendingBytes - session.getPendingBytes());
+        if (flushed) {
+            key.interestOps(session.isReadingPaused() ? 0 : SelectionKey.OP_READ);
+        } else {
+            key.interestOps(SelectionKey.OP_WRITE);
+        }
+    }
+
+    /**
+     * Closes a client whose reactor stops, logging out its user the same way as a disconnect.
+     */
+    void closeStoppedClient(SelectionKey key) {
+        updateUserInfo(userChannels.get((SocketChannel) key.channel()));
+        closeClient(key);
+    }
+
+    private void closeClient(SelectionKey key) {
+        key.cancel();
+        logout((SocketChannel) key.channel());
+        try {
+            key.channel().close();
+        } catch (IOException e) {
+            System.err.println("Could not close the client connection: " + e.getMessage());
+        }
+    }
+
+    ClientSession newClientSession(Queue<SelectionKey> completedKeys) {
+        return new ClientSession(BUFFER_SIZE, maxPendingBytes, completedKeys, assetIds);
     }
 
     private void handleKeyIsAcceptable(SelectionKey key) throws IOException {
         ServerSocketChannel sockChannel = (ServerSocketChannel) key.channel();
         SocketChannel accept = sockChannel.accept();
         accept.configureBlocking(false);
-        accept.register(selector, SelectionKey.OP_READ);
+        acceptedConnections.increment();
+        if (workerReactors == null) {
+            accept.register(selector, SelectionKey.OP_READ, newClientSession(completedKeys));
+        } else {
+            workerReactors[nextWorkerReactor].addChannel(accept);
+            nextWorkerReactor = (nextWorkerReactor + 1) % workerReactors.length;
+        }
 
-        System.out.println("Connection accepted from client " + accept.getRemoteAddress());
+        logConnection(LogLevel.DEBUG, "accepted", accept);
     }
 
     public void setRegisterUser(User user) {
         registeredUsers.clear();
-        registeredUsers.add(user);
+        registeredUsers.register(user);
     }
 
     public void setCryptocurrencies(Cryptocurrencies crypto) {
+        publishCryptocurrencies(crypto);
+    }
+
+    private void publishCryptocurrencies(Cryptocurrencies crypto) {
+        this.cryptocurrenciesUpdateMillis = updateMillisOf(crypto);
         this.cryptocurrencies = crypto;
     }
 
+    private static long updateMillisOf(Cryptocurrencies crypto) {
+        if (crypto != null && crypto.lastUpdateOfInformation() != null) {
+            try {
+                return LocalDateTime.parse(crypto.lastUpdateOfInformation(), DateTimeFormatter.ofPattern(TIME_FORMAT))
+                        .atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+            } catch (DateTimeParseException e) {
+                System.err.println("Unknown update time of the cryptocurrencies: " + e.getMessage());
+            }
+        }
+        return System.currentTimeMillis();
+    }
+
+    void recordSelectorIteration(long iterationStart) {
+        selectorIterations.record(System.nanoTime() - iterationStart);
+    }
+
+    public MetricsRegistry getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Sets the logged in users which are allowed to see the statistics of the server. These usernames
+     * cannot be registered by clients, so an administrator has to be an already stored user.
+     */
+    public void setAdmins(Set<String> admins) {
+        this.admins = Set.copyOf(admins);
+    }
+
+    /**
+     * Dumps the metrics to the metrics file at the given interval while the server is running.
+     */
+    public void setMetricsDumpInterval(Duration metricsDumpInterval) {
+        this.metricsDumpInterval = metricsDumpInterval;
+    }
+
+    public void setWorkerReactors(int workerReactorsCount) {
+        this.workerReactorsCount = workerReactorsCount;
+    }
+
+    public void setMaxPendingBytes(int maxPendingBytes) {
+        this.maxPendingBytes = maxPendingBytes;
+    }
+
+    /**
+     * Stores the users in the compact binary snapshot instead of the JSON users file.
+     * The server loads whichever of the two files is newer on startup.
+     */
+    public void setBinarySnapshot(boolean binarySnapshot) {
+        this.binarySnapshot = binarySnapshot;
+    }
+
+    /**
+     * Keeps at most the given number of users in memory, reading the others from the user shards or the
+     * key-value store when they log in. Logged in users are always kept. It has to be set before the storage
+     * is enabled.
+     */
+    public void setMaxCachedUsers(int maxCachedUsers) {
+        this.maxCachedUsers = maxCachedUsers;
+    }
+
+    public void setOffloadCommands(boolean offloadCommands) {
+        this.offloadCommands = offloadCommands;
+    }
+
     public Set<User> getRegisteredUsers() {
-        return registeredUsers;
+        return new HashSet<>(registeredUsers.getUsers());
     }
 
     public void stop() {
         isStarted = false;
+        if (selector != null) {
+            selector.wakeup();
+        }
+    }
+
+    /**
+     * @return the comma separated usernames without surrounding spaces, empty names and duplicates
+     */
+    static Set<String> parseAdmins(String admins) {
+        Set<String> usernames = new HashSet<>();
+        for (var username : admins.split(ADMINS_SEPARATOR)) {
+            if (!username.isBlank()) {
+                usernames.add(username.strip());
+            }
+        }
+        return Set.copyOf(usernames);
     }
 
     public static void main(String[] args) throws IOException {
-        CryptoServer server = new CryptoServer(SERVER_PORT);
+        Integer stubAssets = Integer.getInteger(STUB_PRICES_PROPERTY);
+        CryptoServer server = stubAssets == null ? new CryptoServer(SERVER_PORT)
+                : new CryptoServer(SERVER_PORT, new StubCoinApi(stubAssets, System.nanoTime()));
+        server.setWorkerReactors(Integer.getInteger(WORKER_REACTORS_PROPERTY,
+                Runtime.getRuntime().availableProcessors()));
+        server.setOffloadCommands(Boolean.getBoolean(OFFLOAD_COMMANDS_PROPERTY));
+        server.setMaxPendingBytes(Integer.getInteger(MAX_PENDING_BYTES_PROPERTY, DEFAULT_MAX_PENDING_BYTES));
+        server.setBinarySnapshot(Boolean.getBoolean(BINARY_SNAPSHOT_PROPERTY));
+        String admins = System.getProperty(ADMINS_PROPERTY);
+        if (admins != null) {
+            server.setAdmins(parseAdmins(admins));
+        }
+        Integer metricsDumpSeconds = Integer.getInteger(METRICS_DUMP_PROPERTY);
+        if (metricsDumpSeconds != null) {
+            server.setMetricsDumpInterval(Duration.ofSeconds(metricsDumpSeconds));
+        }
+        LogLevel accessLogLevel = LogLevel.valueOf(System.getProperty(ACCESS_LOG_LEVEL_PROPERTY,
+                LogLevel.INFO.name()));
+        if (accessLogLevel != LogLevel.OFF) {
+            server.enableAccessLog(accessLogLevel, Integer.getInteger(ACCESS_LOG_SAMPLE_PROPERTY, 1));
+        }
+        server.setMaxCachedUsers(Integer.getInteger(CACHED_USERS_PROPERTY, ALL_USERS));
+        Integer userShards = Integer.getInteger(USER_SHARDS_PROPERTY);
+        if (userShards != null) {
+            server.enableUserShards(userShards,
+                    Duration.ofMillis(Long.getLong(USER_SHARDS_FLUSH_PROPERTY, DEFAULT_SHARDS_FLUSH_MILLIS)));
+        }
+        if (Boolean.getBoolean(KEY_VALUE_STORE_PROPERTY)) {
+            server.enableKeyValueStore(Long.getLong(MEMTABLE_BYTES_PROPERTY, DEFAULT_MEMTABLE_BYTES));
+        }
+        String fsyncPolicy = System.getProperty(JOURNAL_FSYNC_PROPERTY);
+        if (fsyncPolicy != null) {
+            server.enableJournal(FsyncPolicy.valueOf(fsyncPolicy),
+                    Duration.ofMillis(Long.getLong(JOURNAL_FSYNC_INTERVAL_PROPERTY, DEFAULT_FSYNC_INTERVAL_MILLIS)),
+                    Duration.ofMinutes(Long.getLong(JOURNAL_COMPACTION_PROPERTY, DEFAULT_COMPACTION_MINUTES)));
+        }
         server.start();
     }
 }
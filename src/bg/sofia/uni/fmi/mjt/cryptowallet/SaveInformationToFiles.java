@@ -2,51 +2,52 @@ package bg.sofia.uni.fmi.mjt.cryptowallet;
 
 import bg.sofia.uni.fmi.mjt.cryptowallet.coinapi.CoinApiThread;
 import bg.sofia.uni.fmi.mjt.cryptowallet.coinapi.dto.Cryptocurrencies;
-import bg.sofia.uni.fmi.mjt.cryptowallet.user.User;
+import bg.sofia.uni.fmi.mjt.cryptowallet.logging.AsyncAppender;
+import bg.sofia.uni.fmi.mjt.cryptowallet.logging.ErrorRecord;
 import com.google.gson.Gson;
-import com.google.gson.GsonBuilder;
 
 import java.io.FileWriter;
 import java.io.IOException;
 import java.io.Writer;
-import java.nio.channels.SocketChannel;
-import java.util.Arrays;
-import java.util.Map;
-import java.util.Set;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
 import java.util.concurrent.Callable;
 
 public class SaveInformationToFiles {
 
     private static final String ERROR_INFO_FILE = "Exceptions.txt";
-    private static final String USER_EXCEPTION = "Exception occurred to user ";
+    private static final int ERROR_LOG_CAPACITY = 8192;
+    private static final long MAX_ERROR_FILE_BYTES = 10 * 1024 * 1024;
+    private static final int MAX_ERROR_FILES = 5;
+    private static final int SATURATED_SAMPLE_RATE = 10;
+    private static final String ERROR_LOG_THREAD_NAME = "error-log-writer";
     private static final String CRYPTO_INFO_FILE = "CryptoInformation.txt";
-    private static final String USERS_INFO_FILE = "UsersInformation.txt";
+    private static final String TEMPORARY_SUFFIX = ".tmp";
     private static final Gson GSON = new Gson();
+    private final AsyncAppender<ErrorRecord> errorLog = new AsyncAppender<>(Path.of(ERROR_INFO_FILE),
+            ERROR_LOG_CAPACITY, MAX_ERROR_FILE_BYTES, MAX_ERROR_FILES, SATURATED_SAMPLE_RATE, ErrorRecord::format,
+            ERROR_LOG_THREAD_NAME);
 
-    public void saveErrorInfoToFile(Exception e) throws IOException {
-        try (Writer writer = new FileWriter(ERROR_INFO_FILE, true)) {
-            writer.write(e.getMessage());
-            writer.write(System.lineSeparator());
-            writer.flush();
-            writer.write(Arrays.toString(e.getStackTrace()));
-            writer.write(System.lineSeparator());
-            writer.flush();
-        }
+    /**
+     * Queues the error for the error log without blocking; it is written by a background thread.
+     */
+    public void saveErrorInfoToFile(Exception e) {
+        errorLog.append(ErrorRecord.of(null, null, e));
     }
 
-    public void saveUserErrorsToFile(Exception e, SocketChannel channel, Map<SocketChannel, User> userChannels)
-            throws IOException {
+    public void saveUserErrorsToFile(Exception e, String username, String command) {
+        errorLog.append(ErrorRecord.of(username, command, e));
+    }
 
-        try (Writer writer = new FileWriter(ERROR_INFO_FILE, true)) {
-            writer.write(USER_EXCEPTION + userChannels.get(channel).getUsername());
-            writer.write(System.lineSeparator());
-            writer.write(e.getMessage());
-            writer.write(System.lineSeparator());
-            writer.flush();
-            writer.write(Arrays.toString(e.getStackTrace()));
-            writer.write(System.lineSeparator());
-            writer.flush();
-        }
+    /**
+     * @return how many errors were not written because the error log could not keep up
+     */
+    public long getDroppedErrors() {
+        return errorLog.getDroppedCount();
     }
 
     public void saveCryptocurrenciesToFile(Cryptocurrencies cryptocurrencies) throws IOException {
@@ -55,11 +56,21 @@ public class SaveInformationToFiles {
         }
     }
 
-    void saveUsersInfoToFile(Set<User> registeredUsers) throws IOException {
-        try (Writer writer = new FileWriter(USERS_INFO_FILE, false)) {
-            Gson gson = new GsonBuilder().excludeFieldsWithoutExposeAnnotation().create();
-            gson.toJson(registeredUsers, writer);
+    /**
+     * Replaces the given users file with the snapshot through a temporary file, so a crash never leaves it half written.
+     */
+    synchronized void saveUsersSnapshotToFile(String fileName, byte[] snapshot) throws IOException {
+        Path usersFile = Path.of(fileName);
+        Path temporaryFile = Path.of(fileName + TEMPORARY_SUFFIX);
+        try (FileChannel channel = FileChannel.open(temporaryFile, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer buffer = ByteBuffer.wrap(snapshot);
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            channel.force(true);
         }
+        Files.move(temporaryFile, usersFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
     }
 
     public Cryptocurrencies getCryptocurrenciesFromApi() {
@@ -69,12 +80,8 @@ public class SaveInformationToFiles {
             saveCryptocurrenciesToFile(cryptocurrencies);
             return cryptocurrencies;
         } catch (Exception e) {
-            try {
-                System.out.println(e.getMessage());
-                saveErrorInfoToFile(e);
-            } catch (IOException ex) {
-                throw new RuntimeException(ex);
-            }
+            System.out.println(e.getMessage());
+            saveErrorInfoToFile(e);
         }
         return null;
     }
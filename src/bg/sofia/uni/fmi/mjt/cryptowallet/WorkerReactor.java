@@ -0,0 +1,84 @@
+package bg.sofia.uni.fmi.mjt.cryptowallet;
+
+import bg.sofia.uni.fmi.mjt.cryptowallet.logging.LogLevel;
+
+import java.io.IOException;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+class WorkerReactor implements Runnable {
+
+    private final CryptoServer server;
+    private final Selector selector;
+    private final Queue<SocketChannel> pendingChannels;
+    private final Queue<SelectionKey> completedKeys;
+    private volatile boolean isStarted = true;
+
+    WorkerReactor(CryptoServer server) throws IOException {
+        this.server = server;
+        this.selector = Selector.open();
+        this.pendingChannels = new ConcurrentLinkedQueue<>();
+        this.completedKeys = new ConcurrentLinkedQueue<>();
+    }
+
+    void addChannel(SocketChannel channel) {
+        pendingChannels.add(channel);
+        selector.wakeup();
+    }
+
+    void stop() {
+        isStarted = false;
+        selector.wakeup();
+    }
+
+    private void registerPendingChannels() {
+        SocketChannel channel;
+        while ((channel = pendingChannels.poll()) != null) {
+            try {
+                channel.register(selector, SelectionKey.OP_READ, server.newClientSession(completedKeys));
+            } catch (ClosedChannelException e) {
+                server.logConnection(LogLevel.DEBUG, "closed", channel);
+            }
+        }
+    }
+
+    private void handleSelectedKeys() {
+        Set<SelectionKey> selectedKeys = selector.selectedKeys();
+        Iterator<SelectionKey> keyIterator = selectedKeys.iterator();
+
+        while (keyIterator.hasNext()) {
+            SelectionKey key = keyIterator.next();
+            keyIterator.remove();
+
+            if (key.isValid()) {
+                server.handleClientKey(key);
+            }
+        }
+    }
+
+    @Override
+    public void run() {
+        try (selector) {
+            while (isStarted) {
+                selector.select();
+                long iterationStart = System.nanoTime();
+                registerPendingChannels();
+                server.handleCompletedKeys(completedKeys);
+                handleSelectedKeys();
+                server.recordSelectorIteration(iterationStart);
+            }
+
+            for (var key : selector.keys()) {
+                server.closeStoppedClient(key);
+            }
+        } catch (IOException e) {
+            System.err.println("There is a problem with the worker selector: " + e.getMessage());
+        }
+    }
+}
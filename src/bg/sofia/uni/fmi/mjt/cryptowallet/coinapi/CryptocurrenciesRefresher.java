@@ -0,0 +1,109 @@
+package bg.sofia.uni.fmi.mjt.cryptowallet.coinapi;
+
+import bg.sofia.uni.fmi.mjt.cryptowallet.coinapi.dto.Cryptocurrencies;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+public class CryptocurrenciesRefresher {
+
+    private static final String TIME_FORMAT = "yyyy-MM-dd HH:mm:ss";
+    private static final String THREAD_NAME = "crypto-prices-refresher";
+    private static final Duration REFRESH_AHEAD = Duration.ofMinutes(5);
+    private static final Duration RETRY_DELAY = Duration.ofMinutes(1);
+    private final Callable<Cryptocurrencies> source;
+    private final Consumer<Cryptocurrencies> listener;
+    private final Duration validity;
+    private final ScheduledExecutorService scheduler;
+    private volatile Cryptocurrencies lastSnapshot;
+
+    /**
+     * @param source    fetches a new snapshot, returning null or throwing if the fetch failed
+     * @param listener  receives every successfully fetched snapshot
+     * @param validity  how long a snapshot is valid after its lastUpdateOfInformation time
+     */
+    public CryptocurrenciesRefresher(Callable<Cryptocurrencies> source, Consumer<Cryptocurrencies> listener,
+                                     Duration validity) {
+        this.source = source;
+        this.listener = listener;
+        this.validity = validity;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, THREAD_NAME);
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    public void start(Cryptocurrencies initialSnapshot) {
+        lastSnapshot = initialSnapshot;
+        schedule(delayUntilRefresh());
+    }
+
+    public void stop() {
+        scheduler.shutdownNow();
+    }
+
+    public Cryptocurrencies getLastSnapshot() {
+        return lastSnapshot;
+    }
+
+    /**
+     * @return the time until the snapshot should be refreshed or the whole validity if its update time
+     * is unknown, e.g. missing or malformed in the cryptocurrencies file
+     */
+    private Duration delayUntilRefresh() {
+        Cryptocurrencies snapshot = lastSnapshot;
+        if (snapshot == null) {
+            return Duration.ZERO;
+        }
+        if (snapshot.lastUpdateOfInformation() == null) {
+            return validity;
+        }
+
+        LocalDateTime dateTime;
+        try {
+            dateTime = LocalDateTime.parse(snapshot.lastUpdateOfInformation(),
+                    DateTimeFormatter.ofPattern(TIME_FORMAT));
+        } catch (DateTimeParseException e) {
+            System.err.println("Unknown update time of the cryptocurrencies: " + e.getMessage());
+            return validity;
+        }
+        LocalDateTime refreshTime = dateTime.plus(validity).minus(REFRESH_AHEAD);
+
+        Duration delay = Duration.between(LocalDateTime.now(), refreshTime);
+        return delay.isNegative() ? Duration.ZERO : delay;
+    }
+
+    private void schedule(Duration delay) {
+        if (!scheduler.isShutdown()) {
+            scheduler.schedule(this::refresh, delay.toMillis(), TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private void refresh() {
+        Cryptocurrencies snapshot = null;
+        try {
+            snapshot = source.call();
+        } catch (Exception e) {
+            System.err.println("Could not refresh the cryptocurrencies: " + e.getMessage());
+        }
+
+        if (snapshot == null) {
+            schedule(RETRY_DELAY);
+            return;
+        }
+
+        lastSnapshot = snapshot;
+        listener.accept(snapshot);
+        // a source may return a snapshot which is already stale, which must not be fetched again right away
+        Duration delay = delayUntilRefresh();
+        schedule(delay.compareTo(RETRY_DELAY) < 0 ? RETRY_DELAY : delay);
+    }
+}
@@ -0,0 +1,57 @@
+package bg.sofia.uni.fmi.mjt.cryptowallet.coinapi;
+
+import bg.sofia.uni.fmi.mjt.cryptowallet.coinapi.dto.CryptoInformation;
+import bg.sofia.uni.fmi.mjt.cryptowallet.coinapi.dto.Cryptocurrencies;
+
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.LinkedHashSet;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.Callable;
+
+/**
+ * Offline stand-in for CoinAPI which returns a fixed list of cryptocurrencies whose prices
+ * take a small random step on every call. Used for load tests and regression runs without network access.
+ */
+public class StubCoinApi implements Callable<Cryptocurrencies> {
+
+    private static final String TIME_FORMAT = "yyyy-MM-dd HH:mm:ss";
+    private static final String[] KNOWN_ASSETS = {"BTC", "ETH", "USDT", "BNB", "XRP", "ADA", "SOL", "DOGE", "DOT", "LTC"};
+    private static final String GENERATED_ASSET = "COIN";
+    private static final double MIN_PRICE = 0.01;
+    private static final double MAX_STEP = 0.02;
+    private final String[] assetIDs;
+    private final double[] prices;
+    private final Random random;
+
+    public StubCoinApi(int assets, long seed) {
+        if (assets <= 0) {
+            throw new IllegalArgumentException("The stub needs at least one cryptocurrency");
+        }
+
+        this.assetIDs = new String[assets];
+        this.prices = new double[assets];
+        this.random = new Random(seed);
+        for (int i = 0; i < assets; i++) {
+            assetIDs[i] = i < KNOWN_ASSETS.length ? KNOWN_ASSETS[i] : GENERATED_ASSET + i;
+            prices[i] = MIN_PRICE + random.nextDouble() * Math.pow(10, random.nextInt(5));
+        }
+    }
+
+    public String[] getAssetIDs() {
+        return assetIDs.clone();
+    }
+
+    @Override
+    public synchronized Cryptocurrencies call() {
+        Set<CryptoInformation> offerings = new LinkedHashSet<>();
+        for (int i = 0; i < assetIDs.length; i++) {
+            prices[i] = Math.max(MIN_PRICE, prices[i] * (1 + (random.nextDouble() * 2 - 1) * MAX_STEP));
+            offerings.add(new CryptoInformation(assetIDs[i], assetIDs[i], 1, prices[i]));
+        }
+
+        String formattedTime = LocalDateTime.now().format(DateTimeFormatter.ofPattern(TIME_FORMAT));
+        return Cryptocurrencies.of(offerings, formattedTime);
+    }
+}
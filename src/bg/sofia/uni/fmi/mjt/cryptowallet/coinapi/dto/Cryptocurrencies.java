@@ -1,10 +1,75 @@
 package bg.sofia.uni.fmi.mjt.cryptowallet.coinapi.dto;
 
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Set;
 
-public record Cryptocurrencies(Set<CryptoInformation> cryptocurrencies, String lastUpdateOfInformation) {
+public final class Cryptocurrencies {
+
+    private final Set<CryptoInformation> cryptocurrencies;
+    private final String lastUpdateOfInformation;
+    private transient Map<String, CryptoInformation> assetIndex;
+
+    public Cryptocurrencies(Set<CryptoInformation> cryptocurrencies, String lastUpdateOfInformation) {
+        this.cryptocurrencies = Collections.unmodifiableSet(new LinkedHashSet<>(cryptocurrencies));
+        this.lastUpdateOfInformation = lastUpdateOfInformation;
+        this.assetIndex = buildAssetIndex(this.cryptocurrencies);
+    }
 
     public static Cryptocurrencies of(Set<CryptoInformation> cryptocurrencies, String lastUpdateOfInformation) {
         return new Cryptocurrencies(cryptocurrencies, lastUpdateOfInformation);
     }
+
+    private static Map<String, CryptoInformation> buildAssetIndex(Set<CryptoInformation> cryptocurrencies) {
+        Map<String, CryptoInformation> index = new HashMap<>();
+        for (var crypto : cryptocurrencies) {
+            index.putIfAbsent(crypto.assetID(), crypto);
+        }
+        return Map.copyOf(index);
+    }
+
+    /**
+     * Finds the cryptocurrency with the given asset ID in constant time.
+     * @return the cryptocurrency or null if it is not part of this snapshot
+     */
+    public CryptoInformation findByAssetID(String assetID) {
+        Map<String, CryptoInformation> index = assetIndex;
+        if (index == null) {
+            // Gson creates instances without calling the constructor, so the index is built on first use
+            index = buildAssetIndex(cryptocurrencies);
+            assetIndex = index;
+        }
+        return index.get(assetID);
+    }
+
+    public Set<CryptoInformation> cryptocurrencies() {
+        return cryptocurrencies;
+    }
+
+    public String lastUpdateOfInformation() {
+        return lastUpdateOfInformation;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        Cryptocurrencies that = (Cryptocurrencies) o;
+        return cryptocurrencies.equals(that.cryptocurrencies)
+                && Objects.equals(lastUpdateOfInformation, that.lastUpdateOfInformation);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(cryptocurrencies, lastUpdateOfInformation);
+    }
+
+    @Override
+    public String toString() {
+        return "Cryptocurrencies[cryptocurrencies=" + cryptocurrencies
+                + ", lastUpdateOfInformation=" + lastUpdateOfInformation + "]";
+    }
 }
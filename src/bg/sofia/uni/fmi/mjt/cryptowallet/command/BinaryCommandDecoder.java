@@ -0,0 +1,103 @@
+package bg.sofia.uni.fmi.mjt.cryptowallet.command;
+
+import bg.sofia.uni.fmi.mjt.cryptowallet.protocol.AssetIds;
+import bg.sofia.uni.fmi.mjt.cryptowallet.protocol.BinaryProtocol;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+
+/**
+ * Decodes a request frame of the {@link BinaryProtocol} in place. Amounts are read as doubles and
+ * assets are resolved to their interned asset IDs, so decoding allocates nothing.
+ * A frame which ends before its arguments, has bytes after them or has a string argument which would not be
+ * a valid word of the text protocol decodes into an invalid command.
+ */
+public final class BinaryCommandDecoder {
+
+    private static final VarHandle SHORT = MethodHandles.byteArrayViewVarHandle(short[].class, ByteOrder.BIG_ENDIAN);
+    private static final VarHandle INT = MethodHandles.byteArrayViewVarHandle(int[].class, ByteOrder.BIG_ENDIAN);
+    private static final VarHandle DOUBLE = MethodHandles.byteArrayViewVarHandle(double[].class,
+            ByteOrder.BIG_ENDIAN);
+    private static final byte SPACE = ' ';
+
+    private BinaryCommandDecoder() {
+    }
+
+    /**
+     * Decodes the opcode and the arguments of a frame, from {@code from} inclusive to {@code to} exclusive.
+     * @return the given command
+     */
+    public static Command decode(byte[] source, int from, int to, AssetIds assetIds, Command command) {
+        if (from >= to) {
+            command.reset(CommandType.UNKNOWN, source);
+            return command;
+        }
+
+        CommandType type = CommandType.ofOpcode(source[from]);
+        command.reset(type, source);
+        int position = from + 1;
+        switch (type) {
+            case REGISTER, LOGIN -> {
+                position = readString(source, position, to, command);
+                position = readString(source, position, to, command);
+            }
+            case DEPOSIT -> position = readNumber(source, position, to, command);
+            case BUY -> {
+                position = readAsset(source, position, to, assetIds, command);
+                position = readNumber(source, position, to, command);
+            }
+            case SELL -> position = readAsset(source, position, to, assetIds, command);
+            default -> {
+                return command;
+            }
+        }
+
+        if (position != to) {
+            command.invalidate();
+        }
+        return command;
+    }
+
+    private static int readString(byte[] source, int position, int to, Command command) {
+        if (position < 0 || position + Short.BYTES > to) {
+            return -1;
+        }
+
+        int start = position + Short.BYTES;
+        int end = start + Short.toUnsignedInt((short) SHORT.get(source, position));
+        if (end > to) {
+            return -1;
+        }
+
+        command.addArgument(start, end, !isWord(source, start, end));
+        return end;
+    }
+
+    private static int readNumber(byte[] source, int position, int to, Command command) {
+        if (position < 0 || position + Double.BYTES > to) {
+            return -1;
+        }
+
+        command.addNumberArgument((double) DOUBLE.get(source, position));
+        return position + Double.BYTES;
+    }
+
+    private static int readAsset(byte[] source, int position, int to, AssetIds assetIds, Command command) {
+        if (position < 0 || position + Integer.BYTES > to) {
+            return -1;
+        }
+
+        command.addArgument(assetIds.assetID((int) INT.get(source, position)));
+        return position + Integer.BYTES;
+    }
+
+    private static boolean isWord(byte[] source, int from, int to) {
+        for (int i = from; i < to; i++) {
+            if (source[i] == SPACE) {
+                return false;
+            }
+        }
+        return !CommandDecoder.isBlank(source, from, to);
+    }
+}
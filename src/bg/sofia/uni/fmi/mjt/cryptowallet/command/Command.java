@@ -0,0 +1,146 @@
+package bg.sofia.uni.fmi.mjt.cryptowallet.command;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * A decoded request which refers to the bytes it was decoded from instead of copying them.
+ * One instance is reused for every request of a connection, so it is valid only until the next request
+ * is decoded into it or the source bytes are overwritten. Arguments become Strings only when asked for;
+ * the binary protocol sets numbers and interned asset IDs as values instead.
+ */
+public class Command {
+
+    private static final int MAX_ARGUMENTS = 2;
+    private static final byte BATCH_SEPARATOR = ';';
+    private CommandType type = CommandType.UNKNOWN;
+    private byte[] source;
+    private final int[] argumentStarts = new int[MAX_ARGUMENTS];
+    private final int[] argumentEnds = new int[MAX_ARGUMENTS];
+    private final String[] argumentValues = new String[MAX_ARGUMENTS];
+    private final double[] numberValues = new double[MAX_ARGUMENTS];
+    private final boolean[] isNumber = new boolean[MAX_ARGUMENTS];
+    private int argumentsCount;
+    private boolean hasBlankArgument;
+    private int bodyEnd;
+    private int batchPosition;
+
+    void reset(CommandType type, byte[] source) {
+        this.type = type;
+        this.source = source;
+        this.argumentsCount = 0;
+        this.hasBlankArgument = false;
+        this.batchPosition = -1;
+    }
+
+    /**
+     * Sets the text after the verb, which a batch splits into its commands.
+     */
+    void setBody(int start, int end) {
+        batchPosition = start;
+        bodyEnd = end;
+    }
+
+    void addArgument(int start, int end, boolean blank) {
+        if (argumentsCount < MAX_ARGUMENTS) {
+            argumentStarts[argumentsCount] = start;
+            argumentEnds[argumentsCount] = end;
+            argumentValues[argumentsCount] = null;
+            isNumber[argumentsCount] = false;
+        }
+        argumentsCount++;
+        hasBlankArgument |= blank;
+    }
+
+    void addArgument(String value) {
+        if (argumentsCount < MAX_ARGUMENTS) {
+            argumentValues[argumentsCount] = value == null ? "" : value;
+            isNumber[argumentsCount] = false;
+        }
+        argumentsCount++;
+        hasBlankArgument |= value == null || value.isBlank();
+    }
+
+    void addNumberArgument(double value) {
+        if (argumentsCount < MAX_ARGUMENTS) {
+            numberValues[argumentsCount] = value;
+            isNumber[argumentsCount] = true;
+        }
+        argumentsCount++;
+    }
+
+    /**
+     * Marks the command as invalid, e.g. when a binary frame ends before its arguments.
+     */
+    void invalidate() {
+        hasBlankArgument = true;
+    }
+
+    public CommandType type() {
+        return type;
+    }
+
+    public int argumentsCount() {
+        return argumentsCount;
+    }
+
+    /**
+     * @return true if the command has exactly the given number of arguments and none of them is blank
+     */
+    public boolean hasArguments(int count) {
+        return argumentsCount == count && !hasBlankArgument;
+    }
+
+    public String argument(int index) {
+        checkIndex(index);
+        if (isNumber[index]) {
+            return Double.toString(numberValues[index]);
+        }
+        if (argumentValues[index] != null) {
+            return argumentValues[index];
+        }
+        return new String(source, argumentStarts[index], argumentEnds[index] - argumentStarts[index],
+                StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Parses the argument as a number without creating a String for it.
+     * @throws NumberFormatException if the argument is not a number
+     */
+    public double numberArgument(int index) {
+        checkIndex(index);
+        if (isNumber[index]) {
+            return numberValues[index];
+        }
+        if (argumentValues[index] != null) {
+            return Double.parseDouble(argumentValues[index]);
+        }
+        return CommandDecoder.parseDouble(source, argumentStarts[index], argumentEnds[index]);
+    }
+
+    /**
+     * Decodes the next non-blank command of a batch, e.g. {@code batch buy BTC 10; sell ETH}, into the given
+     * command. Only text requests have a body to split; a binary request has no batch commands.
+     * @return the given command, or null when there are no more commands in the batch
+     */
+    public Command nextBatchCommand(Command command) {
+        while (batchPosition >= 0 && batchPosition <= bodyEnd) {
+            int start = batchPosition;
+            int end = start;
+            while (end < bodyEnd && source[end] != BATCH_SEPARATOR) {
+                end++;
+            }
+            batchPosition = end + 1;
+
+            if (!CommandDecoder.isBlank(source, start, end)) {
+                return CommandDecoder.decode(source, start, end, command);
+            }
+        }
+        return null;
+    }
+
+    private void checkIndex(int index) {
+        if (index < 0 || index >= Math.min(argumentsCount, MAX_ARGUMENTS)) {
+            throw new IndexOutOfBoundsException("The command has no argument " + index);
+        }
+    }
+}
@@ -0,0 +1,171 @@
+package bg.sofia.uni.fmi.mjt.cryptowallet.command;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Decodes a request line in place, with the same rules as stripping it and splitting it on single spaces:
+ * the verb is matched byte by byte and the arguments are recorded as offsets into the source bytes.
+ * Only ASCII whitespace is stripped. The text of a batch after its verb is not split, it is decoded
+ * command by command with {@link Command#nextBatchCommand}.
+ */
+public final class CommandDecoder {
+
+    private static final byte SPACE = ' ';
+    private static final int MAX_FAST_DIGITS = 18;
+    private static final int MAX_EXPONENT_DIGITS = 4;
+    private static final long MAX_EXACT_MANTISSA = 1L << 53;
+    private static final double[] POWERS_OF_TEN = {
+        1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+        1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+    private static final CommandType[] KNOWN_COMMANDS = Arrays.stream(CommandType.values())
+            .filter(type -> type != CommandType.UNKNOWN)
+            .toArray(CommandType[]::new);
+
+    private CommandDecoder() {
+    }
+
+    /**
+     * Decodes the bytes from {@code from} inclusive to {@code to} exclusive into the given command.
+     * @return the given command
+     */
+    public static Command decode(byte[] source, int from, int to, Command command) {
+        while (from < to && isWhitespace(source[from])) {
+            from++;
+        }
+        while (to > from && isWhitespace(source[to - 1])) {
+            to--;
+        }
+
+        int verbEnd = indexOfSpace(source, from, to);
+        CommandType type = matchVerb(source, from, verbEnd);
+        command.reset(type, source);
+        if (type == CommandType.BATCH) {
+            if (verbEnd < to) {
+                command.setBody(verbEnd + 1, to);
+            }
+            return command;
+        }
+
+        for (int start = verbEnd + 1; start <= to; ) {
+            int end = indexOfSpace(source, start, to);
+            command.addArgument(start, end, isBlank(source, start, end));
+            start = end + 1;
+        }
+        return command;
+    }
+
+    private static CommandType matchVerb(byte[] source, int from, int to) {
+        int length = to - from;
+        for (CommandType type : KNOWN_COMMANDS) {
+            byte[] verb = type.verbBytes();
+            if (verb.length == length && Arrays.equals(verb, 0, length, source, from, to)) {
+                return type;
+            }
+        }
+        return CommandType.UNKNOWN;
+    }
+
+    private static int indexOfSpace(byte[] source, int from, int to) {
+        for (int i = from; i < to; i++) {
+            if (source[i] == SPACE) {
+                return i;
+            }
+        }
+        return to;
+    }
+
+    static boolean isBlank(byte[] source, int from, int to) {
+        for (int i = from; i < to; i++) {
+            if (!isWhitespace(source[i])) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isWhitespace(byte b) {
+        return b == SPACE || (b >= '\t' && b <= '\r') || (b >= 0x1C && b <= 0x1F);
+    }
+
+    /**
+     * Parses a plain decimal number such as {@code -12.5} or {@code 1.5E10} directly from the bytes.
+     * The result is exact when the significant digits fit in 53 bits and the decimal exponent is within
+     * 22, because then a single multiplication or division by an exact power of ten is correctly rounded.
+     * Every other input is handed to {@link Double#parseDouble}, so the result is always the same as with it.
+     */
+    static double parseDouble(byte[] source, int from, int to) {
+        int i = from;
+        boolean negative = false;
+        if (i < to && (source[i] == '-' || source[i] == '+')) {
+            negative = source[i] == '-';
+            i++;
+        }
+
+        long mantissa = 0;
+        int significantDigits = 0;
+        int exponent = 0;
+        int digits = 0;
+        boolean isFraction = false;
+        for (; i < to; i++) {
+            byte b = source[i];
+            if (b == '.' && !isFraction) {
+                isFraction = true;
+                continue;
+            }
+            if (b < '0' || b > '9') {
+                break;
+            }
+
+            digits++;
+            if (mantissa != 0 || b != '0') {
+                if (++significantDigits > MAX_FAST_DIGITS) {
+                    return slowParseDouble(source, from, to);
+                }
+                mantissa = mantissa * 10 + (b - '0');
+            }
+            if (isFraction) {
+                exponent--;
+            }
+        }
+        if (digits == 0) {
+            return slowParseDouble(source, from, to);
+        }
+
+        if (i < to && (source[i] == 'e' || source[i] == 'E')) {
+            i++;
+            boolean negativeExponent = false;
+            if (i < to && (source[i] == '-' || source[i] == '+')) {
+                negativeExponent = source[i] == '-';
+                i++;
+            }
+            int exponentStart = i;
+            int explicitExponent = 0;
+            for (; i < to && source[i] >= '0' && source[i] <= '9'; i++) {
+                explicitExponent = explicitExponent * 10 + (source[i] - '0');
+            }
+            if (i == exponentStart || i - exponentStart > MAX_EXPONENT_DIGITS) {
+                return slowParseDouble(source, from, to);
+            }
+            exponent += negativeExponent ? -explicitExponent : explicitExponent;
+        }
+        if (i != to) {
+            return slowParseDouble(source, from, to);
+        }
+
+        double value;
+        if (mantissa == 0) {
+            value = 0;
+        } else if (mantissa <= MAX_EXACT_MANTISSA && Math.abs(exponent) < POWERS_OF_TEN.length) {
+            value = exponent >= 0 ? mantissa * POWERS_OF_TEN[exponent] : mantissa / POWERS_OF_TEN[-exponent];
+        } else {
+            return slowParseDouble(source, from, to);
+        }
+        return negative ? -value : value;
+    }
+
+    private static double slowParseDouble(byte[] source, int from, int to) {
+        return Double.parseDouble(new String(source, from, to - from, StandardCharsets.UTF_8));
+    }
+}
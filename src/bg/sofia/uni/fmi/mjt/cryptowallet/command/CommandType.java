@@ -0,0 +1,58 @@
+package bg.sofia.uni.fmi.mjt.cryptowallet.command;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * The commands of the protocol with the verb a text client writes and the opcode a binary client sends.
+ */
+public enum CommandType {
+    REGISTER("register", 1),
+    LOGIN("login", 2),
+    LIST_OFFERINGS("list-offerings", 3),
+    DEPOSIT("deposit-money", 4),
+    BUY("buy", 5),
+    SELL("sell", 6),
+    SUMMARY("get-wallet-summary", 7),
+    SUMMARY_OVERALL("get-wallet-overall-summary", 8),
+    DISCONNECT("disconnect", 9),
+    STATS("stats", 10),
+    BATCH("batch", 11),
+    UNKNOWN("unknown", 0);
+
+    private static final CommandType[] BY_OPCODE = new CommandType[Byte.MAX_VALUE + 1];
+    private final String verb;
+    private final byte[] verbBytes;
+    private final byte opcode;
+
+    static {
+        for (CommandType type : values()) {
+            BY_OPCODE[type.opcode] = type;
+        }
+    }
+
+    CommandType(String verb, int opcode) {
+        this.verb = verb;
+        this.verbBytes = verb.getBytes(StandardCharsets.US_ASCII);
+        this.opcode = (byte) opcode;
+    }
+
+    /**
+     * @return the command with the given opcode of the binary protocol or {@link #UNKNOWN}
+     */
+    public static CommandType ofOpcode(byte opcode) {
+        CommandType type = opcode < 0 ? null : BY_OPCODE[opcode];
+        return type == null ? UNKNOWN : type;
+    }
+
+    public String verb() {
+        return verb;
+    }
+
+    byte[] verbBytes() {
+        return verbBytes;
+    }
+
+    public byte opcode() {
+        return opcode;
+    }
+}
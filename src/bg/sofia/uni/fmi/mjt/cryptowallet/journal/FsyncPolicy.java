@@ -0,0 +1,16 @@
+package bg.sofia.uni.fmi.mjt.cryptowallet.journal;
+
+public enum FsyncPolicy {
+    /**
+     * Every event is forced to disk before its append returns.
+     */
+    EVERY_EVENT,
+    /**
+     * Written events are forced to disk at a fixed interval.
+     */
+    INTERVAL,
+    /**
+     * Forcing to disk is left to the operating system.
+     */
+    NEVER
+}
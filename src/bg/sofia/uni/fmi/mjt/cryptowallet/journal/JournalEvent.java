@@ -0,0 +1,26 @@
+package bg.sofia.uni.fmi.mjt.cryptowallet.journal;
+
+import bg.sofia.uni.fmi.mjt.cryptowallet.coinapi.dto.CryptoInformation;
+
+public record JournalEvent(Type type, String username, String password, CryptoInformation crypto, double amount) {
+
+    public enum Type {
+        REGISTER, DEPOSIT, BUY, SELL
+    }
+
+    public static JournalEvent register(String username, String password) {
+        return new JournalEvent(Type.REGISTER, username, password, null, 0.0);
+    }
+
+    public static JournalEvent deposit(String username, double amount) {
+        return new JournalEvent(Type.DEPOSIT, username, null, null, amount);
+    }
+
+    public static JournalEvent buy(String username, CryptoInformation crypto, double amount) {
+        return new JournalEvent(Type.BUY, username, null, crypto, amount);
+    }
+
+    public static JournalEvent sell(String username, CryptoInformation crypto) {
+        return new JournalEvent(Type.SELL, username, null, crypto, 0.0);
+    }
+}
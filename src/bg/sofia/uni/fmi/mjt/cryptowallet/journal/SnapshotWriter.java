@@ -0,0 +1,22 @@
+package bg.sofia.uni.fmi.mjt.cryptowallet.journal;
+
+import java.io.IOException;
+
+/**
+ * @param <T> what is captured while no wallet mutations are running, e.g. the state itself or only
+ *            what is needed to write it afterwards
+ */
+public interface SnapshotWriter<T> {
+
+    /**
+     * Captures the current state. It is called while no wallet mutations are running,
+     * so the captured state contains every event of the journal being folded.
+     */
+    T capture();
+
+    /**
+     * Durably replaces the previous snapshot with the captured one. It runs while the wallets change again,
+     * so it may also write events journaled after the capture, as long as replay skips them by sequence.
+     */
+    void write(T snapshot) throws IOException;
+}
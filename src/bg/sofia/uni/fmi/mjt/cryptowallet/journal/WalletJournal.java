@@ -0,0 +1,413 @@
+package bg.sofia.uni.fmi.mjt.cryptowallet.journal;
+
+import bg.sofia.uni.fmi.mjt.cryptowallet.coinapi.dto.CryptoInformation;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.ObjLongConsumer;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only journal of wallet mutations, split into numbered segment files.
+ * Records are written by one background thread in batches (group commit) and carry a
+ * sequence number, so replaying them on top of a snapshot can skip the already folded ones.
+ */
+public class WalletJournal implements AutoCloseable {
+
+    private static final String SEGMENT_FORMAT = "segment-%06d.log";
+    private static final String SEGMENT_PREFIX = "segment-";
+    private static final String SEGMENT_SUFFIX = ".log";
+    private static final String WRITER_THREAD_NAME = "wallet-journal-writer";
+    private static final String COMPACTION_THREAD_NAME = "wallet-journal-compaction";
+    private static final int HEADER_BYTES = 2 * Integer.BYTES;
+    private static final int MAX_BATCH = 1024;
+    private static final long MAX_POLL_MILLIS = 100;
+    private final Path directory;
+    private final FsyncPolicy fsyncPolicy;
+    private final long fsyncIntervalNanos;
+    private final BlockingQueue<PendingWrite> pendingWrites;
+    private final ReadWriteLock mutationLock;
+    private long lastSequence;
+    private volatile long segment;
+    private FileChannel channel;
+    private boolean hasUnforcedWrites;
+    private long lastForceTime;
+    private Thread writerThread;
+    private ScheduledExecutorService compactionScheduler;
+    private volatile boolean isStarted;
+    private volatile IOException writeFailure;
+
+    private record PendingWrite(ByteBuffer record, CompletableFuture<Void> written) {
+        boolean isRotation() {
+            return record == null;
+        }
+    }
+
+    public WalletJournal(Path directory, FsyncPolicy fsyncPolicy, Duration fsyncInterval) throws IOException {
+        this.directory = directory;
+        this.fsyncPolicy = fsyncPolicy;
+        this.fsyncIntervalNanos = fsyncInterval.toNanos();
+        this.pendingWrites = new LinkedBlockingQueue<>();
+        this.mutationLock = new ReentrantReadWriteLock();
+        Files.createDirectories(directory);
+    }
+
+    /**
+     * Replays every record of every segment in order. A torn record at the end of the last segment,
+     * left by a crash in the middle of a write, is cut off. Any other invalid record fails the replay,
+     * since applying the later segments without the rest of its segment would diverge the wallets.
+     */
+    public void replay(ObjLongConsumer<JournalEvent> consumer) throws IOException {
+        List<Path> segments = listSegments();
+        for (int i = 0; i < segments.size(); i++) {
+            long validBytes = replaySegment(segments.get(i), consumer);
+            if (validBytes < Files.size(segments.get(i))) {
+                if (i < segments.size() - 1) {
+                    throw new IOException("Corrupt wallet journal record in " + segments.get(i)
+                            + " at offset " + validBytes);
+                }
+                try (FileChannel file = FileChannel.open(segments.get(i), StandardOpenOption.WRITE)) {
+                    file.truncate(validBytes);
+                }
+            }
+            segment = segmentNumber(segments.get(i));
+        }
+    }
+
+    private long replaySegment(Path segmentFile, ObjLongConsumer<JournalEvent> consumer) throws IOException {
+        try (FileChannel file = FileChannel.open(segmentFile, StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = file.map(FileChannel.MapMode.READ_ONLY, 0, file.size());
+            CRC32 crc = new CRC32();
+
+            while (buffer.remaining() >= HEADER_BYTES) {
+                int start = buffer.position();
+                int length = buffer.getInt();
+                int checksum = buffer.getInt();
+                if (length <= 0 || length > buffer.remaining()) {
+                    return start;
+                }
+
+                byte[] payload = new byte[length];
+                buffer.get(payload);
+                crc.reset();
+                crc.update(payload);
+                if ((int) crc.getValue() != checksum) {
+                    return start;
+                }
+
+                DataInputStream input = new DataInputStream(new ByteArrayInputStream(payload));
+                long sequence = input.readLong();
+                lastSequence = Math.max(lastSequence, sequence);
+                consumer.accept(decode(input), sequence);
+            }
+            return buffer.position();
+        }
+    }
+
+    /**
+     * Makes sure new sequence numbers continue after the ones already folded into the snapshot.
+     */
+    public void advanceSequence(long sequence) {
+        lastSequence = Math.max(lastSequence, sequence);
+    }
+
+    public void start() throws IOException {
+        channel = openSegment(segment == 0 ? 1 : segment);
+        lastForceTime = System.nanoTime();
+        isStarted = true;
+        writerThread = new Thread(this::writeLoop, WRITER_THREAD_NAME);
+        writerThread.start();
+    }
+
+    /**
+     * Schedules periodic folding of the journal into a snapshot written by the given writer.
+     */
+    public void startCompaction(SnapshotWriter<?> snapshotWriter, Duration interval) {
+        compactionScheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, COMPACTION_THREAD_NAME);
+            thread.setDaemon(true);
+            return thread;
+        });
+        compactionScheduler.scheduleWithFixedDelay(() -> {
+            try {
+                compact(snapshotWriter);
+            } catch (IOException | RuntimeException e) {
+                System.err.println("Could not compact the wallet journal: " + e.getMessage());
+            }
+        }, interval.toMillis(), interval.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Must be called before mutating a wallet whose change is appended to the journal,
+     * so that compaction never captures a half applied change.
+     */
+    public void beginMutation() {
+        mutationLock.readLock().lock();
+    }
+
+    public void endMutation() {
+        mutationLock.readLock().unlock();
+    }
+
+    /**
+     * Appends the event. With {@link FsyncPolicy#EVERY_EVENT} the call returns after the event is on disk.
+     * The other policies write in the background, so a failed write is reported by every later append
+     * and the caller stops applying changes which can no longer be journaled.
+     * @return the sequence number of the event
+     * @throws IOException if the event or an earlier one could not be written
+     */
+    public long append(JournalEvent event) throws IOException {
+        IOException failure = writeFailure;
+        if (failure != null) {
+            throw new IOException("The wallet journal failed to write an earlier event", failure);
+        }
+
+        long sequence;
+        CompletableFuture<Void> written = new CompletableFuture<>();
+        synchronized (pendingWrites) {
+            sequence = ++lastSequence;
+            pendingWrites.add(new PendingWrite(encode(sequence, event), written));
+        }
+
+        if (fsyncPolicy == FsyncPolicy.EVERY_EVENT) {
+            awaitWritten(written);
+        }
+        return sequence;
+    }
+
+    /**
+     * Starts a new segment, folds everything written before it into a snapshot and deletes the old segments.
+     */
+    public <T> void compact(SnapshotWriter<T> snapshotWriter) throws IOException {
+        T snapshot;
+        long sealedSegment;
+        mutationLock.writeLock().lock();
+        try {
+            sealedSegment = segment;
+            CompletableFuture<Void> rotated = new CompletableFuture<>();
+            pendingWrites.add(new PendingWrite(null, rotated));
+            awaitWritten(rotated);
+            snapshot = snapshotWriter.capture();
+        } finally {
+            mutationLock.writeLock().unlock();
+        }
+
+        snapshotWriter.write(snapshot);
+        for (var segmentFile : listSegments()) {
+            if (segmentNumber(segmentFile) <= sealedSegment) {
+                Files.deleteIfExists(segmentFile);
+            }
+        }
+    }
+
+    private void awaitWritten(CompletableFuture<Void> written) throws IOException {
+        try {
+            written.join();
+        } catch (CompletionException e) {
+            throw new IOException("Could not write to the wallet journal", e.getCause());
+        }
+    }
+
+    private void writeLoop() {
+        List<PendingWrite> batch = new ArrayList<>();
+        long pollMillis = Math.min(MAX_POLL_MILLIS, Math.max(1, TimeUnit.NANOSECONDS.toMillis(fsyncIntervalNanos)));
+        while (isStarted || !pendingWrites.isEmpty()) {
+            try {
+                PendingWrite first = pendingWrites.poll(pollMillis, TimeUnit.MILLISECONDS);
+                if (first != null) {
+                    batch.add(first);
+                    pendingWrites.drainTo(batch, MAX_BATCH);
+                    writeBatch(batch);
+                    batch.clear();
+                }
+                forceIfIntervalElapsed();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (IOException e) {
+                System.err.println("Could not write to the wallet journal: " + e.getMessage());
+                if (writeFailure == null) {
+                    writeFailure = e;
+                }
+                for (var pending : batch) {
+                    pending.written().completeExceptionally(e);
+                }
+                batch.clear();
+            }
+        }
+    }
+
+    private void writeBatch(List<PendingWrite> batch) throws IOException {
+        List<ByteBuffer> records = new ArrayList<>();
+        List<CompletableFuture<Void>> completed = new ArrayList<>();
+        for (var pending : batch) {
+            if (pending.isRotation()) {
+                writeRecords(records);
+                channel.force(false);
+                channel.close();
+                channel = openSegment(segment + 1);
+                completeAll(completed);
+                pending.written().complete(null);
+            } else {
+                records.add(pending.record());
+                completed.add(pending.written());
+            }
+        }
+
+        writeRecords(records);
+        if (fsyncPolicy == FsyncPolicy.EVERY_EVENT && !completed.isEmpty()) {
+            channel.force(false);
+            hasUnforcedWrites = false;
+        }
+        completeAll(completed);
+    }
+
+    private void writeRecords(List<ByteBuffer> records) throws IOException {
+        if (records.isEmpty()) {
+            return;
+        }
+
+        ByteBuffer[] buffers = records.toArray(new ByteBuffer[0]);
+        long remaining = 0;
+        for (var buffer : buffers) {
+            remaining += buffer.remaining();
+        }
+        while (remaining > 0) {
+            remaining -= channel.write(buffers);
+        }
+        hasUnforcedWrites = true;
+        records.clear();
+    }
+
+    private void completeAll(List<CompletableFuture<Void>> completed) {
+        for (var future : completed) {
+            future.complete(null);
+        }
+        completed.clear();
+    }
+
+    private void forceIfIntervalElapsed() throws IOException {
+        if (fsyncPolicy != FsyncPolicy.INTERVAL || !hasUnforcedWrites) {
+            return;
+        }
+
+        long now = System.nanoTime();
+        if (now - lastForceTime >= fsyncIntervalNanos) {
+            channel.force(false);
+            hasUnforcedWrites = false;
+            lastForceTime = now;
+        }
+    }
+
+    private FileChannel openSegment(long number) throws IOException {
+        segment = number;
+        return FileChannel.open(directory.resolve(String.format(SEGMENT_FORMAT, number)),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+    }
+
+    private List<Path> listSegments() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(file -> file.getFileName().toString().startsWith(SEGMENT_PREFIX))
+                    .sorted()
+                    .toList();
+        }
+    }
+
+    private static long segmentNumber(Path segmentFile) {
+        String name = segmentFile.getFileName().toString();
+        return Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+    }
+
+    private static ByteBuffer encode(long sequence, JournalEvent event) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream output = new DataOutputStream(bytes)) {
+            output.writeLong(sequence);
+            output.writeByte(event.type().ordinal());
+            output.writeUTF(event.username());
+            switch (event.type()) {
+                case REGISTER -> output.writeUTF(event.password());
+                case DEPOSIT -> output.writeDouble(event.amount());
+                case BUY -> {
+                    writeCrypto(output, event.crypto());
+                    output.writeDouble(event.amount());
+                }
+                case SELL -> writeCrypto(output, event.crypto());
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        byte[] payload = bytes.toByteArray();
+        CRC32 crc = new CRC32();
+        crc.update(payload);
+        ByteBuffer record = ByteBuffer.allocate(HEADER_BYTES + payload.length);
+        record.putInt(payload.length);
+        record.putInt((int) crc.getValue());
+        record.put(payload);
+        return record.flip();
+    }
+
+    private static void writeCrypto(DataOutputStream output, CryptoInformation crypto) throws IOException {
+        output.writeUTF(crypto.assetID());
+        output.writeUTF(crypto.assetName());
+        output.writeInt(crypto.isCrypto());
+        output.writeDouble(crypto.price());
+    }
+
+    private static JournalEvent decode(DataInputStream input) throws IOException {
+        JournalEvent.Type type = JournalEvent.Type.values()[input.readByte()];
+        String username = input.readUTF();
+        return switch (type) {
+            case REGISTER -> JournalEvent.register(username, input.readUTF());
+            case DEPOSIT -> JournalEvent.deposit(username, input.readDouble());
+            case BUY -> JournalEvent.buy(username, readCrypto(input), input.readDouble());
+            case SELL -> JournalEvent.sell(username, readCrypto(input));
+        };
+    }
+
+    private static CryptoInformation readCrypto(DataInputStream input) throws IOException {
+        return new CryptoInformation(input.readUTF(), input.readUTF(), input.readInt(), input.readDouble());
+    }
+
+    @Override
+    public void close() throws IOException {
+        isStarted = false;
+        if (compactionScheduler != null) {
+            compactionScheduler.shutdownNow();
+        }
+        if (writerThread != null) {
+            try {
+                writerThread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        if (channel != null && channel.isOpen()) {
+            channel.force(false);
+            channel.close();
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package bg.sofia.uni.fmi.mjt.cryptowallet.loadtest;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * Weighted mix of commands, written as {@code command=weight} pairs separated by commas,
+ * e.g. {@code buy=30,sell=20,get-wallet-summary=50}.
+ */
+public class CommandMix {
+
+    static final Set<String> COMMANDS = Set.of("register", "login", "deposit-money", "list-offerings", "buy", "sell",
+            "get-wallet-summary", "get-wallet-overall-summary");
+    private static final String PAIRS_SEPARATOR = ",";
+    private static final String WEIGHT_SEPARATOR = "=";
+    private final List<String> commands;
+    private final int[] cumulativeWeights;
+
+    private CommandMix(List<String> commands, int[] cumulativeWeights) {
+        this.commands = commands;
+        this.cumulativeWeights = cumulativeWeights;
+    }
+
+    public static CommandMix parse(String mix) {
+        List<String> commands = new ArrayList<>();
+        List<Integer> weights = new ArrayList<>();
+        for (var pair : mix.split(PAIRS_SEPARATOR)) {
+            String[] parts = pair.strip().split(WEIGHT_SEPARATOR);
+            if (parts.length != 2 || !COMMANDS.contains(parts[0]) || commands.contains(parts[0])) {
+                throw new IllegalArgumentException("Invalid command mix entry: " + pair);
+            }
+
+            int weight;
+            try {
+                weight = Integer.parseInt(parts[1]);
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Invalid weight of " + parts[0], e);
+            }
+            if (weight <= 0) {
+                throw new IllegalArgumentException("The weight of " + parts[0] + " must be positive");
+            }
+            commands.add(parts[0]);
+            weights.add(weight);
+        }
+
+        int[] cumulativeWeights = new int[weights.size()];
+        int total = 0;
+        for (int i = 0; i < cumulativeWeights.length; i++) {
+            total = Math.addExact(total, weights.get(i));
+            cumulativeWeights[i] = total;
+        }
+        return new CommandMix(Collections.unmodifiableList(commands), cumulativeWeights);
+    }
+
+    public List<String> getCommands() {
+        return commands;
+    }
+
+    public String next(Random random) {
+        int point = random.nextInt(cumulativeWeights[cumulativeWeights.length - 1]);
+        for (int i = 0; i < cumulativeWeights.length; i++) {
+            if (point < cumulativeWeights[i]) {
+                return commands.get(i);
+            }
+        }
+        throw new IllegalStateException("The weights do not cover " + point);
+    }
+}
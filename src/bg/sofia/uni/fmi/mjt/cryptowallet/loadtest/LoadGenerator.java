@@ -0,0 +1,275 @@
+package bg.sofia.uni.fmi.mjt.cryptowallet.loadtest;
+
+import bg.sofia.uni.fmi.mjt.cryptowallet.CryptoServer;
+import bg.sofia.uni.fmi.mjt.cryptowallet.coinapi.StubCoinApi;
+import bg.sofia.uni.fmi.mjt.cryptowallet.metrics.LatencyHistogram;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Headless closed-loop load generator speaking the text protocol of {@code CryptoClient}.
+ * Every connection runs on its own virtual thread, registers and logs in its own user and then sends
+ * commands picked from a {@link CommandMix}, each one after the response to the previous one.
+ * Connections use {@link Socket} streams, whose blocking reads park the virtual thread, unlike the
+ * channel streams which would pin its carrier thread and serialize the connections.
+ * Connections are opened gradually during the warmup, whose latencies are not recorded.
+ * <p>
+ * Configured with system properties (cryptowallet.load.*); with {@code cryptowallet.load.embedded=true}
+ * it starts a server with {@link StubCoinApi} prices in the same JVM, so the run needs no network access.
+ */
+public class LoadGenerator {
+
+    private static final String HOST_PROPERTY = "cryptowallet.load.host";
+    private static final String PORT_PROPERTY = "cryptowallet.load.port";
+    private static final String CONNECTIONS_PROPERTY = "cryptowallet.load.connections";
+    private static final String WARMUP_PROPERTY = "cryptowallet.load.warmupSeconds";
+    private static final String DURATION_PROPERTY = "cryptowallet.load.durationSeconds";
+    private static final String MIX_PROPERTY = "cryptowallet.load.mix";
+    private static final String EMBEDDED_PROPERTY = "cryptowallet.load.embedded";
+    private static final String ASSETS_PROPERTY = "cryptowallet.load.assets";
+    private static final String REACTORS_PROPERTY = "cryptowallet.load.reactors";
+    private static final String DEFAULT_HOST = "localhost";
+    private static final int DEFAULT_CONNECTIONS = 1000;
+    private static final int DEFAULT_WARMUP_SECONDS = 10;
+    private static final int DEFAULT_DURATION_SECONDS = 60;
+    private static final int DEFAULT_ASSETS = 50;
+    private static final String DEFAULT_MIX = "login=2,deposit-money=8,list-offerings=10,buy=25,sell=15,"
+            + "get-wallet-summary=25,get-wallet-overall-summary=15";
+    private static final String SPACE = " ";
+    private static final String ID = "ID:";
+    private static final String PASSWORD = "load-password";
+    private static final String DISCONNECT = "disconnect";
+    private static final String LIST_OFFERINGS = "list-offerings";
+    private static final String SUCCESSFUL_BUY = "You successfully bought";
+    private static final String INITIAL_DEPOSIT = "deposit-money 1000000000";
+    private static final String DEPOSIT = "deposit-money 100";
+    private static final String INVESTMENT = " 10";
+    private static final int SERVER_START_ATTEMPTS = 100;
+    private static final long SERVER_START_PAUSE_MILLIS = 50;
+    private static final double[] PERCENTILES = {50.0, 90.0, 99.0, 99.9};
+    private static final long NANOS_IN_MICRO = 1000;
+    private static final double NANOS_IN_SECOND = 1_000_000_000.0;
+    private final InetSocketAddress address;
+    private final int connections;
+    private final Duration warmup;
+    private final Duration duration;
+    private final CommandMix mix;
+    private final Map<String, LatencyHistogram> histograms;
+    private final LongAdder failedConnections = new LongAdder();
+    private final String runID = Long.toString(System.currentTimeMillis(), Character.MAX_RADIX);
+    private List<String> assetIDs;
+    private long measureFrom;
+    private long deadline;
+
+    public LoadGenerator(InetSocketAddress address, int connections, Duration warmup, Duration duration,
+                         CommandMix mix) {
+        this.address = address;
+        this.connections = connections;
+        this.warmup = warmup;
+        this.duration = duration;
+        this.mix = mix;
+        this.histograms = new LinkedHashMap<>();
+        for (var command : mix.getCommands()) {
+            histograms.put(command, new LatencyHistogram());
+        }
+    }
+
+    public void run() throws IOException {
+        assetIDs = fetchAssetIDs();
+        if (assetIDs.isEmpty()) {
+            throw new IOException("The server does not offer any cryptocurrencies");
+        }
+
+        long start = System.nanoTime();
+        measureFrom = start + warmup.toNanos();
+        deadline = measureFrom + duration.toNanos();
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < connections; i++) {
+                long startDelay = warmup.toNanos() * i / connections;
+                int connection = i;
+                executor.execute(() -> runConnection(connection, start + startDelay));
+            }
+        }
+    }
+
+    private List<String> fetchAssetIDs() throws IOException {
+        List<String> ids = new ArrayList<>();
+        try (Socket socket = new Socket(address.getHostString(), address.getPort());
+             BufferedReader reader = newReader(socket);
+             PrintWriter writer = newWriter(socket)) {
+            writer.println(LIST_OFFERINGS);
+            String reply = reader.readLine();
+            for (var word : reply == null ? new String[0] : reply.split(SPACE)) {
+                if (word.startsWith(ID)) {
+                    ids.add(word.substring(ID.length()));
+                }
+            }
+            writer.println(DISCONNECT);
+            reader.readLine();
+        }
+        return ids;
+    }
+
+    private void runConnection(int connection, long startAt) {
+        try {
+            TimeUnit.NANOSECONDS.sleep(startAt - System.nanoTime());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        }
+
+        Random random = new Random(connection);
+        String username = "load-" + runID + "-" + connection;
+        List<String> boughtAssets = new ArrayList<>();
+        int registrations = 0;
+        try (Socket socket = new Socket(address.getHostString(), address.getPort());
+             BufferedReader reader = newReader(socket);
+             PrintWriter writer = newWriter(socket)) {
+
+            send(writer, reader, "register", "register " + username + SPACE + PASSWORD);
+            send(writer, reader, "login", "login " + username + SPACE + PASSWORD);
+            send(writer, reader, "deposit-money", INITIAL_DEPOSIT);
+            while (System.nanoTime() < deadline) {
+                String command = mix.next(random);
+                String request = switch (command) {
+                    case "register" -> "register " + username + "-" + registrations++ + SPACE + PASSWORD;
+                    case "login" -> "login " + username + SPACE + PASSWORD;
+                    case "deposit-money" -> DEPOSIT;
+                    case "buy" -> "buy " + assetIDs.get(random.nextInt(assetIDs.size())) + INVESTMENT;
+                    case "sell" -> "sell " + (boughtAssets.isEmpty() ? assetIDs.get(0)
+                            : boughtAssets.remove(random.nextInt(boughtAssets.size())));
+                    default -> command;
+                };
+
+                String reply = send(writer, reader, command, request);
+                if (reply == null) {
+                    failedConnections.increment();
+                    return;
+                }
+                if (reply.startsWith(SUCCESSFUL_BUY)) {
+                    boughtAssets.add(reply.substring(SUCCESSFUL_BUY.length()).strip());
+                }
+            }
+            writer.println(DISCONNECT);
+            reader.readLine();
+        } catch (IOException e) {
+            failedConnections.increment();
+        }
+    }
+
+    private static BufferedReader newReader(Socket socket) throws IOException {
+        return new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+    }
+
+    private static PrintWriter newWriter(Socket socket) throws IOException {
+        return new PrintWriter(new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8), true);
+    }
+
+    private String send(PrintWriter writer, BufferedReader reader, String command, String request)
+            throws IOException {
+        long start = System.nanoTime();
+        writer.println(request);
+        String reply = reader.readLine();
+        long end = System.nanoTime();
+
+        LatencyHistogram histogram = histograms.get(command);
+        if (reply != null && histogram != null && start >= measureFrom && end <= deadline) {
+            histogram.record(end - start);
+        }
+        return reply;
+    }
+
+    public StringBuilder report() {
+        double seconds = duration.toNanos() / NANOS_IN_SECOND;
+        StringBuilder builder = new StringBuilder();
+        builder.append(String.format("%-28s %10s %10s", "command", "count", "ops/s"));
+        for (var percentile : PERCENTILES) {
+            builder.append(String.format(" %10s", "p" + percentile + "(us)"));
+        }
+        builder.append(String.format(" %10s%n", "max(us)"));
+
+        long total = 0;
+        for (var entry : histograms.entrySet()) {
+            LatencyHistogram histogram = entry.getValue();
+            long count = histogram.getCount();
+            total += count;
+            builder.append(String.format("%-28s %10d %10.1f", entry.getKey(), count, count / seconds));
+            for (var percentile : PERCENTILES) {
+                builder.append(String.format(" %10d", histogram.getValueAtPercentile(percentile) / NANOS_IN_MICRO));
+            }
+            builder.append(String.format(" %10d%n", histogram.getMax() / NANOS_IN_MICRO));
+        }
+
+        builder.append(String.format("%-28s %10d %10.1f%n", "total", total, total / seconds));
+        builder.append("Failed connections: ").append(failedConnections.sum());
+        return builder;
+    }
+
+    private static void awaitServer(InetSocketAddress address) throws IOException, InterruptedException {
+        for (int i = 0; i < SERVER_START_ATTEMPTS; i++) {
+            try {
+                new Socket(address.getHostString(), address.getPort()).close();
+                return;
+            } catch (IOException e) {
+                Thread.sleep(SERVER_START_PAUSE_MILLIS);
+            }
+        }
+        throw new IOException("The server did not start at " + address);
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        InetSocketAddress address = new InetSocketAddress(System.getProperty(HOST_PROPERTY, DEFAULT_HOST),
+                Integer.getInteger(PORT_PROPERTY, CryptoServer.SERVER_PORT));
+        LoadGenerator generator = new LoadGenerator(address,
+                Integer.getInteger(CONNECTIONS_PROPERTY, DEFAULT_CONNECTIONS),
+                Duration.ofSeconds(Integer.getInteger(WARMUP_PROPERTY, DEFAULT_WARMUP_SECONDS)),
+                Duration.ofSeconds(Integer.getInteger(DURATION_PROPERTY, DEFAULT_DURATION_SECONDS)),
+                CommandMix.parse(System.getProperty(MIX_PROPERTY, DEFAULT_MIX)));
+
+        CryptoServer server = null;
+        Thread serverThread = null;
+        if (Boolean.getBoolean(EMBEDDED_PROPERTY)) {
+            server = new CryptoServer(address.getPort(),
+                    new StubCoinApi(Integer.getInteger(ASSETS_PROPERTY, DEFAULT_ASSETS), 0));
+            server.setWorkerReactors(Integer.getInteger(REACTORS_PROPERTY,
+                    Runtime.getRuntime().availableProcessors()));
+            CryptoServer embeddedServer = server;
+            serverThread = new Thread(() -> {
+                try {
+                    embeddedServer.start();
+                } catch (IOException e) {
+                    System.err.println("The embedded server failed: " + e.getMessage());
+                }
+            });
+            serverThread.start();
+        }
+
+        try {
+            awaitServer(address);
+            generator.run();
+            System.out.println(generator.report());
+        } finally {
+            if (server != null) {
+                server.stop();
+                serverThread.join();
+            }
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package bg.sofia.uni.fmi.mjt.cryptowallet.logging;
+
+import java.nio.file.Path;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Access log of the server written through an {@link AsyncAppender}, so logging a request only queues a record.
+ * Requests are logged at {@link LogLevel#INFO} and only one in {@code sampleRate} of them is kept;
+ * connection events are logged at the level they are given and are never sampled.
+ */
+public class AccessLog implements AutoCloseable {
+
+    private static final int CAPACITY = 8192;
+    private static final long MAX_FILE_BYTES = 10 * 1024 * 1024;
+    private static final int MAX_FILES = 5;
+    private static final int SATURATED_SAMPLE_RATE = 10;
+    private static final String THREAD_NAME = "access-log-writer";
+    private final LogLevel level;
+    private final int sampleRate;
+    private final AsyncAppender<AccessRecord> appender;
+
+    public AccessLog(Path file, LogLevel level, int sampleRate) {
+        if (sampleRate < 1) {
+            throw new IllegalArgumentException("The sample rate must be positive");
+        }
+
+        this.level = level;
+        this.sampleRate = sampleRate;
+        this.appender = new AsyncAppender<>(file, CAPACITY, MAX_FILE_BYTES, MAX_FILES, SATURATED_SAMPLE_RATE,
+                AccessRecord::format, THREAD_NAME);
+    }
+
+    public boolean isEnabled(LogLevel recordLevel) {
+        return recordLevel != LogLevel.OFF && recordLevel.compareTo(level) >= 0;
+    }
+
+    /**
+     * Decides whether the current request should be logged, so the caller can skip building its record.
+     */
+    public boolean sampleRequest() {
+        return isEnabled(LogLevel.INFO) && (sampleRate == 1 || ThreadLocalRandom.current().nextInt(sampleRate) == 0);
+    }
+
+    public void request(String user, String command, long latencyNanos, int responseBytes) {
+        appender.append(AccessRecord.request(user, command, latencyNanos, responseBytes));
+    }
+
+    public void connection(LogLevel recordLevel, String event, String client) {
+        if (isEnabled(recordLevel)) {
+            appender.append(AccessRecord.connection(recordLevel, event, client));
+        }
+    }
+
+    /**
+     * @return how many records were not written because the log could not keep up
+     */
+    public long getDroppedCount() {
+        return appender.getDroppedCount();
+    }
+
+    @Override
+    public void close() {
+        appender.close();
+    }
+}
@@ -0,0 +1,34 @@
+package bg.sofia.uni.fmi.mjt.cryptowallet.logging;
+
+import java.time.Instant;
+
+/**
+ * One line of the access log with a fixed set of fields, {@code -} for the ones that do not apply:
+ * {@code <timestamp> <level> <event> client=<address> user=<user> command=<command> latency_us=<n> bytes=<n>}.
+ */
+public record AccessRecord(long timestampMillis, LogLevel level, String event, String client, String user,
+                           String command, long latencyMicros, int responseBytes) {
+
+    private static final String NONE = "-";
+    private static final String REQUEST = "request";
+    private static final long NANOS_IN_MICRO = 1000;
+
+    public static AccessRecord request(String user, String command, long latencyNanos, int responseBytes) {
+        return new AccessRecord(System.currentTimeMillis(), LogLevel.INFO, REQUEST, NONE, orNone(user),
+                orNone(command), latencyNanos / NANOS_IN_MICRO, responseBytes);
+    }
+
+    public static AccessRecord connection(LogLevel level, String event, String client) {
+        return new AccessRecord(System.currentTimeMillis(), level, event, orNone(client), NONE, NONE, 0, 0);
+    }
+
+    private static String orNone(String value) {
+        return value == null || value.isBlank() ? NONE : value;
+    }
+
+    public String format() {
+        return Instant.ofEpochMilli(timestampMillis) + " " + level + " " + event + " client=" + client
+                + " user=" + user + " command=" + command + " latency_us=" + latencyMicros
+                + " bytes=" + responseBytes;
+    }
+}
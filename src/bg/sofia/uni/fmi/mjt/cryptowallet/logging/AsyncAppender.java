@@ -0,0 +1,255 @@
+package bg.sofia.uni.fmi.mjt.cryptowallet.logging;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Function;
+
+/**
+ * Appends records to a file from a single background thread, so the threads producing them never do I/O.
+ * Records wait in a {@link RingBuffer}; the writer formats them in batches, flushes once per batch and
+ * rotates the file when it grows over the maximum size, keeping {@code file.1} ... {@code file.N}.
+ * <p>
+ * When the buffer is three quarters full only every {@code sampleRate}-th record is accepted, and when
+ * it is full records are dropped. Both count as dropped and the writer notes every increase in the file.
+ * A batch which cannot be written is dropped too, and the writer reopens the file after backing off.
+ */
+public class AsyncAppender<E> implements AutoCloseable {
+
+    private static final int BATCH_SIZE = 256;
+    private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+    private static final long MIN_BACKOFF_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+    private static final long MAX_BACKOFF_NANOS = TimeUnit.SECONDS.toNanos(5);
+    private static final int ONE_BYTE_LIMIT = 0x80;
+    private static final int TWO_BYTES_LIMIT = 0x800;
+    private static final int SATURATION_NUMERATOR = 3;
+    private static final int SATURATION_DENOMINATOR = 4;
+    private final Path file;
+    private final long maxFileBytes;
+    private final int maxFiles;
+    private final int sampleRate;
+    private final Function<E, String> formatter;
+    private final String threadName;
+    private final RingBuffer<E> buffer;
+    private final LongAdder dropped = new LongAdder();
+    private final AtomicLong saturatedRecords = new AtomicLong();
+    private final AtomicBoolean started = new AtomicBoolean();
+    private volatile boolean closed;
+    private Thread writerThread;
+    private BufferedWriter writer;
+    private long fileBytes;
+    private long reportedDropped;
+    private int batchRecords;
+
+    public AsyncAppender(Path file, int capacity, long maxFileBytes, int maxFiles, int sampleRate,
+                         Function<E, String> formatter, String threadName) {
+        this.file = file;
+        this.maxFileBytes = maxFileBytes;
+        this.maxFiles = maxFiles;
+        this.sampleRate = sampleRate;
+        this.formatter = formatter;
+        this.threadName = threadName;
+        this.buffer = new RingBuffer<>(capacity);
+    }
+
+    /**
+     * Never blocks. The writer thread is started with the first record.
+     *
+     * @return false if the record was dropped
+     */
+    public boolean append(E record) {
+        if (closed) {
+            dropped.increment();
+            return false;
+        }
+        if (started.compareAndSet(false, true)) {
+            startWriter();
+        }
+
+        boolean saturated = buffer.size() * SATURATION_DENOMINATOR >= buffer.capacity() * SATURATION_NUMERATOR;
+        if ((saturated && saturatedRecords.incrementAndGet() % sampleRate != 0) || !buffer.offer(record)) {
+            dropped.increment();
+            return false;
+        }
+        return true;
+    }
+
+    public long getDroppedCount() {
+        return dropped.sum();
+    }
+
+    private synchronized void startWriter() {
+        writerThread = new Thread(this::runWriter, threadName);
+        writerThread.setDaemon(true);
+        writerThread.start();
+        try {
+            Runtime.getRuntime().addShutdownHook(new Thread(this::close));
+        } catch (IllegalStateException e) {
+            closed = true;
+        }
+    }
+
+    private void runWriter() {
+        long backoffNanos = MIN_BACKOFF_NANOS;
+        try {
+            while (true) {
+                boolean closing = closed;
+                int written;
+                try {
+                    written = writeBatch();
+                    backoffNanos = MIN_BACKOFF_NANOS;
+                } catch (IOException e) {
+                    System.err.println("Could not write to " + file + ": " + e.getMessage());
+                    dropped.add(batchRecords);
+                    closeWriter();
+                    if (closing) {
+                        break;
+                    }
+                    LockSupport.parkNanos(this, backoffNanos);
+                    backoffNanos = Math.min(backoffNanos * 2, MAX_BACKOFF_NANOS);
+                    continue;
+                }
+
+                if (written > 0) {
+                    continue;
+                }
+                if (closing) {
+                    break;
+                }
+                LockSupport.parkNanos(this, IDLE_PARK_NANOS);
+            }
+        } finally {
+            closeWriter();
+        }
+    }
+
+    private int writeBatch() throws IOException {
+        int written = 0;
+        batchRecords = 0;
+        E record;
+        while (written < BATCH_SIZE && (record = buffer.poll()) != null) {
+            batchRecords++;
+            writeLine(formatter.apply(record));
+            written++;
+        }
+
+        long droppedNow = dropped.sum();
+        if (droppedNow > reportedDropped) {
+            writeLine("dropped=" + (droppedNow - reportedDropped) + " total_dropped=" + droppedNow);
+            reportedDropped = droppedNow;
+            written++;
+        }
+        if (written > 0) {
+            writer.flush();
+        }
+        return written;
+    }
+
+    private void writeLine(String line) throws IOException {
+        String text = line + System.lineSeparator();
+        long textBytes = utf8Length(text);
+        if (writer == null) {
+            openWriter();
+        } else if (fileBytes + textBytes > maxFileBytes) {
+            rotate();
+        }
+
+        writer.write(text);
+        fileBytes += textBytes;
+    }
+
+    /**
+     * @return the number of bytes of the text in UTF-8, without encoding it
+     */
+    static long utf8Length(String text) {
+        long bytes = 0;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c < ONE_BYTE_LIMIT) {
+                bytes++;
+            } else if (c < TWO_BYTES_LIMIT) {
+                bytes += 2;
+            } else if (Character.isHighSurrogate(c) && i + 1 < text.length()
+                    && Character.isLowSurrogate(text.charAt(i + 1))) {
+                bytes += 4;
+                i++;
+            } else {
+                bytes += 3;
+            }
+        }
+        return bytes;
+    }
+
+    private void openWriter() throws IOException {
+        Path parent = file.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8, StandardOpenOption.CREATE,
+                StandardOpenOption.APPEND);
+        fileBytes = Files.size(file);
+    }
+
+    private void rotate() throws IOException {
+        BufferedWriter rotated = writer;
+        writer = null;
+        rotated.close();
+        for (int i = maxFiles - 1; i >= 1; i--) {
+            Path older = Path.of(file + "." + i);
+            if (Files.exists(older)) {
+                Files.move(older, Path.of(file + "." + (i + 1)), StandardCopyOption.REPLACE_EXISTING);
+            }
+        }
+        if (maxFiles > 0) {
+            Files.move(file, Path.of(file + ".1"), StandardCopyOption.REPLACE_EXISTING);
+        } else {
+            Files.delete(file);
+        }
+        openWriter();
+    }
+
+    private void closeWriter() {
+        if (writer == null) {
+            return;
+        }
+
+        try {
+            writer.close();
+        } catch (IOException e) {
+            System.err.println("Could not close " + file + ": " + e.getMessage());
+        } finally {
+            writer = null;
+        }
+    }
+
+    /**
+     * Stops accepting records and waits until the writer has written the buffered ones.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        Thread thread;
+        synchronized (this) {
+            thread = writerThread;
+        }
+        if (thread == null || thread == Thread.currentThread()) {
+            return;
+        }
+
+        LockSupport.unpark(thread);
+        try {
+            thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
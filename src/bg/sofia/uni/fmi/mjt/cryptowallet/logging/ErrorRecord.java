@@ -0,0 +1,29 @@
+package bg.sofia.uni.fmi.mjt.cryptowallet.logging;
+
+import java.time.Instant;
+
+/**
+ * One line of the error log: {@code <timestamp> user=<user> command=<command> exception=<class> message="..."}.
+ */
+public record ErrorRecord(long timestampMillis, String user, String command, String exceptionClass,
+                          String message) {
+
+    private static final String NONE = "-";
+
+    public static ErrorRecord of(String user, String command, Throwable exception) {
+        return new ErrorRecord(System.currentTimeMillis(), user == null ? NONE : user,
+                command == null ? NONE : command, exception.getClass().getName(), exception.getMessage());
+    }
+
+    public String format() {
+        return Instant.ofEpochMilli(timestampMillis) + " user=" + user + " command=" + command
+                + " exception=" + exceptionClass + " message=\"" + escape(message) + "\"";
+    }
+
+    private static String escape(String text) {
+        if (text == null) {
+            return "";
+        }
+        return text.strip().replace("\\", "\\\\").replace("\"", "\\\"").replace("\r", "\\r").replace("\n", "\\n");
+    }
+}
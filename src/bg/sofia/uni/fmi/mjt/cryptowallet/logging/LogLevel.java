@@ -0,0 +1,12 @@
+package bg.sofia.uni.fmi.mjt.cryptowallet.logging;
+
+/**
+ * Levels of the access log from the most to the least verbose. {@link #OFF} disables the log.
+ */
+public enum LogLevel {
+    DEBUG,
+    INFO,
+    WARN,
+    ERROR,
+    OFF
+}
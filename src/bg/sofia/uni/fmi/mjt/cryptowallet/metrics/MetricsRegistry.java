@@ -0,0 +1,101 @@
+package bg.sofia.uni.fmi.mjt.cryptowallet.metrics;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * Named counters, gauges and latency histograms of the server. Metrics are created on first use and should be
+ * looked up once and kept in fields, so recording on the hot path is a single LongAdder or histogram update.
+ * Histograms record nanoseconds and are reported in microseconds.
+ */
+public class MetricsRegistry {
+
+    private static final String THREAD_NAME = "metrics-dumper";
+    private static final String TEMPORARY_SUFFIX = ".tmp";
+    private static final long NANOS_IN_MICRO = 1000;
+    private final Map<String, LongAdder> counters = new ConcurrentHashMap<>();
+    private final Map<String, LongSupplier> gauges = new ConcurrentHashMap<>();
+    private final Map<String, LatencyHistogram> histograms = new ConcurrentHashMap<>();
+    private ScheduledExecutorService dumper;
+
+    public LongAdder counter(String name) {
+        return counters.computeIfAbsent(name, ignored -> new LongAdder());
+    }
+
+    public void gauge(String name, LongSupplier value) {
+        gauges.put(name, value);
+    }
+
+    public LatencyHistogram histogram(String name) {
+        return histograms.computeIfAbsent(name, ignored -> new LatencyHistogram());
+    }
+
+    /**
+     * @param separator put between the metrics, which never contain spaces themselves
+     */
+    public StringBuilder report(String separator) {
+        Map<String, String> entries = new TreeMap<>();
+        counters.forEach((name, counter) -> entries.put(name, name + "=" + counter.sum()));
+        gauges.forEach((name, gauge) -> entries.put(name, name + "=" + gauge.getAsLong()));
+        histograms.forEach((name, histogram) -> entries.put(name, name + ":count=" + histogram.getCount()
+                + ",p50=" + micros(histogram.getValueAtPercentile(50.0))
+                + ",p90=" + micros(histogram.getValueAtPercentile(90.0))
+                + ",p99=" + micros(histogram.getValueAtPercentile(99.0))
+                + ",p99.9=" + micros(histogram.getValueAtPercentile(99.9))
+                + ",max=" + micros(histogram.getMax())));
+
+        return new StringBuilder(String.join(separator, entries.values()));
+    }
+
+    private static String micros(long nanos) {
+        return nanos / NANOS_IN_MICRO + "us";
+    }
+
+    /**
+     * Writes the report to the given file every interval, one metric per line, replacing the previous report.
+     */
+    public synchronized void startDumping(Path file, Duration interval) {
+        if (dumper != null) {
+            throw new IllegalStateException("The metrics are already dumped");
+        }
+
+        dumper = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, THREAD_NAME);
+            thread.setDaemon(true);
+            return thread;
+        });
+        dumper.scheduleAtFixedRate(() -> {
+            try {
+                dump(file);
+            } catch (IOException e) {
+                System.err.println("Could not dump the metrics: " + e.getMessage());
+            }
+        }, interval.toMillis(), interval.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    public synchronized void stopDumping() {
+        if (dumper != null) {
+            dumper.shutdownNow();
+            dumper = null;
+        }
+    }
+
+    public void dump(Path file) throws IOException {
+        Path temporaryFile = Path.of(file + TEMPORARY_SUFFIX);
+        Files.writeString(temporaryFile, report(System.lineSeparator()).append(System.lineSeparator()),
+                StandardCharsets.UTF_8);
+        Files.move(temporaryFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+}
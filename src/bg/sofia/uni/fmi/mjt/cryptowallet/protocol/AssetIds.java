@@ -0,0 +1,47 @@
+package bg.sofia.uni.fmi.mjt.cryptowallet.protocol;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Assigns small integers to asset IDs for the binary protocol. An asset keeps its integer for the lifetime
+ * of the server, across price snapshots, so a client may keep the mapping it got from list-offerings.
+ */
+public class AssetIds {
+
+    private static final int INITIAL_CAPACITY = 64;
+    private final Map<String, Integer> ids = new ConcurrentHashMap<>();
+    private volatile String[] assetIDs = new String[INITIAL_CAPACITY];
+    private int count;
+
+    public int intern(String assetID) {
+        Integer id = ids.get(assetID);
+        if (id != null) {
+            return id;
+        }
+
+        synchronized (this) {
+            id = ids.get(assetID);
+            if (id == null) {
+                String[] current = assetIDs;
+                if (count == current.length) {
+                    current = Arrays.copyOf(current, current.length * 2);
+                }
+                id = count++;
+                current[id] = assetID;
+                assetIDs = current;
+                ids.put(assetID, id);
+            }
+            return id;
+        }
+    }
+
+    /**
+     * @return the asset ID with the given integer or null if no asset has it
+     */
+    public String assetID(int id) {
+        String[] current = assetIDs;
+        return id >= 0 && id < current.length ? current[id] : null;
+    }
+}
@@ -0,0 +1,162 @@
+package bg.sofia.uni.fmi.mjt.cryptowallet.protocol;
+
+import bg.sofia.uni.fmi.mjt.cryptowallet.command.CommandType;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A blocking client of the {@link BinaryProtocol} for bots. Every method sends one request and waits for its
+ * response, so an instance must not be shared between threads.
+ */
+public class BinaryCryptoClient implements AutoCloseable {
+
+    private final Socket socket;
+    private final DataInputStream input;
+    private final DataOutputStream output;
+    private final ByteBuffer request = ByteBuffer.allocate(BinaryProtocol.MAX_REQUEST_BYTES);
+
+    public BinaryCryptoClient(String host, int port) throws IOException {
+        socket = new Socket(host, port);
+        try {
+            input = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            output = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+            output.write(BinaryProtocol.HANDSHAKE);
+            output.flush();
+
+            byte[] handshake = new byte[BinaryProtocol.HANDSHAKE.length];
+            input.readFully(handshake);
+            if (!Arrays.equals(handshake, BinaryProtocol.HANDSHAKE)) {
+                throw new IOException("The server does not support the binary protocol");
+            }
+        } catch (IOException e) {
+            socket.close();
+            throw e;
+        }
+    }
+
+    public BinaryResponse register(String username, String password) throws IOException {
+        start(CommandType.REGISTER);
+        putString(username);
+        putString(password);
+        return send();
+    }
+
+    public BinaryResponse login(String username, String password) throws IOException {
+        start(CommandType.LOGIN);
+        putString(username);
+        putString(password);
+        return send();
+    }
+
+    public BinaryResponse depositMoney(double amount) throws IOException {
+        start(CommandType.DEPOSIT);
+        request.putDouble(amount);
+        return send();
+    }
+
+    public BinaryResponse buy(int asset, double amount) throws IOException {
+        start(CommandType.BUY);
+        request.putInt(asset).putDouble(amount);
+        return send();
+    }
+
+    public BinaryResponse sell(int asset) throws IOException {
+        start(CommandType.SELL);
+        request.putInt(asset);
+        return send();
+    }
+
+    public BinaryResponse getWalletSummary() throws IOException {
+        start(CommandType.SUMMARY);
+        return send();
+    }
+
+    public BinaryResponse getWalletOverallSummary() throws IOException {
+        start(CommandType.SUMMARY_OVERALL);
+        return send();
+    }
+
+    public BinaryResponse stats() throws IOException {
+        start(CommandType.STATS);
+        return send();
+    }
+
+    public BinaryResponse disconnect() throws IOException {
+        start(CommandType.DISCONNECT);
+        return send();
+    }
+
+    /**
+     * @return the offerings, or an empty list when the cryptocurrencies are unavailable
+     */
+    public List<Offering> listOfferings() throws IOException {
+        start(CommandType.LIST_OFFERINGS);
+        writeRequest();
+        ByteBuffer payload = ByteBuffer.wrap(readPayload());
+        List<Offering> offerings = new ArrayList<>();
+        if (payload.get() != BinaryProtocol.STATUS_OK) {
+            return offerings;
+        }
+
+        int count = payload.getInt();
+        for (int i = 0; i < count; i++) {
+            offerings.add(new Offering(payload.getInt(), getString(payload), getString(payload),
+                    payload.getDouble()));
+        }
+        return offerings;
+    }
+
+    private void start(CommandType type) {
+        request.clear();
+        request.put(type.opcode());
+    }
+
+    private void putString(String string) {
+        BinaryProtocol.putString(request, string.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private BinaryResponse send() throws IOException {
+        writeRequest();
+        byte[] payload = readPayload();
+        return new BinaryResponse(payload[0] == BinaryProtocol.STATUS_OK,
+                new String(payload, 1, payload.length - 1, StandardCharsets.UTF_8));
+    }
+
+    private void writeRequest() throws IOException {
+        output.writeShort(request.position());
+        output.write(request.array(), 0, request.position());
+        output.flush();
+    }
+
+    /**
+     * Reads a response frame and returns what follows its opcode: the status and the payload.
+     */
+    private byte[] readPayload() throws IOException {
+        int length = input.readInt();
+        input.readByte();
+        byte[] payload = new byte[length - 1];
+        input.readFully(payload);
+        return payload;
+    }
+
+    private static String getString(ByteBuffer buffer) {
+        byte[] bytes = new byte[Short.toUnsignedInt(buffer.getShort())];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public void close() throws IOException {
+        socket.close();
+    }
+}
@@ -0,0 +1,94 @@
+package bg.sofia.uni.fmi.mjt.cryptowallet.protocol;
+
+import bg.sofia.uni.fmi.mjt.cryptowallet.coinapi.dto.CryptoInformation;
+import bg.sofia.uni.fmi.mjt.cryptowallet.command.CommandType;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+
+/**
+ * The binary protocol which bot clients negotiate on the port of the text protocol. All numbers are big-endian.
+ * <ul>
+ *     <li>Handshake: the client sends {@link #HANDSHAKE} as its first bytes and the server echoes it back.
+ *     A text request never starts with a zero byte, so the server tells the protocols apart by it.</li>
+ *     <li>Request: {@code u16 length, u8 opcode, arguments}, where the length counts the bytes after it.
+ *     Strings are {@code u16 length, UTF-8 bytes}, amounts are IEEE doubles and assets are the
+ *     {@code i32} IDs from list-offerings. register and login take two strings, deposit-money an amount,
+ *     buy an asset and an amount, sell an asset and the rest no arguments. There is no batch command;
+ *     a binary client sends several frames without waiting instead.</li>
+ *     <li>Response: {@code i32 length, u8 opcode, u8 status, payload}. An error or the text of a summary or of
+ *     the statistics is sent as UTF-8 until the end of the frame. list-offerings returns
+ *     {@code i32 count} entries of {@code i32 asset, string asset ID, string name, f64 price}.</li>
+ * </ul>
+ */
+public final class BinaryProtocol {
+
+    public static final byte[] HANDSHAKE = {0, 'C', 'W', 1};
+    public static final byte STATUS_OK = 0;
+    public static final byte STATUS_ERROR = 1;
+    public static final int REQUEST_HEADER_BYTES = Short.BYTES;
+    public static final int RESPONSE_HEADER_BYTES = Integer.BYTES;
+    public static final int MAX_REQUEST_BYTES = 0xFFFF;
+    private static final ByteBuffer[] EMPTY_RESPONSES = new ByteBuffer[Byte.MAX_VALUE + 1];
+
+    static {
+        for (CommandType type : CommandType.values()) {
+            EMPTY_RESPONSES[type.opcode()] = encodeResponse(type, STATUS_OK, new byte[0]).asReadOnlyBuffer();
+        }
+    }
+
+    private BinaryProtocol() {
+    }
+
+    /**
+     * Encodes a response whose payload is the given text, or nothing when it is null.
+     * Successful responses without a payload are shared and returned as duplicates.
+     */
+    public static ByteBuffer encodeResponse(CommandType type, boolean isSuccessful, String text) {
+        if (text == null) {
+            return isSuccessful ? EMPTY_RESPONSES[type.opcode()].duplicate()
+                    : encodeResponse(type, STATUS_ERROR, new byte[0]);
+        }
+        return encodeResponse(type, isSuccessful ? STATUS_OK : STATUS_ERROR, text.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static ByteBuffer encodeResponse(CommandType type, byte status, byte[] payload) {
+        ByteBuffer response = ByteBuffer.allocate(RESPONSE_HEADER_BYTES + 2 + payload.length);
+        response.putInt(2 + payload.length).put(type.opcode()).put(status).put(payload);
+        return response.flip();
+    }
+
+    /**
+     * Encodes the list-offerings response of the given cryptocurrencies into a read-only direct buffer.
+     */
+    public static ByteBuffer encodeOfferings(Collection<CryptoInformation> cryptocurrencies, AssetIds assetIds) {
+        int size = RESPONSE_HEADER_BYTES + 2 + Integer.BYTES;
+        byte[][] assetIDs = new byte[cryptocurrencies.size()][];
+        byte[][] names = new byte[cryptocurrencies.size()][];
+        int i = 0;
+        for (var crypto : cryptocurrencies) {
+            assetIDs[i] = crypto.assetID().getBytes(StandardCharsets.UTF_8);
+            names[i] = crypto.assetName() == null ? new byte[0] : crypto.assetName().getBytes(StandardCharsets.UTF_8);
+            size += Integer.BYTES + 2 * Short.BYTES + assetIDs[i].length + names[i].length + Double.BYTES;
+            i++;
+        }
+
+        ByteBuffer response = ByteBuffer.allocateDirect(size);
+        response.putInt(size - RESPONSE_HEADER_BYTES).put(CommandType.LIST_OFFERINGS.opcode()).put(STATUS_OK)
+                .putInt(cryptocurrencies.size());
+        i = 0;
+        for (var crypto : cryptocurrencies) {
+            response.putInt(assetIds.intern(crypto.assetID()));
+            putString(response, assetIDs[i]);
+            putString(response, names[i]);
+            response.putDouble(crypto.price());
+            i++;
+        }
+        return response.flip().asReadOnlyBuffer();
+    }
+
+    static void putString(ByteBuffer buffer, byte[] string) {
+        buffer.putShort((short) string.length).put(string);
+    }
+}
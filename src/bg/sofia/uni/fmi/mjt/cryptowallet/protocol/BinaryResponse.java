@@ -0,0 +1,7 @@
+package bg.sofia.uni.fmi.mjt.cryptowallet.protocol;
+
+/**
+ * A response of the binary protocol. The text is empty for successful commands which return nothing.
+ */
+public record BinaryResponse(boolean isSuccessful, String text) {
+}
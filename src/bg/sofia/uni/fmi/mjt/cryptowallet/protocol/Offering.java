@@ -0,0 +1,7 @@
+package bg.sofia.uni.fmi.mjt.cryptowallet.protocol;
+
+/**
+ * One entry of the binary list-offerings response; {@code asset} is the integer to buy and sell it with.
+ */
+public record Offering(int asset, String assetID, String name, double price) {
+}
@@ -0,0 +1,181 @@
+package bg.sofia.uni.fmi.mjt.cryptowallet.snapshot;
+
+import bg.sofia.uni.fmi.mjt.cryptowallet.coinapi.dto.CryptoInformation;
+import bg.sofia.uni.fmi.mjt.cryptowallet.user.BoughtCryptocurrency;
+import bg.sofia.uni.fmi.mjt.cryptowallet.user.SoldCryptocurrency;
+import bg.sofia.uni.fmi.mjt.cryptowallet.user.User;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Versioned binary format of the registered users.
+ * <p>
+ * Layout (big-endian): magic, version, string table, cryptocurrency table, users.
+ * Asset IDs and names are stored once in the string table and every distinct
+ * {@link CryptoInformation} once in the cryptocurrency table, so bought and sold
+ * cryptocurrencies refer to them by index and share the same instances after loading.
+ */
+public final class BinaryUsersSnapshot {
+
+    private static final int MAGIC = 0x43575553;
+    private static final short VERSION = 1;
+
+    private BinaryUsersSnapshot() {
+    }
+
+    public static byte[] encode(Collection<User> users) {
+        Map<String, Integer> strings = new HashMap<>();
+        Map<CryptoInformation, Integer> cryptos = new HashMap<>();
+        for (var user : users) {
+            for (var bought : user.getBoughtCryptocurrencies()) {
+                intern(bought.boughtCrypto(), strings, cryptos);
+            }
+            for (var sold : user.getSoldCryptocurrencies()) {
+                intern(sold.soldCrypto(), strings, cryptos);
+            }
+        }
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream output = new DataOutputStream(bytes)) {
+            output.writeInt(MAGIC);
+            output.writeShort(VERSION);
+            writeStringTable(output, strings);
+            writeCryptoTable(output, cryptos, strings);
+
+            output.writeInt(users.size());
+            for (var user : users) {
+                writeString(output, user.getUsername());
+                output.writeShort(user.getPasswordBytes().length);
+                output.write(user.getPasswordBytes());
+                output.writeDouble(user.getMoney());
+                output.writeLong(user.getJournalSequence());
+
+                output.writeInt(user.getBoughtCryptocurrencies().size());
+                for (var bought : user.getBoughtCryptocurrencies()) {
+                    output.writeInt(cryptos.get(bought.boughtCrypto()));
+                    output.writeDouble(bought.buyingPrice());
+                    output.writeDouble(bought.buyingCount());
+                }
+                output.writeInt(user.getSoldCryptocurrencies().size());
+                for (var sold : user.getSoldCryptocurrencies()) {
+                    output.writeInt(cryptos.get(sold.soldCrypto()));
+                    output.writeDouble(sold.sellingPrice());
+                    output.writeDouble(sold.profit());
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    private static void intern(CryptoInformation crypto, Map<String, Integer> strings,
+                               Map<CryptoInformation, Integer> cryptos) {
+        strings.putIfAbsent(crypto.assetID(), strings.size());
+        strings.putIfAbsent(crypto.assetName(), strings.size());
+        cryptos.putIfAbsent(crypto, cryptos.size());
+    }
+
+    private static void writeStringTable(DataOutputStream output, Map<String, Integer> strings) throws IOException {
+        String[] table = new String[strings.size()];
+        strings.forEach((string, index) -> table[index] = string);
+
+        output.writeInt(table.length);
+        for (var string : table) {
+            writeString(output, string);
+        }
+    }
+
+    private static void writeCryptoTable(DataOutputStream output, Map<CryptoInformation, Integer> cryptos,
+                                         Map<String, Integer> strings) throws IOException {
+        CryptoInformation[] table = new CryptoInformation[cryptos.size()];
+        cryptos.forEach((crypto, index) -> table[index] = crypto);
+
+        output.writeInt(table.length);
+        for (var crypto : table) {
+            output.writeInt(strings.get(crypto.assetID()));
+            output.writeInt(strings.get(crypto.assetName()));
+            output.writeInt(crypto.isCrypto());
+            output.writeDouble(crypto.price());
+        }
+    }
+
+    private static void writeString(DataOutputStream output, String string) throws IOException {
+        byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+        output.writeShort(bytes.length);
+        output.write(bytes);
+    }
+
+    public static List<User> read(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            return decode(buffer);
+        }
+    }
+
+    public static List<User> decode(ByteBuffer buffer) throws IOException {
+        if (buffer.getInt() != MAGIC) {
+            throw new IOException("The file is not a users snapshot");
+        }
+        short version = buffer.getShort();
+        if (version != VERSION) {
+            throw new IOException("Unsupported users snapshot version " + version);
+        }
+
+        String[] strings = new String[buffer.getInt()];
+        for (int i = 0; i < strings.length; i++) {
+            strings[i] = readString(buffer);
+        }
+        CryptoInformation[] cryptos = new CryptoInformation[buffer.getInt()];
+        for (int i = 0; i < cryptos.length; i++) {
+            cryptos[i] = new CryptoInformation(strings[buffer.getInt()], strings[buffer.getInt()],
+                    buffer.getInt(), buffer.getDouble());
+        }
+
+        int usersCount = buffer.getInt();
+        List<User> users = new ArrayList<>(usersCount);
+        for (int i = 0; i < usersCount; i++) {
+            String username = readString(buffer);
+            byte[] passwordBytes = new byte[Short.toUnsignedInt(buffer.getShort())];
+            buffer.get(passwordBytes);
+            double money = buffer.getDouble();
+            long journalSequence = buffer.getLong();
+
+            int boughtCount = buffer.getInt();
+            List<BoughtCryptocurrency> bought = new ArrayList<>(boughtCount);
+            for (int j = 0; j < boughtCount; j++) {
+                bought.add(new BoughtCryptocurrency(cryptos[buffer.getInt()], buffer.getDouble(), buffer.getDouble()));
+            }
+            int soldCount = buffer.getInt();
+            Set<SoldCryptocurrency> sold = new HashSet<>();
+            for (int j = 0; j < soldCount; j++) {
+                sold.add(new SoldCryptocurrency(cryptos[buffer.getInt()], buffer.getDouble(), buffer.getDouble()));
+            }
+
+            users.add(User.restore(username, passwordBytes, money, bought, sold, journalSequence));
+        }
+        return users;
+    }
+
+    private static String readString(ByteBuffer buffer) {
+        byte[] bytes = new byte[Short.toUnsignedInt(buffer.getShort())];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,51 @@
+package bg.sofia.uni.fmi.mjt.cryptowallet.snapshot;
+
+import bg.sofia.uni.fmi.mjt.cryptowallet.coinapi.dto.CryptoInformation;
+import bg.sofia.uni.fmi.mjt.cryptowallet.user.BoughtCryptocurrency;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+
+final class BoughtCryptocurrencyTypeAdapter extends TypeAdapter<BoughtCryptocurrency> {
+
+    private static final String CRYPTO = "boughtCrypto";
+    private static final String PRICE = "buyingPrice";
+    private static final String COUNT = "buyingCount";
+
+    private final TypeAdapter<CryptoInformation> cryptoAdapter;
+
+    BoughtCryptocurrencyTypeAdapter(TypeAdapter<CryptoInformation> cryptoAdapter) {
+        this.cryptoAdapter = cryptoAdapter;
+    }
+
+    @Override
+    public void write(JsonWriter writer, BoughtCryptocurrency bought) throws IOException {
+        writer.beginObject();
+        writer.name(CRYPTO);
+        cryptoAdapter.write(writer, bought.boughtCrypto());
+        writer.name(PRICE).value(bought.buyingPrice());
+        writer.name(COUNT).value(bought.buyingCount());
+        writer.endObject();
+    }
+
+    @Override
+    public BoughtCryptocurrency read(JsonReader reader) throws IOException {
+        CryptoInformation crypto = null;
+        double price = 0.0;
+        double count = 0.0;
+
+        reader.beginObject();
+        while (reader.hasNext()) {
+            switch (reader.nextName()) {
+                case CRYPTO -> crypto = cryptoAdapter.read(reader);
+                case PRICE -> price = reader.nextDouble();
+                case COUNT -> count = reader.nextDouble();
+                default -> reader.skipValue();
+            }
+        }
+        reader.endObject();
+        return new BoughtCryptocurrency(crypto, price, count);
+    }
+}
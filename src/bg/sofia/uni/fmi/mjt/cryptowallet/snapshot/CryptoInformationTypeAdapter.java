@@ -0,0 +1,57 @@
+package bg.sofia.uni.fmi.mjt.cryptowallet.snapshot;
+
+import bg.sofia.uni.fmi.mjt.cryptowallet.coinapi.dto.CryptoInformation;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Writes the exposed fields of a {@link CryptoInformation} under the names of CoinAPI.
+ * Equal cryptocurrencies read by the same adapter are the same instance, so the lots of all users
+ * share them the way the binary snapshot does.
+ */
+final class CryptoInformationTypeAdapter extends TypeAdapter<CryptoInformation> {
+
+    private static final String ASSET_ID = "asset_id";
+    private static final String NAME = "name";
+    private static final String IS_CRYPTO = "type_is_crypto";
+    private static final String PRICE = "price_usd";
+
+    private final Map<CryptoInformation, CryptoInformation> instances = new HashMap<>();
+
+    @Override
+    public void write(JsonWriter writer, CryptoInformation crypto) throws IOException {
+        writer.beginObject();
+        writer.name(ASSET_ID).value(crypto.assetID());
+        writer.name(NAME).value(crypto.assetName());
+        writer.name(PRICE).value(crypto.price());
+        writer.endObject();
+    }
+
+    @Override
+    public CryptoInformation read(JsonReader reader) throws IOException {
+        String assetID = null;
+        String assetName = null;
+        int isCrypto = 0;
+        double price = 0.0;
+
+        reader.beginObject();
+        while (reader.hasNext()) {
+            switch (reader.nextName()) {
+                case ASSET_ID -> assetID = JsonUsersSnapshot.nextString(reader);
+                case NAME -> assetName = JsonUsersSnapshot.nextString(reader);
+                case IS_CRYPTO -> isCrypto = reader.nextInt();
+                case PRICE -> price = reader.nextDouble();
+                default -> reader.skipValue();
+            }
+        }
+        reader.endObject();
+        CryptoInformation crypto = new CryptoInformation(assetID, assetName, isCrypto, price);
+        CryptoInformation shared = instances.putIfAbsent(crypto, crypto);
+        return shared == null ? crypto : shared;
+    }
+}
@@ -0,0 +1,145 @@
+package bg.sofia.uni.fmi.mjt.cryptowallet.snapshot;
+
+import bg.sofia.uni.fmi.mjt.cryptowallet.coinapi.dto.CryptoInformation;
+import bg.sofia.uni.fmi.mjt.cryptowallet.user.User;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.BufferedWriter;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * The JSON users file, an array of the exposed fields of the users.
+ * <p>
+ * Users are written and read one at a time by hand-written type adapters instead of Gson reflection,
+ * so neither the whole file nor a tree of it is held in memory, only the users themselves.
+ * The output is the same as the one of {@code excludeFieldsWithoutExposeAnnotation} Gson.
+ */
+public final class JsonUsersSnapshot {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final String TEMPORARY_SUFFIX = ".tmp";
+    private static final TypeAdapter<User> USER_WRITER = userAdapter();
+
+    private JsonUsersSnapshot() {
+    }
+
+    private static TypeAdapter<User> userAdapter() {
+        TypeAdapter<CryptoInformation> cryptoAdapter = new CryptoInformationTypeAdapter().nullSafe();
+        return new UserTypeAdapter(new BoughtCryptocurrencyTypeAdapter(cryptoAdapter).nullSafe(),
+                new SoldCryptocurrencyTypeAdapter(cryptoAdapter).nullSafe()).nullSafe();
+    }
+
+    public static void write(Writer writer, Iterable<User> users) throws IOException {
+        JsonWriter jsonWriter = new JsonWriter(writer);
+        jsonWriter.setHtmlSafe(true);
+        jsonWriter.setSerializeNulls(false);
+        jsonWriter.beginArray();
+        for (var user : users) {
+            USER_WRITER.write(jsonWriter, user);
+        }
+        jsonWriter.endArray();
+        jsonWriter.flush();
+    }
+
+    public static byte[] encode(Collection<User> users) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (Writer writer = new BufferedWriter(new OutputStreamWriter(bytes, StandardCharsets.UTF_8), BUFFER_SIZE)) {
+            write(writer, users);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Writes the users to a temporary file through a buffered channel and moves it over the given file,
+     * so the file keeps its previous content if the server stops while writing. The users are taken from
+     * the iterable one at a time, so it may create each one only when it is written.
+     */
+    public static void write(Path file, Iterable<User> users) throws IOException {
+        Path temporaryFile = Path.of(file + TEMPORARY_SUFFIX);
+        try (FileChannel channel = FileChannel.open(temporaryFile, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            Writer writer = new BufferedWriter(Channels.newWriter(channel, StandardCharsets.UTF_8.newEncoder(),
+                    BUFFER_SIZE), BUFFER_SIZE);
+            write(writer, users);
+            writer.flush();
+            channel.force(true);
+        }
+        Files.move(temporaryFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    public static List<User> read(Reader reader) throws IOException {
+        List<User> users = new ArrayList<>();
+        read(reader, users::add);
+        return users;
+    }
+
+    /**
+     * Passes every user to the consumer as soon as it is read, so only the users the consumer keeps stay
+     * in memory.
+     */
+    public static void read(Reader reader, Consumer<User> consumer) throws IOException {
+        JsonReader jsonReader = new JsonReader(reader);
+        try {
+            if (jsonReader.peek() == JsonToken.NULL) {
+                jsonReader.nextNull();
+                return;
+            }
+        } catch (EOFException e) {
+            // an empty file has no users
+            return;
+        }
+
+        TypeAdapter<User> userReader = userAdapter();
+        jsonReader.beginArray();
+        while (jsonReader.hasNext()) {
+            User user = userReader.read(jsonReader);
+            if (user != null) {
+                consumer.accept(user);
+            }
+        }
+        jsonReader.endArray();
+    }
+
+    public static List<User> read(Path file) throws IOException {
+        List<User> users = new ArrayList<>();
+        read(file, users::add);
+        return users;
+    }
+
+    public static void read(Path file, Consumer<User> consumer) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+             Reader reader = Channels.newReader(channel, StandardCharsets.UTF_8.newDecoder(), BUFFER_SIZE)) {
+            read(reader, consumer);
+        }
+    }
+
+    static String nextString(JsonReader reader) throws IOException {
+        if (reader.peek() == JsonToken.NULL) {
+            reader.nextNull();
+            return null;
+        }
+        return reader.nextString();
+    }
+}
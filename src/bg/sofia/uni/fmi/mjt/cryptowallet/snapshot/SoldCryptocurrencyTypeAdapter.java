@@ -0,0 +1,51 @@
+package bg.sofia.uni.fmi.mjt.cryptowallet.snapshot;
+
+import bg.sofia.uni.fmi.mjt.cryptowallet.coinapi.dto.CryptoInformation;
+import bg.sofia.uni.fmi.mjt.cryptowallet.user.SoldCryptocurrency;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+
+final class SoldCryptocurrencyTypeAdapter extends TypeAdapter<SoldCryptocurrency> {
+
+    private static final String CRYPTO = "soldCrypto";
+    private static final String PRICE = "sellingPrice";
+    private static final String PROFIT = "profit";
+
+    private final TypeAdapter<CryptoInformation> cryptoAdapter;
+
+    SoldCryptocurrencyTypeAdapter(TypeAdapter<CryptoInformation> cryptoAdapter) {
+        this.cryptoAdapter = cryptoAdapter;
+    }
+
+    @Override
+    public void write(JsonWriter writer, SoldCryptocurrency sold) throws IOException {
+        writer.beginObject();
+        writer.name(CRYPTO);
+        cryptoAdapter.write(writer, sold.soldCrypto());
+        writer.name(PRICE).value(sold.sellingPrice());
+        writer.name(PROFIT).value(sold.profit());
+        writer.endObject();
+    }
+
+    @Override
+    public SoldCryptocurrency read(JsonReader reader) throws IOException {
+        CryptoInformation crypto = null;
+        double price = 0.0;
+        double profit = 0.0;
+
+        reader.beginObject();
+        while (reader.hasNext()) {
+            switch (reader.nextName()) {
+                case CRYPTO -> crypto = cryptoAdapter.read(reader);
+                case PRICE -> price = reader.nextDouble();
+                case PROFIT -> profit = reader.nextDouble();
+                default -> reader.skipValue();
+            }
+        }
+        reader.endObject();
+        return new SoldCryptocurrency(crypto, price, profit);
+    }
+}
@@ -0,0 +1,119 @@
+package bg.sofia.uni.fmi.mjt.cryptowallet.snapshot;
+
+import bg.sofia.uni.fmi.mjt.cryptowallet.user.BoughtCryptocurrency;
+import bg.sofia.uni.fmi.mjt.cryptowallet.user.SoldCryptocurrency;
+import bg.sofia.uni.fmi.mjt.cryptowallet.user.User;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Writes the exposed fields of a {@link User} in the order and under the names the users file has always had,
+ * and reads them back through {@link User#restore}.
+ */
+final class UserTypeAdapter extends TypeAdapter<User> {
+
+    private static final String USERNAME = "username";
+    private static final String PASSWORD_BYTES = "passwordBytes";
+    private static final String MONEY = "money";
+    private static final String BOUGHT = "boughtCryptocurrencies";
+    private static final String SOLD = "soldCryptocurrencies";
+    private static final String JOURNAL_SEQUENCE = "journalSequence";
+
+    private final TypeAdapter<BoughtCryptocurrency> boughtAdapter;
+    private final TypeAdapter<SoldCryptocurrency> soldAdapter;
+
+    UserTypeAdapter(TypeAdapter<BoughtCryptocurrency> boughtAdapter, TypeAdapter<SoldCryptocurrency> soldAdapter) {
+        this.boughtAdapter = boughtAdapter;
+        this.soldAdapter = soldAdapter;
+    }
+
+    @Override
+    public void write(JsonWriter writer, User user) throws IOException {
+        writer.beginObject();
+        writer.name(USERNAME).value(user.getUsername());
+        writer.name(PASSWORD_BYTES).beginArray();
+        for (var passwordByte : user.getPasswordBytes()) {
+            writer.value(passwordByte);
+        }
+        writer.endArray();
+        writer.name(MONEY).value(user.getMoney());
+
+        writer.name(BOUGHT).beginArray();
+        for (var bought : user.getBoughtCryptocurrencies()) {
+            boughtAdapter.write(writer, bought);
+        }
+        writer.endArray();
+        if (user.getSoldCryptocurrencies() != null) {
+            writer.name(SOLD).beginArray();
+            for (var sold : user.getSoldCryptocurrencies()) {
+                soldAdapter.write(writer, sold);
+            }
+            writer.endArray();
+        }
+
+        writer.name(JOURNAL_SEQUENCE).value(user.getJournalSequence());
+        writer.endObject();
+    }
+
+    @Override
+    public User read(JsonReader reader) throws IOException {
+        String username = null;
+        byte[] passwordBytes = new byte[0];
+        double money = 0.0;
+        List<BoughtCryptocurrency> bought = new ArrayList<>();
+        Set<SoldCryptocurrency> sold = new HashSet<>();
+        long journalSequence = 0;
+
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String name = reader.nextName();
+            if (reader.peek() == JsonToken.NULL) {
+                reader.nextNull();
+                continue;
+            }
+
+            switch (name) {
+                case USERNAME -> username = reader.nextString();
+                case PASSWORD_BYTES -> passwordBytes = readBytes(reader);
+                case MONEY -> money = reader.nextDouble();
+                case BOUGHT -> {
+                    reader.beginArray();
+                    while (reader.hasNext()) {
+                        bought.add(boughtAdapter.read(reader));
+                    }
+                    reader.endArray();
+                }
+                case SOLD -> {
+                    reader.beginArray();
+                    while (reader.hasNext()) {
+                        sold.add(soldAdapter.read(reader));
+                    }
+                    reader.endArray();
+                }
+                case JOURNAL_SEQUENCE -> journalSequence = reader.nextLong();
+                default -> reader.skipValue();
+            }
+        }
+        reader.endObject();
+        return User.restore(username, passwordBytes, money, bought, sold, journalSequence);
+    }
+
+    private static byte[] readBytes(JsonReader reader) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        reader.beginArray();
+        while (reader.hasNext()) {
+            bytes.write(reader.nextInt());
+        }
+        reader.endArray();
+        return bytes.toByteArray();
+    }
+}
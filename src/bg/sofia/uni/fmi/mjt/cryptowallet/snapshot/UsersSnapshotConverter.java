@@ -0,0 +1,36 @@
+package bg.sofia.uni.fmi.mjt.cryptowallet.snapshot;
+
+import bg.sofia.uni.fmi.mjt.cryptowallet.user.User;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/**
+ * Converts the JSON users file into the binary users snapshot.
+ * Usage: UsersSnapshotConverter [jsonFile] [binaryFile]
+ */
+public class UsersSnapshotConverter {
+
+    private static final String DEFAULT_JSON_FILE = "UsersInformation.txt";
+    private static final String DEFAULT_BINARY_FILE = "UsersInformation.bin";
+    private static final String TEMPORARY_SUFFIX = ".tmp";
+
+    public static void convert(Path jsonFile, Path binaryFile) throws IOException {
+        Set<User> users = new LinkedHashSet<>(JsonUsersSnapshot.read(jsonFile));
+
+        Path temporaryFile = Path.of(binaryFile + TEMPORARY_SUFFIX);
+        Files.write(temporaryFile, BinaryUsersSnapshot.encode(users));
+        Files.move(temporaryFile, binaryFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    public static void main(String[] args) throws IOException {
+        Path jsonFile = Path.of(args.length > 0 ? args[0] : DEFAULT_JSON_FILE);
+        Path binaryFile = Path.of(args.length > 1 ? args[1] : DEFAULT_BINARY_FILE);
+        convert(jsonFile, binaryFile);
+        System.out.println("Converted " + jsonFile + " to " + binaryFile);
+    }
+}
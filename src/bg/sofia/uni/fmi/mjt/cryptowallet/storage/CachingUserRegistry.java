@@ -0,0 +1,229 @@
+package bg.sofia.uni.fmi.mjt.cryptowallet.storage;
+
+import bg.sofia.uni.fmi.mjt.cryptowallet.user.User;
+import bg.sofia.uni.fmi.mjt.cryptowallet.user.UserLocks;
+import bg.sofia.uni.fmi.mjt.cryptowallet.user.UserRegistry;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Lock;
+
+/**
+ * Keeps only the working set of the users in memory and reads the others from the repository when they log in.
+ * A user is pinned from its login or registration until it is released, e.g. while it is logged in.
+ * Released users stay cached in least recently used order and are evicted once more than the maximum
+ * number of users is cached. The server saves every change of a user to the repository, so an evicted user
+ * is only dropped, but never while an operation holds its lock.
+ */
+public class CachingUserRegistry extends UserRegistry {
+
+    private static final int INITIAL_CAPACITY = 16;
+    private static final float LOAD_FACTOR = 0.75f;
+    private final UserRepository repository;
+    private final UserLocks userLocks;
+    private final int maxCachedUsers;
+    private final Map<String, CachedUser> pinnedUsers = new HashMap<>();
+    private final LinkedHashMap<String, User> idleUsers = new LinkedHashMap<>(INITIAL_CAPACITY, LOAD_FACTOR, true);
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    private static final class CachedUser {
+        private final User user;
+        private int pins;
+
+        private CachedUser(User user) {
+            this.user = user;
+        }
+    }
+
+    public CachingUserRegistry(UserRepository repository, UserLocks userLocks, int maxCachedUsers) {
+        if (maxCachedUsers < 0) {
+            throw new IllegalArgumentException("The maximum number of cached users cannot be negative");
+        }
+
+        this.repository = repository;
+        this.userLocks = userLocks;
+        this.maxCachedUsers = maxCachedUsers;
+    }
+
+    /**
+     * Registers and pins the user if there is no cached or stored user with the same username.
+     * The user stays pinned until it is released, so it is not evicted before the server saves it.
+     */
+    @Override
+    public synchronized boolean register(User user) {
+        if (pinnedUsers.containsKey(user.getUsername()) || idleUsers.containsKey(user.getUsername())
+                || find(user.getUsername()) != null) {
+            return false;
+        }
+
+        pin(user);
+        return true;
+    }
+
+    @Override
+    public synchronized void unregister(User user) {
+        CachedUser pinned = pinnedUsers.get(user.getUsername());
+        if (pinned != null && pinned.user == user) {
+            pinnedUsers.remove(user.getUsername());
+        }
+        idleUsers.remove(user.getUsername(), user);
+    }
+
+    /**
+     * @return the pinned user with the given username and password or null if there is no such user
+     */
+    @Override
+    public synchronized User login(String username, String password) {
+        User user = load(username);
+        if (user != null && hasPassword(user, password)) {
+            pin(user);
+        } else {
+            user = null;
+        }
+
+        evictIdleUsers();
+        return user;
+    }
+
+    @Override
+    public synchronized User get(String username) {
+        User user = load(username);
+        evictIdleUsers();
+        return user;
+    }
+
+    @Override
+    public synchronized void release(User user) {
+        CachedUser pinned = pinnedUsers.get(user.getUsername());
+        if (pinned == null || pinned.user != user || --pinned.pins > 0) {
+            return;
+        }
+
+        pinnedUsers.remove(user.getUsername());
+        idleUsers.put(user.getUsername(), user);
+        evictIdleUsers();
+    }
+
+    /**
+     * Replaces the cached user with the same username. A user which is not cached is read from the repository.
+     */
+    @Override
+    public synchronized void update(User user) {
+        CachedUser pinned = pinnedUsers.get(user.getUsername());
+        if (pinned != null && pinned.user != user) {
+            CachedUser replaced = new CachedUser(user);
+            replaced.pins = pinned.pins;
+            pinnedUsers.put(user.getUsername(), replaced);
+        } else if (idleUsers.containsKey(user.getUsername())) {
+            idleUsers.put(user.getUsername(), user);
+        }
+    }
+
+    @Override
+    public synchronized void clear() {
+        pinnedUsers.clear();
+        idleUsers.clear();
+    }
+
+    /**
+     * @return the number of cached users
+     */
+    @Override
+    public synchronized int size() {
+        return pinnedUsers.size() + idleUsers.size();
+    }
+
+    /**
+     * @return the cached users
+     */
+    @Override
+    public synchronized Collection<User> getUsers() {
+        List<User> users = new ArrayList<>(size());
+        for (var pinned : pinnedUsers.values()) {
+            users.add(pinned.user);
+        }
+        users.addAll(idleUsers.values());
+        return Collections.unmodifiableList(users);
+    }
+
+    private void pin(User user) {
+        CachedUser pinned = pinnedUsers.get(user.getUsername());
+        if (pinned == null) {
+            idleUsers.remove(user.getUsername());
+            pinned = new CachedUser(user);
+            pinnedUsers.put(user.getUsername(), pinned);
+        }
+        pinned.pins++;
+    }
+
+    private User load(String username) {
+        CachedUser pinned = pinnedUsers.get(username);
+        if (pinned != null) {
+            hits.increment();
+            return pinned.user;
+        }
+
+        User user = idleUsers.get(username);
+        if (user != null) {
+            hits.increment();
+            return user;
+        }
+
+        misses.increment();
+        user = find(username);
+        if (user != null) {
+            idleUsers.put(username, user);
+        }
+        return user;
+    }
+
+    private User find(String username) {
+        try {
+            return repository.find(username);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Evicts the least recently used idle users while there are more cached users than the maximum,
+     * skipping the users whose lock is held by an operation which is still saving them.
+     */
+    private void evictIdleUsers() {
+        Iterator<User> eldest = idleUsers.values().iterator();
+        while (size() > maxCachedUsers && eldest.hasNext()) {
+            Lock lock = userLocks.lockFor(eldest.next().getUsername());
+            if (lock.tryLock()) {
+                try {
+                    eldest.remove();
+                    evictions.increment();
+                } finally {
+                    lock.unlock();
+                }
+            }
+        }
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    public long getEvictions() {
+        return evictions.sum();
+    }
+}
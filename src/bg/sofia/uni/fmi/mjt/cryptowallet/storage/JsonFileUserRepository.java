@@ -0,0 +1,76 @@
+package bg.sofia.uni.fmi.mjt.cryptowallet.storage;
+
+import bg.sofia.uni.fmi.mjt.cryptowallet.snapshot.JsonUsersSnapshot;
+import bg.sofia.uni.fmi.mjt.cryptowallet.user.User;
+import bg.sofia.uni.fmi.mjt.cryptowallet.user.UserLocks;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The JSON users file. The file can only be read and written as a whole, so the repository keeps every
+ * user it has read or saved and a flush rewrites the file if anything was saved since the last one.
+ * Saving only marks the file as changed, and a flush copies every user under its own lock before writing.
+ */
+public class JsonFileUserRepository implements UserRepository {
+
+    private final Path file;
+    private final UserLocks locks;
+    private final Map<String, User> users;
+    private volatile boolean isDirty;
+
+    public JsonFileUserRepository(Path file, UserLocks locks) {
+        this.file = file;
+        this.locks = locks;
+        this.users = new ConcurrentHashMap<>();
+    }
+
+    @Override
+    public List<User> loadAll() throws IOException {
+        if (Files.isRegularFile(file) && Files.size(file) > 0) {
+            JsonUsersSnapshot.read(file, user -> users.putIfAbsent(user.getUsername(), user));
+        }
+        return new ArrayList<>(users.values());
+    }
+
+    @Override
+    public User find(String username) throws IOException {
+        if (users.isEmpty()) {
+            loadAll();
+        }
+        return users.get(username);
+    }
+
+    @Override
+    public void save(User user) {
+        users.put(user.getUsername(), user);
+        isDirty = true;
+    }
+
+    @Override
+    public synchronized void flush() throws IOException {
+        if (!isDirty) {
+            return;
+        }
+
+        isDirty = false;
+        try {
+            JsonUsersSnapshot.write(file, locks.copyEach(users.values()));
+        } catch (IOException | RuntimeException e) {
+            isDirty = true;
+            throw e;
+        }
+    }
+
+    /**
+     * Nothing is written in the background, so the file keeps its last flushed state.
+     */
+    @Override
+    public void close() {
+    }
+}
@@ -0,0 +1,332 @@
+package bg.sofia.uni.fmi.mjt.cryptowallet.storage;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+import java.util.stream.Stream;
+
+/**
+ * Embedded log-structured key-value store.
+ * <p>
+ * Puts go to a write-ahead log and a sorted in-memory memtable. A full memtable is frozen and written by a
+ * background thread as an immutable {@link SortedSegment}, and once there are
+ * {@value #COMPACTION_THRESHOLD} segments the same thread merges them into one, keeping the newest value of
+ * every key. A lookup checks the memtable, the frozen memtable and then the segments from the newest one,
+ * so only the memtables and the sparse segment indexes are kept in heap.
+ */
+public class LsmKeyValueStore implements AutoCloseable {
+
+    static final int COMPACTION_THRESHOLD = 4;
+    private static final String SEGMENT_FORMAT = "segment-%06d.sst";
+    private static final String SEGMENT_PREFIX = "segment-";
+    private static final String SEGMENT_SUFFIX = ".sst";
+    private static final String LOG_FORMAT = "log-%06d.wal";
+    private static final String LOG_PREFIX = "log-";
+    private static final String LOG_SUFFIX = ".wal";
+    private static final String TEMPORARY_SUFFIX = ".tmp";
+    private static final String BACKGROUND_THREAD_NAME = "lsm-store-flusher";
+    private static final int ENTRY_OVERHEAD_BYTES = 64;
+    private final Path directory;
+    private final long memtableLimitBytes;
+    private final ExecutorService background;
+    private volatile ConcurrentSkipListMap<String, byte[]> memtable;
+    private volatile NavigableMap<String, byte[]> frozenMemtable;
+    private volatile List<SortedSegment> segments;
+    private WriteAheadLog log;
+    private long memtableBytes;
+    private long nextNumber;
+    private Future<?> pendingFlush;
+
+    public LsmKeyValueStore(Path directory, long memtableLimitBytes) throws IOException {
+        this.directory = directory;
+        this.memtableLimitBytes = memtableLimitBytes;
+        this.memtable = new ConcurrentSkipListMap<>();
+        Files.createDirectories(directory);
+
+        List<SortedSegment> opened = new ArrayList<>();
+        List<Path> logs = new ArrayList<>();
+        try (Stream<Path> files = Files.list(directory)) {
+            for (var file : files.sorted().toList()) {
+                String name = file.getFileName().toString();
+                if (name.endsWith(TEMPORARY_SUFFIX)) {
+                    Files.delete(file);
+                } else if (name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX)) {
+                    opened.add(SortedSegment.open(file, numberOf(name, SEGMENT_PREFIX, SEGMENT_SUFFIX)));
+                } else if (name.startsWith(LOG_PREFIX) && name.endsWith(LOG_SUFFIX)) {
+                    logs.add(file);
+                }
+            }
+        }
+        for (var segment : opened) {
+            nextNumber = Math.max(nextNumber, segment.number() + 1);
+        }
+        for (var file : logs) {
+            nextNumber = Math.max(nextNumber,
+                    numberOf(file.getFileName().toString(), LOG_PREFIX, LOG_SUFFIX) + 1);
+        }
+        segments = List.copyOf(opened);
+
+        // the logs of a crashed run are folded into a segment before accepting new puts
+        for (var file : logs) {
+            WriteAheadLog.replay(file, memtable::put);
+        }
+        if (!memtable.isEmpty()) {
+            addSegment(writeSegment(memtable));
+            memtable = new ConcurrentSkipListMap<>();
+        }
+        for (var file : logs) {
+            Files.delete(file);
+        }
+
+        log = new WriteAheadLog(directory.resolve(String.format(LOG_FORMAT, nextNumber++)));
+        background = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, BACKGROUND_THREAD_NAME);
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    private static long numberOf(String name, String prefix, String suffix) {
+        return Long.parseLong(name.substring(prefix.length(), name.length() - suffix.length()));
+    }
+
+    public synchronized void put(String key, byte[] value) throws IOException {
+        log.append(key, value);
+        memtable.put(key, value);
+        memtableBytes += key.length() + value.length + ENTRY_OVERHEAD_BYTES;
+        if (memtableBytes >= memtableLimitBytes) {
+            freezeMemtable();
+        }
+    }
+
+    /**
+     * @return the newest value of the key or null if it was never put
+     */
+    public byte[] get(String key) {
+        byte[] value = memtable.get(key);
+        if (value != null) {
+            return value;
+        }
+
+        NavigableMap<String, byte[]> frozen = frozenMemtable;
+        if (frozen != null && (value = frozen.get(key)) != null) {
+            return value;
+        }
+
+        List<SortedSegment> current = segments;
+        for (int i = current.size() - 1; i >= 0; i--) {
+            if ((value = current.get(i).get(key)) != null) {
+                return value;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return whether no key was ever put, including by an earlier run of the store
+     */
+    public synchronized boolean isEmpty() {
+        return memtable.isEmpty() && frozenMemtable == null && segments.isEmpty();
+    }
+
+    /**
+     * Passes the newest value of every key to the consumer in key order. The merged view is built in heap,
+     * so it is meant for exports and migrations rather than serving requests.
+     */
+    public void forEach(BiConsumer<String, byte[]> consumer) {
+        NavigableMap<String, byte[]> merged = new TreeMap<>();
+        synchronized (this) {
+            // no memtable is frozen while the lock is held, but the background thread may still write the
+            // frozen one, so it is read before the segments and its keys are in at least one of them
+            NavigableMap<String, byte[]> frozen = frozenMemtable;
+            for (var segment : segments) {
+                segment.iterator().forEachRemaining(entry -> merged.put(entry.getKey(), entry.getValue()));
+            }
+            if (frozen != null) {
+                merged.putAll(frozen);
+            }
+            merged.putAll(memtable);
+        }
+        merged.forEach(consumer);
+    }
+
+    /**
+     * Forces the write-ahead log of the current memtable to the disk.
+     */
+    public synchronized void sync() throws IOException {
+        log.force();
+    }
+
+    /**
+     * Freezes the current memtable and schedules writing it as a segment, waiting for the previous frozen
+     * memtable to be written first.
+     */
+    private void freezeMemtable() throws IOException {
+        awaitPendingFlush();
+
+        WriteAheadLog frozenLog = log;
+        frozenMemtable = memtable;
+        memtable = new ConcurrentSkipListMap<>();
+        memtableBytes = 0;
+        log = new WriteAheadLog(directory.resolve(String.format(LOG_FORMAT, nextNumber++)));
+        long segmentNumber = nextNumber++;
+        long compactedNumber = nextNumber++;
+        pendingFlush = background.submit(() -> {
+            flushFrozenMemtable(frozenLog, segmentNumber, compactedNumber);
+            return null;
+        });
+    }
+
+    /**
+     * Waits for the frozen memtable to be written and the segments to be compacted.
+     */
+    synchronized void awaitFlush() throws IOException {
+        awaitPendingFlush();
+    }
+
+    private void awaitPendingFlush() throws IOException {
+        if (pendingFlush == null) {
+            return;
+        }
+
+        try {
+            pendingFlush.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while writing a memtable", e);
+        } catch (ExecutionException e) {
+            throw new IOException("Could not write a memtable", e.getCause());
+        } finally {
+            pendingFlush = null;
+        }
+    }
+
+    private void flushFrozenMemtable(WriteAheadLog frozenLog, long segmentNumber, long compactedNumber)
+            throws IOException {
+        NavigableMap<String, byte[]> frozen = frozenMemtable;
+        SortedSegment segment = SortedSegment.write(directory.resolve(String.format(SEGMENT_FORMAT,
+                segmentNumber)), segmentNumber, frozen.entrySet().iterator());
+        // the segment is visible before the frozen memtable is dropped, so no lookup misses the keys
+        addSegment(segment);
+        frozenMemtable = null;
+        frozenLog.close();
+        Files.delete(frozenLog.file());
+
+        if (segments.size() >= COMPACTION_THRESHOLD) {
+            compact(compactedNumber);
+        }
+    }
+
+    private SortedSegment writeSegment(NavigableMap<String, byte[]> entries) throws IOException {
+        long number = nextNumber++;
+        return SortedSegment.write(directory.resolve(String.format(SEGMENT_FORMAT, number)), number,
+                entries.entrySet().iterator());
+    }
+
+    private void addSegment(SortedSegment segment) {
+        List<SortedSegment> updated = new ArrayList<>(segments);
+        updated.add(segment);
+        segments = List.copyOf(updated);
+    }
+
+    /**
+     * Merges every segment into one with the given number, which is newer than the merged segments and older
+     * than every later one. It runs only on the background thread, so no segment is added while merging.
+     * Lookups which still use the merged segments keep reading their mapped files after the deletion.
+     */
+    private void compact(long compactedNumber) throws IOException {
+        List<SortedSegment> merged = segments;
+        SortedSegment compacted = SortedSegment.write(directory.resolve(String.format(SEGMENT_FORMAT,
+                compactedNumber)), compactedNumber, mergeIterator(merged));
+        segments = List.of(compacted);
+        for (var segment : merged) {
+            Files.deleteIfExists(segment.file());
+        }
+    }
+
+    /**
+     * @return the records of all segments in key order, taking the value of a key from the newest segment
+     */
+    static Iterator<Map.Entry<String, byte[]>> mergeIterator(List<SortedSegment> segments) {
+        record Cursor(Iterator<Map.Entry<String, byte[]>> records, long number, Map.Entry<String, byte[]> head) {
+        }
+
+        PriorityQueue<Cursor> cursors = new PriorityQueue<>(Comparator
+                .comparing((Cursor cursor) -> cursor.head().getKey())
+                .thenComparing(Cursor::number, Comparator.reverseOrder()));
+        for (var segment : segments) {
+            Iterator<Map.Entry<String, byte[]>> records = segment.iterator();
+            if (records.hasNext()) {
+                cursors.add(new Cursor(records, segment.number(), records.next()));
+            }
+        }
+
+        return new Iterator<>() {
+            @Override
+            public boolean hasNext() {
+                return !cursors.isEmpty();
+            }
+
+            @Override
+            public Map.Entry<String, byte[]> next() {
+                if (cursors.isEmpty()) {
+                    throw new NoSuchElementException();
+                }
+
+                Cursor newest = cursors.poll();
+                advance(newest);
+                while (!cursors.isEmpty() && cursors.peek().head().getKey().equals(newest.head().getKey())) {
+                    advance(cursors.poll());
+                }
+                return newest.head();
+            }
+
+            private void advance(Cursor cursor) {
+                if (cursor.records().hasNext()) {
+                    cursors.add(new Cursor(cursor.records(), cursor.number(), cursor.records().next()));
+                }
+            }
+        };
+    }
+
+    public int getSegmentsCount() {
+        return segments.size();
+    }
+
+    /**
+     * Writes the memtable as a segment and stops the background thread.
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        awaitPendingFlush();
+        background.shutdown();
+        try {
+            background.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        log.close();
+        if (!memtable.isEmpty()) {
+            addSegment(writeSegment(memtable));
+            memtable = new ConcurrentSkipListMap<>();
+        }
+        Files.delete(log.file());
+    }
+}
@@ -0,0 +1,73 @@
+package bg.sofia.uni.fmi.mjt.cryptowallet.storage;
+
+import bg.sofia.uni.fmi.mjt.cryptowallet.snapshot.BinaryUsersSnapshot;
+import bg.sofia.uni.fmi.mjt.cryptowallet.user.User;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Keeps every user as a {@link BinaryUsersSnapshot} of its own under its username in an
+ * {@link LsmKeyValueStore}, so a user can be read by username without loading the others
+ * and saving it appends only that user.
+ */
+public class LsmUserRepository implements UserRepository {
+
+    private final LsmKeyValueStore store;
+
+    public LsmUserRepository(Path directory, long memtableLimitBytes) throws IOException {
+        this.store = new LsmKeyValueStore(directory, memtableLimitBytes);
+    }
+
+    @Override
+    public List<User> loadAll() {
+        List<User> users = new ArrayList<>();
+        store.forEach((username, value) -> users.add(decode(value)));
+        return users;
+    }
+
+    @Override
+    public User find(String username) {
+        byte[] value = store.get(username);
+        return value == null ? null : decode(value);
+    }
+
+    /**
+     * @return whether nothing was ever put in the store, without reading its segments
+     */
+    @Override
+    public boolean isEmpty() {
+        return store.isEmpty();
+    }
+
+    @Override
+    public void save(User user) throws IOException {
+        store.put(user.getUsername(), BinaryUsersSnapshot.encode(List.of(user)));
+    }
+
+    @Override
+    public void flush() throws IOException {
+        store.sync();
+    }
+
+    private static User decode(byte[] value) {
+        try {
+            return BinaryUsersSnapshot.decode(ByteBuffer.wrap(value)).get(0);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    public int getSegmentsCount() {
+        return store.getSegmentsCount();
+    }
+
+    @Override
+    public void close() throws IOException {
+        store.close();
+    }
+}
@@ -0,0 +1,257 @@
+package bg.sofia.uni.fmi.mjt.cryptowallet.storage;
+
+import bg.sofia.uni.fmi.mjt.cryptowallet.snapshot.BinaryUsersSnapshot;
+import bg.sofia.uni.fmi.mjt.cryptowallet.user.User;
+import bg.sofia.uni.fmi.mjt.cryptowallet.user.UserLocks;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Stream;
+
+/**
+ * Keeps the users in a fixed number of shard files picked by the hash of the username, each one a
+ * {@link BinaryUsersSnapshot} of its users. A change marks only the shard of the changed user as dirty and a
+ * background flusher rewrites just the dirty shards, so the written bytes follow the write activity instead
+ * of the number of registered users.
+ * <p>
+ * A shard file is rewritten as a whole, so the shard files are read on the first use of the store and every
+ * stored user stays in memory, even when the server caches only some of them.
+ */
+public class ShardedUserStore implements UserRepository {
+
+    private static final String SHARD_FORMAT = "shard-%04d.bin";
+    private static final String SHARD_PREFIX = "shard-";
+    private static final String SHARD_SUFFIX = ".bin";
+    private static final String TEMPORARY_SUFFIX = ".tmp";
+    private static final String FLUSHER_THREAD_NAME = "user-shards-flusher";
+    private final Path directory;
+    private final UserLocks locks;
+    private final List<Map<String, User>> shards;
+    private final AtomicIntegerArray dirtyShards;
+    private final List<Path> staleFiles;
+    private final LongAdder writtenShards;
+    private volatile boolean isLoaded;
+    private ScheduledExecutorService flusher;
+
+    public ShardedUserStore(Path directory, int shardsCount, UserLocks locks) throws IOException {
+        if (shardsCount <= 0) {
+            throw new IllegalArgumentException("The shards count must be positive");
+        }
+
+        this.directory = directory;
+        this.locks = locks;
+        this.shards = new ArrayList<>(shardsCount);
+        for (int i = 0; i < shardsCount; i++) {
+            shards.add(new ConcurrentHashMap<>());
+        }
+        this.dirtyShards = new AtomicIntegerArray(shardsCount);
+        this.staleFiles = new ArrayList<>();
+        this.writtenShards = new LongAdder();
+        Files.createDirectories(directory);
+    }
+
+    /**
+     * @return the stored users or an empty list if nothing was stored yet
+     */
+    @Override
+    public List<User> loadAll() throws IOException {
+        loadShardFiles();
+        List<User> users = new ArrayList<>();
+        for (var shard : shards) {
+            users.addAll(shard.values());
+        }
+        return users;
+    }
+
+    /**
+     * Reads the users of every shard file once. Users found in the file of another shard, e.g. after changing
+     * the shards count, are moved to their shard on the next flush. A user saved before the files are read
+     * is newer than its stored copy, so it is kept.
+     */
+    private synchronized void loadShardFiles() throws IOException {
+        if (isLoaded) {
+            return;
+        }
+
+        Map<String, User> users = new HashMap<>();
+        List<Path> files;
+        try (Stream<Path> stream = Files.list(directory)) {
+            files = stream.filter(ShardedUserStore::isShardFile).sorted().toList();
+        }
+
+        for (var file : files) {
+            int index = shardIndexOf(file);
+            for (var user : BinaryUsersSnapshot.read(file)) {
+                int shard = shardOf(user.getUsername());
+                if (shard == index) {
+                    users.put(user.getUsername(), user);
+                } else {
+                    users.putIfAbsent(user.getUsername(), user);
+                    dirtyShards.set(shard, 1);
+                    if (index < shards.size()) {
+                        dirtyShards.set(index, 1);
+                    }
+                }
+            }
+            if (index >= shards.size()) {
+                staleFiles.add(file);
+            }
+        }
+
+        for (var user : users.values()) {
+            shards.get(shardOf(user.getUsername())).putIfAbsent(user.getUsername(), user);
+        }
+        isLoaded = true;
+    }
+
+    /**
+     * @return the stored or saved user with the given username or null if there is no such user
+     */
+    @Override
+    public User find(String username) throws IOException {
+        if (!isLoaded) {
+            loadShardFiles();
+        }
+        return shards.get(shardOf(username)).get(username);
+    }
+
+    /**
+     * Marks the user as changed, adding it to its shard if it is new. It is written by the next flush.
+     */
+    @Override
+    public void save(User user) {
+        int shard = shardOf(user.getUsername());
+        shards.get(shard).putIfAbsent(user.getUsername(), user);
+        dirtyShards.set(shard, 1);
+    }
+
+    /**
+     * Schedules writing the dirty shards at the given interval.
+     */
+    public void start(Duration flushInterval) {
+        flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, FLUSHER_THREAD_NAME);
+            thread.setDaemon(true);
+            return thread;
+        });
+        flusher.scheduleWithFixedDelay(() -> {
+            try {
+                flushDirtyShards();
+            } catch (IOException | RuntimeException e) {
+                System.err.println("Could not flush the user shards: " + e.getMessage());
+            }
+        }, flushInterval.toMillis(), flushInterval.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Rewrites every dirty shard. Each user is copied under its lock, so a shard never contains a half
+     * applied change, and a user changed during the flush leaves its shard dirty for the next one.
+     * The shard files are read first, so a rewritten shard keeps the users which were never used.
+     * @return how many shards were written
+     */
+    public synchronized int flushDirtyShards() throws IOException {
+        loadShardFiles();
+        int written = 0;
+        for (int i = 0; i < shards.size(); i++) {
+            if (dirtyShards.getAndSet(i, 0) == 1) {
+                try {
+                    writeShard(i);
+                } catch (IOException | RuntimeException e) {
+                    dirtyShards.set(i, 1);
+                    throw e;
+                }
+                written++;
+            }
+        }
+        writtenShards.add(written);
+
+        for (var file : staleFiles) {
+            Files.deleteIfExists(file);
+        }
+        staleFiles.clear();
+        return written;
+    }
+
+    private void writeShard(int index) throws IOException {
+        List<User> copies = locks.copyEach(shards.get(index).values());
+
+        Path shardFile = directory.resolve(String.format(SHARD_FORMAT, index));
+        Path temporaryFile = directory.resolve(String.format(SHARD_FORMAT, index) + TEMPORARY_SUFFIX);
+        try (FileChannel channel = FileChannel.open(temporaryFile, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer buffer = ByteBuffer.wrap(BinaryUsersSnapshot.encode(copies));
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            channel.force(true);
+        }
+        Files.move(temporaryFile, shardFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    int shardOf(String username) {
+        int hash = username.hashCode();
+        return Math.floorMod(hash ^ (hash >>> 16), shards.size());
+    }
+
+    private static boolean isShardFile(Path file) {
+        String name = file.getFileName().toString();
+        return name.startsWith(SHARD_PREFIX) && name.endsWith(SHARD_SUFFIX);
+    }
+
+    private static int shardIndexOf(Path file) {
+        String name = file.getFileName().toString();
+        return Integer.parseInt(name.substring(SHARD_PREFIX.length(), name.length() - SHARD_SUFFIX.length()));
+    }
+
+    public int getDirtyShardsCount() {
+        int count = 0;
+        for (int i = 0; i < dirtyShards.length(); i++) {
+            count += dirtyShards.get(i);
+        }
+        return count;
+    }
+
+    /**
+     * @return how many shard files were written since the store was created
+     */
+    public long getWrittenShardsCount() {
+        return writtenShards.sum();
+    }
+
+    @Override
+    public void flush() throws IOException {
+        flushDirtyShards();
+    }
+
+    /**
+     * Stops the flusher and writes the shards which are still dirty.
+     */
+    @Override
+    public void close() throws IOException {
+        if (flusher != null) {
+            flusher.shutdown();
+            try {
+                flusher.awaitTermination(1, TimeUnit.MINUTES);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        flush();
+    }
+}
@@ -0,0 +1,193 @@
+package bg.sofia.uni.fmi.mjt.cryptowallet.storage;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+/**
+ * Immutable file of key-value records sorted by key.
+ * <p>
+ * Layout (big-endian): the records as {@code u16 key length, key, i32 value length, value}, then a sparse
+ * index of every {@value #INDEX_INTERVAL}th key with its record offset, then the index offset, the records
+ * count and a magic number. The file is memory-mapped and only the sparse index is kept in heap, so a lookup
+ * binary searches the index and scans at most {@value #INDEX_INTERVAL} records.
+ */
+final class SortedSegment {
+
+    static final int INDEX_INTERVAL = 16;
+    private static final int MAGIC = 0x4357534C;
+    private static final int FOOTER_BYTES = Long.BYTES + 2 * Integer.BYTES;
+    private static final String TEMPORARY_SUFFIX = ".tmp";
+    private final long number;
+    private final Path file;
+    private final ByteBuffer records;
+    private final String[] indexKeys;
+    private final int[] indexOffsets;
+    private final int count;
+
+    private SortedSegment(long number, Path file, ByteBuffer records, String[] indexKeys, int[] indexOffsets,
+                          int count) {
+        this.number = number;
+        this.file = file;
+        this.records = records;
+        this.indexKeys = indexKeys;
+        this.indexOffsets = indexOffsets;
+        this.count = count;
+    }
+
+    /**
+     * Writes the entries, which must be sorted by key without duplicates, through a temporary file and opens
+     * the written segment.
+     */
+    static SortedSegment write(Path file, long number, Iterator<Map.Entry<String, byte[]>> entries)
+            throws IOException {
+        Path temporaryFile = Path.of(file + TEMPORARY_SUFFIX);
+        List<String> indexKeys = new ArrayList<>();
+        List<Integer> indexOffsets = new ArrayList<>();
+        try (FileChannel channel = FileChannel.open(temporaryFile, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            DataOutputStream output = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel)));
+            int count = 0;
+            while (entries.hasNext()) {
+                Map.Entry<String, byte[]> entry = entries.next();
+                if (count % INDEX_INTERVAL == 0) {
+                    indexKeys.add(entry.getKey());
+                    indexOffsets.add(output.size());
+                }
+                writeKey(output, entry.getKey());
+                output.writeInt(entry.getValue().length);
+                output.write(entry.getValue());
+                count++;
+            }
+
+            long indexOffset = output.size();
+            output.writeInt(indexKeys.size());
+            for (int i = 0; i < indexKeys.size(); i++) {
+                writeKey(output, indexKeys.get(i));
+                output.writeInt(indexOffsets.get(i));
+            }
+            output.writeLong(indexOffset);
+            output.writeInt(count);
+            output.writeInt(MAGIC);
+            output.flush();
+            channel.force(true);
+        }
+        Files.move(temporaryFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        return open(file, number);
+    }
+
+    private static void writeKey(DataOutputStream output, String key) throws IOException {
+        byte[] bytes = key.getBytes(StandardCharsets.UTF_8);
+        output.writeShort(bytes.length);
+        output.write(bytes);
+    }
+
+    static SortedSegment open(Path file, long number) throws IOException {
+        MappedByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        if (buffer.capacity() < FOOTER_BYTES || buffer.getInt(buffer.capacity() - Integer.BYTES) != MAGIC) {
+            throw new IOException("The file " + file + " is not a sorted segment");
+        }
+
+        int footer = buffer.capacity() - FOOTER_BYTES;
+        int indexOffset = (int) buffer.getLong(footer);
+        int count = buffer.getInt(footer + Long.BYTES);
+        ByteBuffer index = buffer.slice(indexOffset, footer - indexOffset);
+        String[] indexKeys = new String[index.getInt()];
+        int[] indexOffsets = new int[indexKeys.length];
+        for (int i = 0; i < indexKeys.length; i++) {
+            indexKeys[i] = readKey(index);
+            indexOffsets[i] = index.getInt();
+        }
+        return new SortedSegment(number, file, buffer.slice(0, indexOffset), indexKeys, indexOffsets, count);
+    }
+
+    private static String readKey(ByteBuffer buffer) {
+        byte[] bytes = new byte[Short.toUnsignedInt(buffer.getShort())];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    long number() {
+        return number;
+    }
+
+    Path file() {
+        return file;
+    }
+
+    int count() {
+        return count;
+    }
+
+    /**
+     * @return the value of the key or null if it is not in this segment
+     */
+    byte[] get(String key) {
+        int block = Arrays.binarySearch(indexKeys, key);
+        if (block < 0) {
+            block = -block - 2;
+            if (block < 0) {
+                return null;
+            }
+        }
+
+        ByteBuffer buffer = records.duplicate().position(indexOffsets[block]);
+        for (int i = 0; i < INDEX_INTERVAL && buffer.hasRemaining(); i++) {
+            int comparison = readKey(buffer).compareTo(key);
+            int valueLength = buffer.getInt();
+            if (comparison == 0) {
+                byte[] value = new byte[valueLength];
+                buffer.get(value);
+                return value;
+            }
+            if (comparison > 0) {
+                return null;
+            }
+            buffer.position(buffer.position() + valueLength);
+        }
+        return null;
+    }
+
+    /**
+     * @return the records of the segment in key order
+     */
+    Iterator<Map.Entry<String, byte[]>> iterator() {
+        ByteBuffer buffer = records.duplicate();
+        return new Iterator<>() {
+            @Override
+            public boolean hasNext() {
+                return buffer.hasRemaining();
+            }
+
+            @Override
+            public Map.Entry<String, byte[]> next() {
+                if (!buffer.hasRemaining()) {
+                    throw new NoSuchElementException();
+                }
+
+                String key = readKey(buffer);
+                byte[] value = new byte[buffer.getInt()];
+                buffer.get(value);
+                return Map.entry(key, value);
+            }
+        };
+    }
+}
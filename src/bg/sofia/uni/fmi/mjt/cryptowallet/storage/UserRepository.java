@@ -0,0 +1,46 @@
+package bg.sofia.uni.fmi.mjt.cryptowallet.storage;
+
+import bg.sofia.uni.fmi.mjt.cryptowallet.user.User;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Durable storage of the registered users.
+ * Callers hold the lock of a user while saving it, so implementations see a consistent wallet.
+ */
+public interface UserRepository extends AutoCloseable {
+
+    /**
+     * Reads every stored user.
+     */
+    List<User> loadAll() throws IOException;
+
+    /**
+     * @return the stored user with the given username or null if there is no such user
+     */
+    User find(String username) throws IOException;
+
+    /**
+     * @return whether no user is stored yet
+     */
+    default boolean isEmpty() throws IOException {
+        return loadAll().isEmpty();
+    }
+
+    /**
+     * Stores the current state of the user. It may be written in the background or on the next flush.
+     */
+    void save(User user) throws IOException;
+
+    /**
+     * Writes everything saved so far.
+     */
+    void flush() throws IOException;
+
+    /**
+     * Releases the storage, first writing what an implementation still keeps to write in the background.
+     */
+    @Override
+    void close() throws IOException;
+}
@@ -0,0 +1,91 @@
+package bg.sofia.uni.fmi.mjt.cryptowallet.storage;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.function.BiConsumer;
+import java.util.zip.CRC32;
+
+/**
+ * Log of the puts held by a memtable, so they survive a crash before the memtable is written as a segment.
+ * Every record is {@code i32 length, i32 crc, u16 key length, key, i32 value length, value}.
+ */
+class WriteAheadLog implements AutoCloseable {
+
+    private static final int HEADER_BYTES = 2 * Integer.BYTES;
+    private final Path file;
+    private final FileChannel channel;
+
+    WriteAheadLog(Path file) throws IOException {
+        this.file = file;
+        this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.APPEND);
+    }
+
+    Path file() {
+        return file;
+    }
+
+    void append(String key, byte[] value) throws IOException {
+        byte[] keyBytes = key.getBytes(StandardCharsets.UTF_8);
+        int payloadLength = Short.BYTES + keyBytes.length + Integer.BYTES + value.length;
+        ByteBuffer record = ByteBuffer.allocate(HEADER_BYTES + payloadLength);
+        record.putInt(payloadLength);
+        record.putInt(0);
+        record.putShort((short) keyBytes.length).put(keyBytes);
+        record.putInt(value.length).put(value);
+
+        CRC32 crc = new CRC32();
+        crc.update(record.array(), HEADER_BYTES, payloadLength);
+        record.putInt(Integer.BYTES, (int) crc.getValue());
+        record.flip();
+        while (record.hasRemaining()) {
+            channel.write(record);
+        }
+    }
+
+    void force() throws IOException {
+        channel.force(false);
+    }
+
+    /**
+     * Passes every complete record of the log to the consumer in order. A torn record at the end, left by a
+     * crash in the middle of a write, is ignored.
+     */
+    static void replay(Path file, BiConsumer<String, byte[]> consumer) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            CRC32 crc = new CRC32();
+            while (buffer.remaining() >= HEADER_BYTES) {
+                int payloadLength = buffer.getInt();
+                int expectedCrc = buffer.getInt();
+                if (payloadLength < 0 || payloadLength > buffer.remaining()) {
+                    return;
+                }
+
+                ByteBuffer payload = buffer.slice(buffer.position(), payloadLength);
+                crc.reset();
+                crc.update(payload.duplicate());
+                if ((int) crc.getValue() != expectedCrc) {
+                    return;
+                }
+                buffer.position(buffer.position() + payloadLength);
+
+                byte[] key = new byte[Short.toUnsignedInt(payload.getShort())];
+                payload.get(key);
+                byte[] value = new byte[payload.getInt()];
+                payload.get(value);
+                consumer.accept(new String(key, StandardCharsets.UTF_8), value);
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
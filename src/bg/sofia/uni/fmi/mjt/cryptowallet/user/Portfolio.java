@@ -0,0 +1,120 @@
+package bg.sofia.uni.fmi.mjt.cryptowallet.user;
+
+import bg.sofia.uni.fmi.mjt.cryptowallet.coinapi.dto.CryptoInformation;
+import bg.sofia.uni.fmi.mjt.cryptowallet.coinapi.dto.Cryptocurrencies;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The active investments of one wallet as positions keyed by asset ID, so buying and selling an asset
+ * touch only its own position. It also keeps the unrealized profit of all positions at the prices of the
+ * last valued snapshot, revalued once per price snapshot, so the overall profit never scans the investments.
+ */
+final class Portfolio {
+
+    private final Map<String, Position> positions;
+    private double unrealizedProfit;
+    private Cryptocurrencies valuedSnapshot;
+
+    Portfolio() {
+        this.positions = new LinkedHashMap<>();
+    }
+
+    static Portfolio of(Iterable<BoughtCryptocurrency> lots) {
+        Portfolio portfolio = new Portfolio();
+        for (var lot : lots) {
+            portfolio.add(lot);
+        }
+        return portfolio;
+    }
+
+    void add(BoughtCryptocurrency lot) {
+        String assetID = lot.boughtCrypto().assetID();
+        Position position = positions.get(assetID);
+        if (position == null) {
+            position = new Position();
+            position.setPrice(priceOf(valuedSnapshot, assetID));
+            positions.put(assetID, position);
+        }
+
+        unrealizedProfit -= position.unrealizedProfit();
+        position.add(lot);
+        unrealizedProfit += position.unrealizedProfit();
+    }
+
+    /**
+     * @return the position in the given asset or null if it is not held
+     */
+    Position position(String assetID) {
+        return positions.get(assetID);
+    }
+
+    /**
+     * Drops the whole position in the given asset.
+     */
+    void remove(String assetID) {
+        Position position = positions.remove(assetID);
+        if (position != null) {
+            unrealizedProfit -= position.unrealizedProfit();
+        }
+        if (positions.isEmpty()) {
+            // nothing is held, so reset the rounding errors accumulated by the incremental updates
+            unrealizedProfit = 0.0;
+        }
+    }
+
+    Collection<Position> positions() {
+        return Collections.unmodifiableCollection(positions.values());
+    }
+
+    /**
+     * @return the lots of all positions, grouped by asset in the order the assets were first bought
+     */
+    List<BoughtCryptocurrency> lots() {
+        List<BoughtCryptocurrency> lots = new ArrayList<>();
+        for (var position : positions.values()) {
+            lots.addAll(position.lots());
+        }
+        return lots;
+    }
+
+    /**
+     * Moves the positions to the prices of the given snapshot unless it is the already valued one.
+     * Assets missing from the snapshot do not count towards the unrealized profit.
+     */
+    void revalue(Cryptocurrencies snapshot) {
+        if (snapshot == valuedSnapshot) {
+            return;
+        }
+
+        for (var entry : positions.entrySet()) {
+            Position position = entry.getValue();
+            unrealizedProfit -= position.unrealizedProfit();
+            position.setPrice(priceOf(snapshot, entry.getKey()));
+            unrealizedProfit += position.unrealizedProfit();
+        }
+        valuedSnapshot = snapshot;
+    }
+
+    /**
+     * @return the unrealized profit at the prices of the given snapshot
+     */
+    double unrealizedProfit(Cryptocurrencies snapshot) {
+        revalue(snapshot);
+        return unrealizedProfit;
+    }
+
+    private static double priceOf(Cryptocurrencies snapshot, String assetID) {
+        if (snapshot == null) {
+            return Double.NaN;
+        }
+
+        CryptoInformation info = snapshot.findByAssetID(assetID);
+        return info == null ? Double.NaN : info.price();
+    }
+}
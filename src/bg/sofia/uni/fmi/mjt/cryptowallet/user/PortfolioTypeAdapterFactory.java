@@ -0,0 +1,50 @@
+package bg.sofia.uni.fmi.mjt.cryptowallet.user;
+
+import com.google.gson.Gson;
+import com.google.gson.TypeAdapter;
+import com.google.gson.TypeAdapterFactory;
+import com.google.gson.reflect.TypeToken;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+
+/**
+ * Writes a {@link Portfolio} as the flat array of bought lots the users file has always had,
+ * and reads such an array back into positions.
+ */
+final class PortfolioTypeAdapterFactory implements TypeAdapterFactory {
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> TypeAdapter<T> create(Gson gson, TypeToken<T> type) {
+        if (type.getRawType() != Portfolio.class) {
+            return null;
+        }
+
+        TypeAdapter<BoughtCryptocurrency> lotAdapter = gson.getAdapter(BoughtCryptocurrency.class);
+        return (TypeAdapter<T>) new TypeAdapter<Portfolio>() {
+            @Override
+            public void write(JsonWriter writer, Portfolio portfolio) throws IOException {
+                writer.beginArray();
+                for (var position : portfolio.positions()) {
+                    for (var lot : position.lots()) {
+                        lotAdapter.write(writer, lot);
+                    }
+                }
+                writer.endArray();
+            }
+
+            @Override
+            public Portfolio read(JsonReader reader) throws IOException {
+                Portfolio portfolio = new Portfolio();
+                reader.beginArray();
+                while (reader.hasNext()) {
+                    portfolio.add(lotAdapter.read(reader));
+                }
+                reader.endArray();
+                return portfolio;
+            }
+        }.nullSafe();
+    }
+}
@@ -0,0 +1,69 @@
+package bg.sofia.uni.fmi.mjt.cryptowallet.user;
+
+import bg.sofia.uni.fmi.mjt.cryptowallet.coinapi.dto.CryptoInformation;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Everything a user holds of one asset: the bought quantity, the money invested in it, the lots it was
+ * bought in and its price in the last valued snapshot.
+ */
+final class Position {
+
+    private CryptoInformation crypto;
+    private double quantity;
+    private double costBasis;
+    private final List<BoughtCryptocurrency> lots;
+    private double price = Double.NaN;
+
+    Position() {
+        this.lots = new ArrayList<>();
+    }
+
+    void add(BoughtCryptocurrency lot) {
+        crypto = lot.boughtCrypto();
+        quantity += lot.buyingCount();
+        costBasis += lot.buyingPrice();
+        lots.add(lot);
+    }
+
+    void setPrice(double price) {
+        this.price = price;
+    }
+
+    /**
+     * @return the profit at the valued price or zero if the asset was missing from the valued snapshot
+     */
+    double unrealizedProfit() {
+        return isPriced() ? quantity * price - costBasis : 0.0;
+    }
+
+    boolean isPriced() {
+        return !Double.isNaN(price);
+    }
+
+    /**
+     * @return the cryptocurrency as it was when the last lot was bought
+     */
+    CryptoInformation crypto() {
+        return crypto;
+    }
+
+    double quantity() {
+        return quantity;
+    }
+
+    double costBasis() {
+        return costBasis;
+    }
+
+    List<BoughtCryptocurrency> lots() {
+        return Collections.unmodifiableList(lots);
+    }
+
+    double price() {
+        return price;
+    }
+}
@@ -5,10 +5,13 @@ import bg.sofia.uni.fmi.mjt.cryptowallet.coinapi.dto.Cryptocurrencies;
 import bg.sofia.uni.fmi.mjt.cryptowallet.exception.InsufficientAvailabilityException;
 import bg.sofia.uni.fmi.mjt.cryptowallet.exception.InvalidSellingException;
 import com.google.gson.annotations.Expose;
+import com.google.gson.annotations.JsonAdapter;
+import com.google.gson.annotations.SerializedName;
 
 import java.nio.charset.StandardCharsets;
+import java.util.Collection;
 import java.util.HashSet;
-import java.util.Iterator;
+import java.util.List;
 import java.util.Objects;
 import java.util.Set;
 
@@ -33,28 +36,92 @@ public class User {
     @Expose
     private double money;
     @Expose
-    private Set<BoughtCryptocurrency> boughtCryptocurrencies;
+    @SerializedName("boughtCryptocurrencies")
+    @JsonAdapter(PortfolioTypeAdapterFactory.class)
+    private Portfolio portfolio;
     @Expose
     private Set<SoldCryptocurrency> soldCryptocurrencies;
+    @Expose
+    private long journalSequence;
+    private transient Double realizedProfit;
+    private transient String finishedInvestments;
 
     public User(String username, String password) {
         this.username = username;
         this.password = password;
         passwordBytes = password.getBytes(StandardCharsets.UTF_8);
         this.money = INITIAL_MONEY;
-        boughtCryptocurrencies = new HashSet<>();
+        portfolio = new Portfolio();
         soldCryptocurrencies = new HashSet<>();
+        realizedProfit = INITIAL_MONEY;
     }
 
-    public void depositMoney(double money) {
+    private User(String username, byte[] passwordBytes, double money, Collection<BoughtCryptocurrency> bought,
+                 Set<SoldCryptocurrency> sold, long journalSequence) {
+        this.username = username;
+        this.password = new String(passwordBytes, StandardCharsets.UTF_8);
+        this.passwordBytes = passwordBytes;
+        this.money = money;
+        this.portfolio = Portfolio.of(bought);
+        this.soldCryptocurrencies = sold;
+        this.journalSequence = journalSequence;
+    }
+
+    public static User restore(String username, byte[] passwordBytes, double money,
+                               Collection<BoughtCryptocurrency> bought, Set<SoldCryptocurrency> sold,
+                               long journalSequence) {
+        return new User(username, passwordBytes, money, bought, sold, journalSequence);
+    }
+
+    /**
+     * @return a copy of the wallet which is not affected by later changes of this user
+     */
+    public User copy() {
+        return new User(username, passwordBytes, money, portfolio().lots(), new HashSet<>(soldCryptocurrencies),
+                journalSequence);
+    }
+
+    private Portfolio portfolio() {
+        if (portfolio == null) {
+            // users read by Gson from a file without bought cryptocurrencies
+            portfolio = new Portfolio();
+        }
+        return portfolio;
+    }
+
+    /**
+     * Returns the running sum of the profits of the finished investments, counting them on first use
+     * for users which were not created by a constructor.
+     */
+    private double realizedProfit() {
+        if (realizedProfit == null) {
+            double profit = INITIAL_MONEY;
+            for (var currCrypto : soldCryptocurrencies) {
+                profit += currCrypto.profit();
+            }
+            realizedProfit = profit;
+        }
+        return realizedProfit;
+    }
+
+    /**
+     * Checks the deposit without applying it, so it can be journaled before the wallet changes.
+     */
+    public void checkDeposit(double money) {
         if (money <= INITIAL_MONEY) {
             throw new IllegalArgumentException("You can't deposit zero or negative amount of money ");
         }
+    }
 
+    public void depositMoney(double money) {
+        checkDeposit(money);
         this.money += money;
     }
 
-    public void buyCrypto(CryptoInformation info, double investingMoney) throws InsufficientAvailabilityException {
+    /**
+     * Checks the purchase without applying it, so it can be journaled before the wallet changes.
+     */
+    public void checkBuy(CryptoInformation info, double investingMoney) throws InsufficientAvailabilityException {
         if (investingMoney > this.money) {
             throw new InsufficientAvailabilityException("You don't have enough money ");
         }
@@ -66,53 +133,36 @@ public class User {
         if (info.price() <= 0.0) {
             throw new IllegalArgumentException("This cryptocurrency can't be bought at the moment ");
         }
+    }
 
+    public void buyCrypto(CryptoInformation info, double investingMoney) throws InsufficientAvailabilityException {
+        checkBuy(info, investingMoney);
         this.money -= investingMoney;
         double countBoughtCrypto = investingMoney / info.price();
-        BoughtCryptocurrency boughtCryptocurrency = new BoughtCryptocurrency(info, investingMoney, countBoughtCrypto);
-        if (boughtCryptocurrencies.contains(boughtCryptocurrency)) {
-            BoughtCryptocurrency crypto = new BoughtCryptocurrency(info, investingMoney * 2,
-                    countBoughtCrypto * 2);
-
-            boughtCryptocurrencies.remove(boughtCryptocurrency);
-            boughtCryptocurrencies.add(crypto);
-        }
-        else {
-            boughtCryptocurrencies.add(boughtCryptocurrency);
-        }
+        portfolio().add(new BoughtCryptocurrency(info, investingMoney, countBoughtCrypto));
     }
 
-    private void deleteSoldCrypto(CryptoInformation info) {
-        Iterator<BoughtCryptocurrency> it = boughtCryptocurrencies.iterator();
-
-        while (it.hasNext()) {
-            var curr = it.next();
-            if (curr.boughtCrypto().assetID().equals(info.assetID())) {
-                it.remove();
-            }
+    /**
+     * Checks the sale without applying it, so it can be journaled before the wallet changes.
+     */
+    public void checkSell(CryptoInformation info) throws InvalidSellingException {
+        if (portfolio().position(info.assetID()) == null) {
+            throw new InvalidSellingException("You can't sell cryptocurrency that you haven't bought ");
         }
     }
 
     public void sellCrypto(CryptoInformation info) throws InvalidSellingException {
-        double currentSellingPrice = info.price();
-        double countBoughtCrypto = 0.0;
-        double givenMoneyBoughtCrypto = 0.0;
-        for (var curr : boughtCryptocurrencies) {
-            if (curr.boughtCrypto().assetID().equals(info.assetID())) {
-                countBoughtCrypto += curr.buyingCount();
-                givenMoneyBoughtCrypto += curr.buyingPrice();
-            }
-        }
-
-        if (countBoughtCrypto == INITIAL_MONEY) {
-            throw new InvalidSellingException("You can't sell cryptocurrency that you haven't bought ");
-        }
-        double sumToEarn = countBoughtCrypto * currentSellingPrice;
+        checkSell(info);
+        Position position = portfolio().position(info.assetID());
+        double sumToEarn = position.quantity() * info.price();
         this.money += sumToEarn;
-        double profit = sumToEarn - givenMoneyBoughtCrypto;
+        double profit = sumToEarn - position.costBasis();
         SoldCryptocurrency soldCrypto = new SoldCryptocurrency(info, sumToEarn, profit);
-        soldCryptocurrencies.add(soldCrypto);
-        deleteSoldCrypto(info);
+        if (soldCryptocurrencies.add(soldCrypto)) {
+            realizedProfit = realizedProfit() + profit;
+            finishedInvestments = null;
+        }
+        portfolio().remove(info.assetID());
     }
 
     public StringBuilder getWalletSummary() {
@@ -124,18 +174,18 @@ public class User {
         builder.append(ACTIVE_INVESTMENTS);
         builder.append(SPACE);
 
-        for (var curr : boughtCryptocurrencies) {
+        for (var position : portfolio().positions()) {
             builder.append(ID);
-            builder.append(curr.boughtCrypto().assetID());
+            builder.append(position.crypto().assetID());
             builder.append(SPACE);
             builder.append(NAME);
-            builder.append(curr.boughtCrypto().assetName());
+            builder.append(position.crypto().assetName());
             builder.append(SPACE);
             builder.append(BOUGHT);
-            builder.append(curr.buyingPrice());
+            builder.append(position.costBasis());
             builder.append(SPACE);
             builder.append(COUNT);
-            builder.append(curr.buyingCount());
+            builder.append(position.quantity());
             builder.append(SPACE);
             builder.append(SPACE);
         }
@@ -143,7 +193,18 @@ public class User {
         return builder;
     }
 
-    private StringBuilder getFinishedInvestments() {
+    /**
+     * Returns the rendered finished investments, which change only when a cryptocurrency is sold,
+     * so they are rendered again only after a sale.
+     */
+    private String getFinishedInvestments() {
+        if (finishedInvestments == null) {
+            finishedInvestments = renderFinishedInvestments();
+        }
+        return finishedInvestments;
+    }
+
+    private String renderFinishedInvestments() {
         StringBuilder builder = new StringBuilder();
 
         builder.append(FINISHED_INVESTMENTS);
@@ -159,48 +220,44 @@ public class User {
             builder.append(SPACE);
             builder.append(SPACE);
         }
-        return builder;
+        return builder.toString();
     }
 
+    /**
+     * Lists the active investments at the prices of the given snapshot and the finished ones. The overall
+     * profit comes from the running aggregates, which are revalued only when the snapshot changes.
+     */
     public StringBuilder getWalletOverall(Cryptocurrencies info) {
         StringBuilder builder = new StringBuilder();
-        double overallProfit = INITIAL_MONEY;
+        double unrealizedProfit = portfolio().unrealizedProfit(info);
 
         builder.append(ACTIVE_INVESTMENTS);
         builder.append(SPACE);
-        for (var currCrypto : boughtCryptocurrencies) {
-            for (var curr : info.cryptocurrencies()) {
-                if (currCrypto.boughtCrypto().assetID().equals(curr.assetID())) {
-                    double boughtPrice = currCrypto.buyingPrice();
-                    double currPrice = curr.price();
-                    double profit = (currPrice * currCrypto.buyingCount()) - boughtPrice;
-                    overallProfit += profit;
-
-                    builder.append(ID);
-                    builder.append(curr.assetID());
-                    builder.append(SPACE);
-                    builder.append(NAME);
-                    builder.append(curr.assetName());
-                    builder.append(SPACE);
-                    builder.append(BOUGHT);
-                    builder.append(currCrypto.buyingPrice());
-                    builder.append(SPACE);
-                    builder.append(CURRENT);
-                    builder.append(curr.price() * currCrypto.buyingCount());
-                    builder.append(SPACE);
-                    builder.append(PROFIT);
-                    builder.append(profit);
-                    builder.append(SPACE);
-                    builder.append(SPACE);
-                }
+        for (var position : portfolio().positions()) {
+            if (position.isPriced()) {
+                double currentPrice = position.price() * position.quantity();
+
+                builder.append(ID);
+                builder.append(position.crypto().assetID());
+                builder.append(SPACE);
+                builder.append(NAME);
+                builder.append(position.crypto().assetName());
+                builder.append(SPACE);
+                builder.append(BOUGHT);
+                builder.append(position.costBasis());
+                builder.append(SPACE);
+                builder.append(CURRENT);
+                builder.append(currentPrice);
+                builder.append(SPACE);
+                builder.append(PROFIT);
+                builder.append(currentPrice - position.costBasis());
+                builder.append(SPACE);
+                builder.append(SPACE);
             }
         }
-        for (var currCrypto : soldCryptocurrencies) {
-            overallProfit += currCrypto.profit();
-        }
         builder.append(getFinishedInvestments());
         builder.append(OVERALL_PROFIT);
-        builder.append(overallProfit);
+        builder.append(unrealizedProfit + realizedProfit());
         builder.append(SPACE);
         builder.append(SPACE);
 
@@ -215,8 +272,11 @@ public class User {
         return money;
     }
 
-    public Set<BoughtCryptocurrency> getBoughtCryptocurrencies() {
-        return boughtCryptocurrencies;
+    /**
+     * @return the bought lots of all active investments, grouped by cryptocurrency
+     */
+    public List<BoughtCryptocurrency> getBoughtCryptocurrencies() {
+        return portfolio().lots();
     }
 
     public Set<SoldCryptocurrency> getSoldCryptocurrencies() {
@@ -227,6 +287,17 @@ public class User {
         return passwordBytes;
     }
 
+    /**
+     * @return the sequence number of the last journal event applied to this user
+     */
+    public long getJournalSequence() {
+        return journalSequence;
+    }
+
+    public void setJournalSequence(long journalSequence) {
+        this.journalSequence = journalSequence;
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
@@ -0,0 +1,72 @@
+package bg.sofia.uni.fmi.mjt.cryptowallet.user;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A fixed number of locks shared by all users and picked by the hash of the username.
+ * Operations on one user are serialized, even when several sessions are logged into it, while operations
+ * on users in different stripes run in parallel. Users do not need their own lock objects, which Gson would
+ * not create anyway.
+ */
+public class UserLocks {
+
+    private final Lock[] stripes;
+    private final int mask;
+
+    /**
+     * @param stripesCount the minimum number of stripes, rounded up to a power of two
+     */
+    public UserLocks(int stripesCount) {
+        if (stripesCount <= 0) {
+            throw new IllegalArgumentException("The stripes count must be positive");
+        }
+
+        int size = Integer.highestOneBit(stripesCount);
+        if (size < stripesCount) {
+            size <<= 1;
+        }
+        stripes = new Lock[size];
+        for (int i = 0; i < size; i++) {
+            stripes[i] = new ReentrantLock();
+        }
+        mask = size - 1;
+    }
+
+    public Lock lockFor(String username) {
+        int hash = username.hashCode();
+        return stripes[(hash ^ (hash >>> 16)) & mask];
+    }
+
+    /**
+     * Copies every user under its own stripe, so each copy is a consistent wallet while the other users
+     * keep changing and no other stripe is held while waiting for one.
+     */
+    public List<User> copyEach(Collection<User> users) {
+        List<User> copies = new ArrayList<>(users.size());
+        for (var user : users) {
+            copies.add(copy(user));
+        }
+        return copies;
+    }
+
+    /**
+     * Copies the user under its stripe, so the copy is a consistent wallet.
+     */
+    public User copy(User user) {
+        Lock lock = lockFor(user.getUsername());
+        lock.lock();
+        try {
+            return user.copy();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int stripesCount() {
+        return stripes.length;
+    }
+}
@@ -0,0 +1,79 @@
+package bg.sofia.uni.fmi.mjt.cryptowallet.user;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+public class UserRegistry {
+
+    private final Map<String, User> users;
+
+    public UserRegistry() {
+        this.users = new ConcurrentHashMap<>();
+    }
+
+    public UserRegistry(Collection<User> initialUsers) {
+        this();
+        for (var user : initialUsers) {
+            users.put(user.getUsername(), user);
+        }
+    }
+
+    /**
+     * Registers the user atomically.
+     * @return false if there is already a user with the same username
+     */
+    public boolean register(User user) {
+        return users.putIfAbsent(user.getUsername(), user) == null;
+    }
+
+    /**
+     * Takes back a registration which could not be recorded.
+     */
+    public void unregister(User user) {
+        users.remove(user.getUsername(), user);
+    }
+
+    /**
+     * @return the user with the given username and password or null if there is no such user
+     */
+    public User login(String username, String password) {
+        User user = users.get(username);
+        return user != null && hasPassword(user, password) ? user : null;
+    }
+
+    protected static boolean hasPassword(User user, String password) {
+        byte[] passwordBytes = password.getBytes(StandardCharsets.UTF_8);
+        return MessageDigest.isEqual(passwordBytes, user.getPasswordBytes());
+    }
+
+    /**
+     * Tells the registry that a user returned by {@link #login} or added by {@link #register} is no longer
+     * in use. This registry keeps every user in memory, so there is nothing to release.
+     */
+    public void release(User user) {
+    }
+
+    public User get(String username) {
+        return users.get(username);
+    }
+
+    public void update(User user) {
+        users.put(user.getUsername(), user);
+    }
+
+    public void clear() {
+        users.clear();
+    }
+
+    public int size() {
+        return users.size();
+    }
+
+    public Collection<User> getUsers() {
+        return Collections.unmodifiableCollection(users.values());
+    }
+}
@@ -0,0 +1,166 @@
+package bg.sofia.uni.fmi.mjt.cryptowallet;
+
+import bg.sofia.uni.fmi.mjt.cryptowallet.coinapi.dto.CryptoInformation;
+import bg.sofia.uni.fmi.mjt.cryptowallet.coinapi.dto.Cryptocurrencies;
+import bg.sofia.uni.fmi.mjt.cryptowallet.snapshot.JsonUsersSnapshot;
+import bg.sofia.uni.fmi.mjt.cryptowallet.user.User;
+import com.google.gson.Gson;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.net.InetSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * Restarts a file backed server with a user cache over each user repository. The server keeps its files in
+ * the working directory, so the tests are skipped when any of them is already there.
+ */
+public class CryptoServerRestartTest {
+    private static final int SHARDS_PORT = 7780;
+    private static final int KEY_VALUE_STORE_PORT = 7783;
+    private static final int MAX_CACHED_USERS = 1;
+    private static final long MEMTABLE_BYTES = 1024 * 1024;
+    private static final long CONNECT_TIMEOUT_MILLIS = 5000;
+    private static final long CONNECT_RETRY_MILLIS = 50;
+    private static final List<Path> SERVER_FILES = List.of(Path.of("UsersInformation.txt"),
+            Path.of("UsersInformation.bin"), Path.of("CryptoInformation.txt"), Path.of("Exceptions.txt"),
+            Path.of("UserShards"), Path.of("UserStore"));
+    private static final String DEPOSITED = "Money are deposit successfully";
+    private static final String REGISTERED = "User registered successfully";
+    private static final String LOGGED = "User logged successfully";
+    private static final String TAKEN = "Invalid username, choose another one";
+    private static final String DEPOSITED_SUMMARY = "Money: 500.0 ";
+
+    private interface Storage {
+        void enable(CryptoServer server) throws IOException;
+    }
+
+    @BeforeEach
+    public void setUp() throws IOException {
+        assumeTrue(SERVER_FILES.stream().noneMatch(Files::exists),
+                "The server files of the working directory should not be overwritten");
+
+        String now = LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss"));
+        Files.writeString(Path.of("CryptoInformation.txt"), new Gson().toJson(Cryptocurrencies.of(
+                Set.of(new CryptoInformation("BTC", "Bitcoin", 1, 100)), now)));
+        JsonUsersSnapshot.write(Path.of("UsersInformation.txt"), List.of(new User("ivan", "123456")));
+    }
+
+    @AfterEach
+    public void tearDown() throws IOException {
+        for (var path : SERVER_FILES) {
+            if (!Files.exists(path)) {
+                continue;
+            }
+            try (Stream<Path> files = Files.walk(path)) {
+                for (var file : files.sorted(Comparator.reverseOrder()).toList()) {
+                    Files.delete(file);
+                }
+            }
+        }
+    }
+
+    private List<String> runServer(int port, Storage storage, String... requests) throws Exception {
+        CryptoServer server = new CryptoServer(port);
+        server.setMaxCachedUsers(MAX_CACHED_USERS);
+        storage.enable(server);
+        Thread starter = new Thread(() -> {
+            try {
+                server.start();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        });
+        starter.start();
+
+        try {
+            return Stream.of(requests).map(request -> sendRequest(port, request)).toList();
+        } finally {
+            server.stop();
+            starter.join();
+        }
+    }
+
+    private String sendRequest(int port, String msg) {
+        String response = "fail";
+
+        try (SocketChannel socketChannel = connect(port);
+             BufferedReader reader = new BufferedReader(Channels.newReader(socketChannel, StandardCharsets.UTF_8));
+             PrintWriter writer = new PrintWriter(Channels.newWriter(socketChannel, StandardCharsets.UTF_8), true)) {
+            for (String message : msg.split("&&")) {
+                writer.println(message.strip());
+                response = reader.readLine();
+            }
+        } catch (IOException | InterruptedException e) {
+            throw new RuntimeException("There is a problem with the network communication", e);
+        }
+
+        return response;
+    }
+
+    private SocketChannel connect(int port) throws IOException, InterruptedException {
+        long deadline = System.currentTimeMillis() + CONNECT_TIMEOUT_MILLIS;
+        while (true) {
+            SocketChannel socketChannel = SocketChannel.open();
+            try {
+                socketChannel.connect(new InetSocketAddress("localhost", port));
+                return socketChannel;
+            } catch (IOException e) {
+                socketChannel.close();
+                if (System.currentTimeMillis() > deadline) {
+                    throw e;
+                }
+                Thread.sleep(CONNECT_RETRY_MILLIS);
+            }
+        }
+    }
+
+    private void assertUsersSurviveRestarts(int firstPort, Storage storage) throws Exception {
+        assertEquals(List.of(DEPOSITED, REGISTERED), runServer(firstPort, storage,
+                "login ivan 123456 && deposit-money 500", "register niki 777777"),
+                "The user of the users file should be moved to the repository");
+
+        List<String> restarted = runServer(firstPort + 1, storage,
+                "login ivan 123456 && get-wallet-summary", "register niki 123456", "register maria 123456");
+        assertTrue(restarted.get(0).startsWith(DEPOSITED_SUMMARY),
+                "The stored wallet should not be replaced by the one in the users file: " + restarted.get(0));
+        assertEquals(TAKEN, restarted.get(1), "A stored username should not be registered again");
+        assertEquals(REGISTERED, restarted.get(2), "A new user should be registered after a restart");
+
+        List<String> restartedAgain = runServer(firstPort + 2, storage,
+                "login niki 777777", "login ivan 123456 && get-wallet-summary", "login maria 123456");
+        assertEquals(LOGGED, restartedAgain.get(0), "A user registered before two restarts should log in");
+        assertTrue(restartedAgain.get(1).startsWith(DEPOSITED_SUMMARY),
+                "The deposited money should be kept: " + restartedAgain.get(1));
+        assertEquals(LOGGED, restartedAgain.get(2), "A user registered before the restart should log in");
+    }
+
+    @Test
+    public void testCachedUsersSurviveRestartsWithUserShards() throws Exception {
+        assertUsersSurviveRestarts(SHARDS_PORT, server -> server.enableUserShards(1, Duration.ofMinutes(1)));
+    }
+
+    @Test
+    public void testCachedUsersSurviveRestartsWithKeyValueStore() throws Exception {
+        assertUsersSurviveRestarts(KEY_VALUE_STORE_PORT, server -> server.enableKeyValueStore(MEMTABLE_BYTES));
+    }
+}
@@ -2,6 +2,10 @@ package bg.sofia.uni.fmi.mjt.cryptowallet;
 
 import bg.sofia.uni.fmi.mjt.cryptowallet.coinapi.dto.CryptoInformation;
 import bg.sofia.uni.fmi.mjt.cryptowallet.coinapi.dto.Cryptocurrencies;
+import bg.sofia.uni.fmi.mjt.cryptowallet.logging.LogLevel;
+import bg.sofia.uni.fmi.mjt.cryptowallet.protocol.BinaryCryptoClient;
+import bg.sofia.uni.fmi.mjt.cryptowallet.protocol.BinaryResponse;
+import bg.sofia.uni.fmi.mjt.cryptowallet.protocol.Offering;
 import bg.sofia.uni.fmi.mjt.cryptowallet.user.User;
 import org.junit.jupiter.api.AfterAll;
 import org.junit.jupiter.api.BeforeAll;
@@ -12,18 +16,36 @@ import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.PrintWriter;
 import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
 import java.nio.channels.Channels;
 import java.nio.channels.SocketChannel;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertIterableEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 public class CryptoServerTest {
+    private static final int MULTI_REACTOR_PORT = 7778;
+    private static final int WORKER_REACTORS = 3;
+    private static final int OFFLOAD_PORT = 7779;
+    private static final int STOPPED_WORKERS_PORT = 7786;
+    private static final int PIPELINED_REQUESTS = 500;
+    private static final Path ACCESS_LOG = Path.of("AccessLog.txt");
+    private static final long ACCESS_LOG_WAIT_MILLIS = 5000;
     private static CryptoServer server;
     private static Thread serverStarterThread;
+    private static CryptoServer multiReactorServer;
+    private static Thread multiReactorStarterThread;
+    private static CryptoServer offloadServer;
+    private static Thread offloadStarterThread;
     private static final String SPACE = " ";
     private static final String ID = "ID:";
     private static final String NAME = "Name:";
@@ -45,13 +67,44 @@ public class CryptoServerTest {
            }
        });
        serverStarterThread.start();
+
+       multiReactorServer = new CryptoServer(MULTI_REACTOR_PORT, () -> Cryptocurrencies.of(
+               Set.of(new CryptoInformation("BTC", "Bitcoin", 1, 100)), "2023-02-15 11:00:00"));
+       multiReactorServer.setWorkerReactors(WORKER_REACTORS);
+       multiReactorServer.enableAccessLog(LogLevel.INFO, 1);
+       multiReactorStarterThread = new Thread(() -> {
+           try {
+               multiReactorServer.start();
+           } catch (IOException e) {
+               e.printStackTrace();
+           }
+       });
+       multiReactorStarterThread.start();
+
+       offloadServer = new CryptoServer(OFFLOAD_PORT, () -> Cryptocurrencies.of(
+               Set.of(new CryptoInformation("BTC", "Bitcoin", 1, 100)), "2023-02-15 11:00:00"));
+       offloadServer.setWorkerReactors(2);
+       offloadServer.setOffloadCommands(true);
+       offloadStarterThread = new Thread(() -> {
+           try {
+               offloadServer.start();
+           } catch (IOException e) {
+               e.printStackTrace();
+           }
+       });
+       offloadStarterThread.start();
        Thread.sleep(2000);
    }
 
    @AfterAll
-    public static void stopServer() {
+    public static void stopServer() throws IOException {
        server.stop();
        serverStarterThread.interrupt();
+       multiReactorServer.stop();
+       multiReactorStarterThread.interrupt();
+       offloadServer.stop();
+       offloadStarterThread.interrupt();
+       Files.deleteIfExists(ACCESS_LOG);
    }
 
    @BeforeEach
@@ -61,13 +114,17 @@ public class CryptoServerTest {
 
 
     private String sendRequest(String msg) {
+        return sendRequest(7777, msg);
+    }
+
+    private String sendRequest(int port, String msg) {
         String response = "fail";
 
         try (SocketChannel socketChannel = SocketChannel.open();
              BufferedReader reader = new BufferedReader(Channels.newReader(socketChannel, StandardCharsets.UTF_8));
              PrintWriter writer = new PrintWriter(Channels.newWriter(socketChannel, StandardCharsets.UTF_8), true) ){
 
-            socketChannel.connect(new InetSocketAddress("localhost", 7777));
+            socketChannel.connect(new InetSocketAddress("localhost", port));
 
             System.out.println("Connected to the server.");
 
@@ -149,6 +206,19 @@ public class CryptoServerTest {
                 "Correct offerings were expected");
     }
 
+    @Test
+    public void testListOfferingsFollowsTheSnapshot() {
+        server.setCryptocurrencies(Cryptocurrencies.of(Set.of(new CryptoInformation("BTC", "Bitcoin", 1, 100)),
+                "2023-02-15 11:00:00"));
+        assertEquals("ID:BTC Name:Bitcoin Price:100.0  ", sendRequest("list-offerings && list-offerings"),
+                "The same offerings were expected for the same snapshot");
+
+        server.setCryptocurrencies(Cryptocurrencies.of(Set.of(new CryptoInformation("ETH", "Ethereum", 1, 200)),
+                "2023-02-15 11:30:00"));
+        assertEquals("ID:ETH Name:Ethereum Price:200.0  ", sendRequest("list-offerings"),
+                "The offerings of the new snapshot were expected");
+    }
+
     @Test
     public void testDepositMoneySuccessfully() {
        assertEquals("Money are deposit successfully", sendRequest("login Petar 123456 && deposit-money 500"),
@@ -181,6 +251,19 @@ public class CryptoServerTest {
 
     }
 
+    @Test
+    public void testDepositMoneyNotANumber() {
+        assertEquals("User's input is invalid, check the help menu",
+                sendRequest("login Petar 123456 && deposit-money abc"),
+                "Invalid depositing was expected when the amount is not a number");
+        assertEquals("User's input is invalid, check the help menu",
+                sendRequest("login Petar 123456 && deposit-money NaN"),
+                "Invalid depositing was expected when the amount is not a finite number");
+        assertEquals("Money are deposit successfully",
+                sendRequest("login Petar 123456 && deposit-money abc && deposit-money 10"),
+                "The connection was expected to keep working after an invalid amount");
+    }
+
     @Test
     public void testBuyCryptoSuccessfully() {
         CryptoInformation crypto = new CryptoInformation("BTC", "Bitcoin",1,20000.00);
@@ -245,6 +328,19 @@ public class CryptoServerTest {
 
     }
 
+    @Test
+    public void testBuyCryptoNotANumber() {
+        server.setCryptocurrencies(Cryptocurrencies.of(Set.of(new CryptoInformation("BTC", "Bitcoin", 1, 100)),
+                "2023-02-15 11:00:00"));
+
+        assertEquals("User's input is invalid, check the help menu",
+                sendRequest("login Petar 123456 && deposit-money 1000 && buy BTC x"),
+                "Invalid buying was expected when the amount is not a number");
+        assertEquals("User's input is invalid, check the help menu; You successfully bought BTC",
+                sendRequest("login Petar 123456 && deposit-money 1000 && batch buy BTC x; buy BTC 10"),
+                "Only the command with the invalid amount of a batch was expected to fail");
+    }
+
     @Test
     public void testSellCryptoSuccessfully() {
         CryptoInformation crypto = new CryptoInformation("BTC", "Bitcoin",1,20000.00);
@@ -381,6 +477,298 @@ public class CryptoServerTest {
        assertEquals("disconnect", sendRequest("login Petar 123456 && deposit-money 1000" +
                " && buy BTC 1000 && disconnect"), "Successful disconnect was expected");
     }
-}
 
+    @Test
+    public void testStatsForAdmin() {
+        server.setAdmins(Set.of("Petar"));
+        String stats = sendRequest("login Petar 123456 && stats");
+        server.setAdmins(Set.of());
+
+        assertTrue(stats.contains("command.login:count="), "Login latency was expected in the statistics");
+        assertTrue(stats.contains("connections.loggedIn="), "Logged in connections were expected in the statistics");
+    }
+
+    @Test
+    public void testRegisterAdminIsRefused() {
+        server.setAdmins(Set.of("root"));
+        String response = sendRequest("register root 123456");
+        server.setAdmins(Set.of());
+
+        assertEquals("Invalid username, choose another one", response,
+                "A configured administrator was expected to be impossible to register");
+    }
+
+    @Test
+    public void testParseAdmins() {
+        assertEquals(Set.of("ivan", "niki"), CryptoServer.parseAdmins("ivan, niki,,ivan ,"),
+                "Duplicate and empty usernames were expected to be dropped");
+    }
+
+    @Test
+    public void testStatsForNotAdmin() {
+        assertEquals("Only administrators can see the statistics", sendRequest("login Petar 123456 && stats"),
+                "The statistics were expected to be hidden from users which are not administrators");
+    }
+
+    @Test
+    public void testDisconnectWithoutLogin() {
+        assertEquals("disconnect", sendRequest("disconnect"), "Disconnect without login was expected to succeed");
+        assertEquals("User logged successfully", sendRequest("login Petar 123456"),
+                "The server was expected to keep serving after a disconnect without login");
+    }
+
+    @Test
+    public void testPipelinedRequestsInSingleWrite() throws IOException {
+        try (SocketChannel socketChannel = SocketChannel.open(new InetSocketAddress("localhost", 7777));
+             BufferedReader reader = new BufferedReader(Channels.newReader(socketChannel, StandardCharsets.UTF_8))) {
+
+            String requests = "login Petar 123456" + System.lineSeparator() + "deposit-money 500" +
+                    System.lineSeparator() + "depo";
+            socketChannel.write(ByteBuffer.wrap(requests.getBytes(StandardCharsets.UTF_8)));
+            socketChannel.write(ByteBuffer.wrap(("sit-money 100" + System.lineSeparator())
+                    .getBytes(StandardCharsets.UTF_8)));
+
+            assertEquals("User logged successfully", reader.readLine(),
+                    "Successful login was expected for the first pipelined request");
+            assertEquals("Money are deposit successfully", reader.readLine(),
+                    "Successful deposit was expected for the second pipelined request");
+            assertEquals("Money are deposit successfully", reader.readLine(),
+                    "Successful deposit was expected for the request split across writes");
+        }
+    }
+
+    @Test
+    public void testListOfferingsLargerThanSocketBuffer() {
+        Set<CryptoInformation> s = new HashSet<>();
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < 20000; i++) {
+            s.add(new CryptoInformation("C" + i, "Crypto" + i, 1, i));
+        }
+        Cryptocurrencies cryptocurrencies = Cryptocurrencies.of(s, "2023-02-15 11:00:00");
+        server.setCryptocurrencies(cryptocurrencies);
+        for (var crypto : cryptocurrencies.cryptocurrencies()) {
+            builder.append(ID).append(crypto.assetID()).append(SPACE);
+            builder.append(NAME).append(crypto.assetName()).append(SPACE);
+            builder.append("Price:").append(crypto.price()).append(SPACE).append(SPACE);
+        }
+
+        assertEquals(builder.toString(), sendRequest("list-offerings"),
+                "The whole offerings response was expected even when it exceeds the socket buffer");
+    }
+
+    @Test
+    public void testBinaryProtocolOnTheTextPort() throws IOException {
+        server.setCryptocurrencies(Cryptocurrencies.of(Set.of(new CryptoInformation("BTC", "Bitcoin", 1, 100)),
+                "2023-02-15 11:00:00"));
+        try (BinaryCryptoClient client = new BinaryCryptoClient("localhost", 7777)) {
+            List<Offering> offerings = client.listOfferings();
+            assertEquals(1, offerings.size(), "One offering was expected");
+            assertEquals("BTC", offerings.get(0).assetID(), "The asset ID was expected in the offering");
+            assertEquals(100, offerings.get(0).price(), "The price was expected in the offering");
+
+            assertFalse(client.depositMoney(500).isSuccessful(), "Depositing was not expected before login");
+            assertEquals(new BinaryResponse(true, ""), client.login("Petar", "123456"), "Login was expected");
+            assertTrue(client.depositMoney(500).isSuccessful(), "Depositing was expected after login");
+            assertTrue(client.buy(offerings.get(0).asset(), 100).isSuccessful(), "Buying was expected");
+            BinaryResponse summary = client.getWalletSummary();
+            assertTrue(summary.isSuccessful() && summary.text().contains("BTC"),
+                    "The summary text was expected with the bought cryptocurrency");
+            assertTrue(client.sell(offerings.get(0).asset()).isSuccessful(), "Selling was expected");
+            assertEquals(new BinaryResponse(false, "User's input is invalid, check the help menu"),
+                    client.sell(Integer.MAX_VALUE), "An unknown asset was expected to be rejected");
+        }
+
+        assertEquals("Money are deposit successfully", sendRequest("login Petar 123456 && deposit-money 500"),
+                "Text clients were expected to keep working");
+    }
+
+    @Test
+    public void testBatchRunsTheCommandsInOrder() {
+        server.setCryptocurrencies(Cryptocurrencies.of(Set.of(new CryptoInformation("BTC", "Bitcoin", 1, 100)),
+                "2023-02-15 11:00:00"));
+
+        assertEquals("Money are deposit successfully; You successfully bought BTC; You successfully sold BTC; "
+                        + "This command cannot be part of a batch",
+                sendRequest("login Petar 123456 && batch deposit-money 1000; buy BTC 500;; sell BTC; login a b;"),
+                "The responses of every command of the batch were expected in order");
+    }
+
+    @Test
+    public void testBatchUserNotLogged() {
+        assertEquals("You have not logged to your profile", sendRequest("batch deposit-money 1000"),
+                "A batch was not expected before logging in");
+    }
+
+    @Test
+    public void testPipelinedRequests() throws IOException {
+        try (SocketChannel socketChannel = SocketChannel.open(new InetSocketAddress("localhost", 7777));
+             BufferedReader reader = new BufferedReader(Channels.newReader(socketChannel, StandardCharsets.UTF_8));
+             PrintWriter writer = new PrintWriter(Channels.newWriter(socketChannel, StandardCharsets.UTF_8), true)) {
+
+            assertIterableEquals(List.of("User logged successfully", "Money are deposit successfully",
+                            "User's input is invalid, check the help menu", "Unknown command"),
+                    CryptoClient.sendPipelined(writer, reader,
+                            List.of("login Petar 123456", "deposit-money 10", "deposit-money", "withdraw 10")),
+                    "The responses were expected in the order of the requests");
+        }
+    }
+
+    @Test
+    public void testWorkerReactorsServeConcurrentConnections() throws IOException {
+        multiReactorServer.setRegisterUser(new User("Petar", "123456"));
+        int connectionsCount = 2 * WORKER_REACTORS;
+        SocketChannel[] channels = new SocketChannel[connectionsCount];
+        try {
+            for (int i = 0; i < connectionsCount; i++) {
+                channels[i] = SocketChannel.open(new InetSocketAddress("localhost", MULTI_REACTOR_PORT));
+            }
+            for (int i = 0; i < connectionsCount; i++) {
+                assertIterableEquals(List.of("User registered successfully", "User logged successfully",
+                                "Money are deposit successfully"),
+                        sendOn(channels[i], "register user" + i + " pass", "login user" + i + " pass",
+                                "deposit-money " + (i + 1)),
+                        "Every connection was expected to be served by its reactor");
+            }
+        } finally {
+            for (var channel : channels) {
+                if (channel != null) {
+                    channel.close();
+                }
+            }
+        }
+
+        assertEquals(connectionsCount + 1, multiReactorServer.getRegisteredUsers().size(),
+                "The users registered on every reactor were expected in the shared registry");
+    }
+
+    @Test
+    public void testDisconnectOnAnotherReactorKeepsTheSession() throws IOException {
+        multiReactorServer.setRegisterUser(new User("Petar", "123456"));
+        try (SocketChannel first = SocketChannel.open(new InetSocketAddress("localhost", MULTI_REACTOR_PORT));
+             SocketChannel second = SocketChannel.open(new InetSocketAddress("localhost", MULTI_REACTOR_PORT))) {
+            assertIterableEquals(List.of("User logged successfully", "Money are deposit successfully"),
+                    sendOn(first, "login Petar 123456", "deposit-money 100"),
+                    "The first connection was expected to log in");
+            assertIterableEquals(List.of("User logged successfully", "disconnect"),
+                    sendOn(second, "login Petar 123456", "disconnect"),
+                    "The second connection was expected to log in and disconnect");
+            assertIterableEquals(List.of("Money are deposit successfully", "Money: 150.0 ActiveInvestments:  "),
+                    sendOn(first, "deposit-money 50", "get-wallet-summary"),
+                    "The first connection was expected to stay logged in with the shared wallet");
+        }
+    }
+
+    @Test
+    public void testWorkerReactorsKeepServingAfterInvalidNumbers() {
+        multiReactorServer.setRegisterUser(new User("Petar", "123456"));
+        for (int i = 0; i < WORKER_REACTORS; i++) {
+            assertEquals("User's input is invalid, check the help menu",
+                    sendRequest(MULTI_REACTOR_PORT, "login Petar 123456 && buy BTC x"),
+                    "Invalid buying was expected when the amount is not a number");
+        }
+        for (int i = 0; i < WORKER_REACTORS; i++) {
+            assertEquals("Money are deposit successfully",
+                    sendRequest(MULTI_REACTOR_PORT, "login Petar 123456 && deposit-money 10"),
+                    "Every reactor was expected to keep serving new connections");
+        }
+    }
+
+    @Test
+    public void testOffloadedCommands() throws IOException {
+        try (SocketChannel channel = SocketChannel.open(new InetSocketAddress("localhost", OFFLOAD_PORT))) {
+            assertIterableEquals(List.of("User registered successfully", "User logged successfully",
+                            "Money are deposit successfully", "User's input is invalid, check the help menu",
+                            "You successfully bought BTC", "Unknown command"),
+                    sendOn(channel, "register offloaded pass", "login offloaded pass", "deposit-money 300",
+                            "deposit-money abc", "buy BTC 100", "dance"),
+                    "The offloaded commands were expected to be answered like the inline ones");
+        }
+    }
+
+    @Test
+    public void testOffloadedPipelinedRequestsAreAnsweredInOrder() throws IOException {
+        try (SocketChannel channel = SocketChannel.open(new InetSocketAddress("localhost", OFFLOAD_PORT))) {
+            StringBuilder requests = new StringBuilder("register pipelined pass" + System.lineSeparator()
+                    + "login pipelined pass" + System.lineSeparator());
+            for (int i = 0; i < PIPELINED_REQUESTS; i++) {
+                requests.append("deposit-money 1").append(System.lineSeparator());
+            }
+            requests.append("get-wallet-summary").append(System.lineSeparator());
+            ByteBuffer buffer = ByteBuffer.wrap(requests.toString().getBytes(StandardCharsets.UTF_8));
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+
+            BufferedReader reader = new BufferedReader(Channels.newReader(channel, StandardCharsets.UTF_8));
+            assertEquals("User registered successfully", reader.readLine(), "The registration was expected first");
+            assertEquals("User logged successfully", reader.readLine(), "The login was expected second");
+            for (int i = 0; i < PIPELINED_REQUESTS; i++) {
+                assertEquals("Money are deposit successfully", reader.readLine(),
+                        "Every pipelined request was expected to be answered, even over the queue limit");
+            }
+            assertEquals("Money: 500.0 ActiveInvestments:  ", reader.readLine(),
+                    "Every pipelined deposit was expected to be executed");
+        }
+    }
 
+    @Test
+    public void testAccessLogHasTheEncodedResponseBytes() throws IOException, InterruptedException {
+        String summary;
+        try (SocketChannel channel = SocketChannel.open(new InetSocketAddress("localhost", MULTI_REACTOR_PORT))) {
+            summary = sendOn(channel, "register logged pass", "login logged pass", "get-wallet-summary").get(2);
+        }
+        int expectedBytes = (summary + System.lineSeparator()).getBytes(StandardCharsets.UTF_8).length;
+        String expected = "user=logged command=get-wallet-summary";
+
+        long deadline = System.currentTimeMillis() + ACCESS_LOG_WAIT_MILLIS;
+        String line = null;
+        while (line == null && System.currentTimeMillis() < deadline) {
+            if (Files.exists(ACCESS_LOG)) {
+                line = Files.readAllLines(ACCESS_LOG).stream().filter(l -> l.contains(expected))
+                        .findFirst().orElse(null);
+            }
+            if (line == null) {
+                Thread.sleep(100);
+            }
+        }
+        assertTrue(line != null && line.endsWith(" bytes=" + expectedBytes),
+                "The access log was expected to have the size of the sent response: " + line);
+    }
+
+    @Test
+    public void testStoppingWorkerReactorsLogsOutTheirClients() throws IOException, InterruptedException {
+        CryptoServer stoppedServer = new CryptoServer(STOPPED_WORKERS_PORT, () -> Cryptocurrencies.of(
+                Set.of(new CryptoInformation("BTC", "Bitcoin", 1, 100)), "2023-02-15 11:00:00"));
+        stoppedServer.setWorkerReactors(2);
+        Thread starter = new Thread(() -> {
+            try {
+                stoppedServer.start();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        });
+        starter.start();
+        Thread.sleep(500);
+
+        try (SocketChannel channel = SocketChannel.open(new InetSocketAddress("localhost", STOPPED_WORKERS_PORT))) {
+            assertEquals(List.of("User registered successfully", "User logged successfully"),
+                    sendOn(channel, "register stopped pass", "login stopped pass"),
+                    "The user was expected to be logged in");
+
+            stoppedServer.stop();
+            starter.join();
+            assertTrue(stoppedServer.getMetrics().report(SPACE).toString().contains("connections.loggedIn=0"),
+                    "The clients of the stopped worker reactors were expected to be logged out");
+        }
+    }
+
+    private static List<String> sendOn(SocketChannel channel, String... requests) throws IOException {
+        BufferedReader reader = new BufferedReader(Channels.newReader(channel, StandardCharsets.UTF_8));
+        List<String> responses = new ArrayList<>();
+        for (var request : requests) {
+            channel.write(ByteBuffer.wrap((request + System.lineSeparator()).getBytes(StandardCharsets.UTF_8)));
+            responses.add(reader.readLine());
+        }
+        return responses;
+    }
+}
@@ -0,0 +1,121 @@
+package bg.sofia.uni.fmi.mjt.cryptowallet.coinapi;
+
+import bg.sofia.uni.fmi.mjt.cryptowallet.coinapi.dto.CryptoInformation;
+import bg.sofia.uni.fmi.mjt.cryptowallet.coinapi.dto.Cryptocurrencies;
+import bg.sofia.uni.fmi.mjt.cryptowallet.exception.BadRequestToRestApiException;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class CryptocurrenciesRefresherTest {
+
+    private static final String EXPIRED_TIME = "2023-02-15 11:00:00";
+    private static final String FRESH_TIME = "2999-02-15 11:00:00";
+
+    private Cryptocurrencies snapshot(String time, double price) {
+        Set<CryptoInformation> crypto = new HashSet<>();
+        crypto.add(new CryptoInformation("BTC", "Bitcoin", 1, price));
+        return Cryptocurrencies.of(crypto, time);
+    }
+
+    @Test
+    public void testExpiredSnapshotIsRefreshedInBackground() throws InterruptedException {
+        Cryptocurrencies fresh = snapshot(FRESH_TIME, 21000);
+        AtomicReference<Cryptocurrencies> published = new AtomicReference<>();
+        CountDownLatch latch = new CountDownLatch(1);
+
+        CryptocurrenciesRefresher refresher = new CryptocurrenciesRefresher(() -> fresh, crypto -> {
+            published.set(crypto);
+            latch.countDown();
+        }, Duration.ofMinutes(30));
+        refresher.start(snapshot(EXPIRED_TIME, 20000));
+
+        assertTrue(latch.await(5, TimeUnit.SECONDS), "Expired snapshot was expected to be refreshed");
+        assertSame(fresh, published.get(), "The fetched snapshot was expected to be published");
+        assertSame(fresh, refresher.getLastSnapshot(), "The fetched snapshot was expected to be the last one");
+        refresher.stop();
+    }
+
+    @Test
+    public void testFailedRefreshKeepsLastSnapshot() throws InterruptedException {
+        Cryptocurrencies expired = snapshot(EXPIRED_TIME, 20000);
+        CountDownLatch latch = new CountDownLatch(1);
+
+        CryptocurrenciesRefresher refresher = new CryptocurrenciesRefresher(() -> {
+            latch.countDown();
+            throw new BadRequestToRestApiException("There is a problem with your request");
+        }, crypto -> {
+            throw new AssertionError("Nothing was expected to be published after a failed refresh");
+        }, Duration.ofMinutes(30));
+        refresher.start(expired);
+
+        assertTrue(latch.await(5, TimeUnit.SECONDS), "A refresh attempt was expected");
+        assertSame(expired, refresher.getLastSnapshot(), "The last good snapshot was expected to be kept");
+        refresher.stop();
+    }
+
+    @Test
+    public void testValidSnapshotIsNotRefreshed() throws InterruptedException {
+        CountDownLatch latch = new CountDownLatch(1);
+
+        CryptocurrenciesRefresher refresher = new CryptocurrenciesRefresher(() -> {
+            latch.countDown();
+            return null;
+        }, crypto -> { }, Duration.ofMinutes(30));
+        refresher.start(snapshot(FRESH_TIME, 20000));
+
+        assertFalse(latch.await(500, TimeUnit.MILLISECONDS),
+                "No refresh was expected while the snapshot is valid");
+        refresher.stop();
+    }
+
+    @Test
+    public void testUnknownUpdateTimeIsValidForTheWholeValidity() throws InterruptedException {
+        CountDownLatch latch = new CountDownLatch(1);
+
+        CryptocurrenciesRefresher refresher = new CryptocurrenciesRefresher(() -> {
+            latch.countDown();
+            return null;
+        }, crypto -> { }, Duration.ofMinutes(30));
+        refresher.start(snapshot("not a time", 20000));
+        refresher.stop();
+
+        CryptocurrenciesRefresher missingTime = new CryptocurrenciesRefresher(() -> {
+            latch.countDown();
+            return null;
+        }, crypto -> { }, Duration.ofMinutes(30));
+        missingTime.start(snapshot(null, 20000));
+
+        assertFalse(latch.await(500, TimeUnit.MILLISECONDS),
+                "No refresh was expected for a snapshot with an unknown update time");
+        missingTime.stop();
+    }
+
+    @Test
+    public void testStaleFetchedSnapshotIsNotFetchedAgainRightAway() throws InterruptedException {
+        AtomicInteger fetches = new AtomicInteger();
+        CountDownLatch latch = new CountDownLatch(1);
+
+        CryptocurrenciesRefresher refresher = new CryptocurrenciesRefresher(() -> {
+            fetches.incrementAndGet();
+            return snapshot(EXPIRED_TIME, 21000);
+        }, crypto -> latch.countDown(), Duration.ofMinutes(30));
+        refresher.start(null);
+
+        assertTrue(latch.await(5, TimeUnit.SECONDS), "The first fetch was expected to be published");
+        Thread.sleep(500);
+        assertEquals(1, fetches.get(), "A stale snapshot was expected to be fetched again only after a delay");
+        refresher.stop();
+    }
+}
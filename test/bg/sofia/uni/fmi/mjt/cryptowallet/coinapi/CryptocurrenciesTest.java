@@ -0,0 +1,70 @@
+package bg.sofia.uni.fmi.mjt.cryptowallet.coinapi;
+
+import bg.sofia.uni.fmi.mjt.cryptowallet.coinapi.dto.CryptoInformation;
+import bg.sofia.uni.fmi.mjt.cryptowallet.coinapi.dto.Cryptocurrencies;
+import com.google.gson.Gson;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertIterableEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+public class CryptocurrenciesTest {
+
+    private static final String TIME = "2023-02-15 11:00:00";
+    private static final CryptoInformation BTC = new CryptoInformation("BTC", "Bitcoin", 1, 20525.4561);
+    private static final CryptoInformation ETH = new CryptoInformation("ETH", "Ethereum", 1, 1500.25);
+    private static final CryptoInformation USDT = new CryptoInformation("USDT", "Tether", 1, 1.0);
+
+    private Set<CryptoInformation> inOrder(CryptoInformation... cryptocurrencies) {
+        return new LinkedHashSet<>(List.of(cryptocurrencies));
+    }
+
+    @Test
+    public void testFindByAssetID() {
+        Cryptocurrencies cryptocurrencies = Cryptocurrencies.of(inOrder(BTC, ETH), TIME);
+
+        assertSame(BTC, cryptocurrencies.findByAssetID("BTC"), "BTC was expected to be found");
+        assertSame(ETH, cryptocurrencies.findByAssetID("ETH"), "ETH was expected to be found");
+        assertNull(cryptocurrencies.findByAssetID("DOGE"), "Null was expected for a missing asset ID");
+        assertNull(cryptocurrencies.findByAssetID("btc"), "The asset ID was expected to be case sensitive");
+    }
+
+    @Test
+    public void testFindByAssetIDReturnsTheFirstOfTheSameAssetID() {
+        CryptoInformation otherBtc = new CryptoInformation("BTC", "Bitcoin", 1, 1.0);
+        Cryptocurrencies cryptocurrencies = Cryptocurrencies.of(inOrder(BTC, otherBtc), TIME);
+
+        assertSame(BTC, cryptocurrencies.findByAssetID("BTC"),
+                "The first cryptocurrency with the asset ID was expected, like a linear search finds it");
+    }
+
+    @Test
+    public void testFindByAssetIDOnGsonCreatedInstance() {
+        Gson gson = new Gson();
+        Cryptocurrencies read = gson.fromJson(gson.toJson(Cryptocurrencies.of(inOrder(BTC, ETH), TIME)),
+                Cryptocurrencies.class);
+
+        assertEquals(BTC, read.findByAssetID("BTC"), "The index was expected to be built on first use");
+        assertEquals(ETH, read.findByAssetID("ETH"), "The index was expected to be reused");
+        assertNull(read.findByAssetID("DOGE"), "Null was expected for a missing asset ID");
+    }
+
+    @Test
+    public void testIterationOrderIsPreserved() {
+        Gson gson = new Gson();
+        Cryptocurrencies cryptocurrencies = Cryptocurrencies.of(inOrder(USDT, BTC, ETH), TIME);
+        Cryptocurrencies read = gson.fromJson(gson.toJson(cryptocurrencies), Cryptocurrencies.class);
+
+        assertIterableEquals(List.of(USDT, BTC, ETH), new ArrayList<>(cryptocurrencies.cryptocurrencies()),
+                "The cryptocurrencies were expected in the order they were given");
+        assertIterableEquals(List.of(USDT, BTC, ETH), new ArrayList<>(read.cryptocurrencies()),
+                "The cryptocurrencies were expected in the order they were read");
+    }
+}
@@ -0,0 +1,80 @@
+package bg.sofia.uni.fmi.mjt.cryptowallet.command;
+
+import bg.sofia.uni.fmi.mjt.cryptowallet.protocol.AssetIds;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class BinaryCommandDecoderTest {
+
+    private AssetIds assetIds;
+
+    @BeforeEach
+    public void setUp() {
+        assetIds = new AssetIds();
+    }
+
+    private Command decode(ByteBuffer frame) {
+        return BinaryCommandDecoder.decode(frame.array(), 0, frame.position(), assetIds, new Command());
+    }
+
+    private static ByteBuffer frame(CommandType type) {
+        return ByteBuffer.allocate(64).put(type.opcode());
+    }
+
+    private static ByteBuffer putString(ByteBuffer frame, String string) {
+        byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+        return frame.putShort((short) bytes.length).put(bytes);
+    }
+
+    @Test
+    public void testBuyResolvesTheAsset() {
+        int asset = assetIds.intern("BTC");
+        Command command = decode(frame(CommandType.BUY).putInt(asset).putDouble(12.5));
+
+        assertEquals(CommandType.BUY, command.type(), "The buy command was expected");
+        assertTrue(command.hasArguments(2), "Two arguments were expected");
+        assertSame(assetIds.assetID(asset), command.argument(0), "The interned asset ID was expected");
+        assertEquals(12.5, command.numberArgument(1), "The amount was expected as the second argument");
+    }
+
+    @Test
+    public void testStringsAreDecoded() {
+        Command command = decode(putString(putString(frame(CommandType.REGISTER), "Petar"), "123456"));
+
+        assertTrue(command.hasArguments(2), "Two arguments were expected");
+        assertEquals("Petar", command.argument(0), "The username was expected as the first argument");
+        assertEquals("123456", command.argument(1), "The password was expected as the second argument");
+    }
+
+    @Test
+    public void testInvalidFrames() {
+        assertFalse(decode(frame(CommandType.BUY).putInt(assetIds.intern("BTC"))).hasArguments(2),
+                "A frame without the amount was not expected to be valid");
+        assertFalse(decode(frame(CommandType.SELL).putInt(7)).hasArguments(1),
+                "An unknown asset was not expected to be valid");
+        assertFalse(decode(frame(CommandType.DEPOSIT).putDouble(1).put((byte) 0)).hasArguments(1),
+                "Bytes after the arguments were not expected");
+        assertFalse(decode(putString(putString(frame(CommandType.LOGIN), "a b"), "c")).hasArguments(2),
+                "A username with a space was not expected to be valid");
+        assertEquals(CommandType.UNKNOWN, decode(ByteBuffer.allocate(1).put((byte) 100)).type(),
+                "An unknown opcode was expected to be an unknown command");
+    }
+
+    @Test
+    public void testAssetIdsAreStable() {
+        for (int i = 0; i < 1000; i++) {
+            assertEquals(i, assetIds.intern("C" + i), "Assets were expected to get consecutive integers");
+        }
+        assertEquals(5, assetIds.intern("C5"), "An interned asset was expected to keep its integer");
+        assertEquals("C999", assetIds.assetID(999), "The asset ID was expected for its integer");
+        assertEquals(null, assetIds.assetID(1000), "No asset was expected for an unused integer");
+    }
+}
@@ -0,0 +1,115 @@
+package bg.sofia.uni.fmi.mjt.cryptowallet.command;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class CommandDecoderTest {
+
+    private static Command decode(String request) {
+        byte[] bytes = request.getBytes(StandardCharsets.UTF_8);
+        return CommandDecoder.decode(bytes, 0, bytes.length, new Command());
+    }
+
+    private static double parse(String number) {
+        byte[] bytes = number.getBytes(StandardCharsets.UTF_8);
+        return CommandDecoder.parseDouble(bytes, 0, bytes.length);
+    }
+
+    @Test
+    public void testVerbAndArgumentsAreDecoded() {
+        Command command = decode("buy BTC 12.5");
+
+        assertEquals(CommandType.BUY, command.type(), "The buy command was expected");
+        assertTrue(command.hasArguments(2), "Two arguments were expected");
+        assertEquals("BTC", command.argument(0), "The asset ID was expected as the first argument");
+        assertEquals(12.5, command.numberArgument(1), "The amount was expected as the second argument");
+    }
+
+    @Test
+    public void testRequestIsStripped() {
+        Command command = decode("\t login Petar 123456 \r");
+
+        assertEquals(CommandType.LOGIN, command.type(), "The login command was expected");
+        assertEquals("123456", command.argument(1), "The line ending was not expected in the password");
+    }
+
+    @Test
+    public void testUnknownVerbs() {
+        assertEquals(CommandType.UNKNOWN, decode("").type(), "An empty request was expected to be unknown");
+        assertEquals(CommandType.UNKNOWN, decode("bu BTC 1").type(), "A verb prefix was expected to be unknown");
+        assertEquals(CommandType.UNKNOWN, decode("buyy BTC 1").type(), "A longer verb was expected to be unknown");
+        assertEquals(CommandType.UNKNOWN, decode("unknown").type(), "Unknown was not expected to be a verb");
+    }
+
+    @Test
+    public void testArgumentsAreSplitOnSingleSpaces() {
+        Command command = decode("buy  BTC 1");
+
+        assertEquals(3, command.argumentsCount(), "Two spaces were expected to produce an empty argument");
+        assertFalse(command.hasArguments(3), "An empty argument was not expected to be valid");
+        assertFalse(decode("deposit-money").hasArguments(1), "A missing argument was not expected to be valid");
+    }
+
+    @Test
+    public void testCommandIsReused() {
+        Command command = new Command();
+        byte[] first = "register ivan 123".getBytes(StandardCharsets.UTF_8);
+        byte[] second = "list-offerings".getBytes(StandardCharsets.UTF_8);
+
+        CommandDecoder.decode(first, 0, first.length, command);
+        assertSame(command, CommandDecoder.decode(second, 0, second.length, command),
+                "The command was expected to be reused");
+        assertEquals(CommandType.LIST_OFFERINGS, command.type(), "The second command was expected");
+        assertEquals(0, command.argumentsCount(), "The arguments of the first command were expected to be cleared");
+    }
+
+    @Test
+    public void testBatchCommandsAreSplit() {
+        Command batch = decode("batch deposit-money 100; buy BTC 10 ;; sell BTC");
+        assertEquals(CommandType.BATCH, batch.type(), "The batch command was expected");
+
+        Command command = new Command();
+        assertEquals(CommandType.DEPOSIT, batch.nextBatchCommand(command).type(), "The deposit was expected first");
+        assertEquals(100, command.numberArgument(0), "The deposited amount was expected");
+        assertEquals(CommandType.BUY, batch.nextBatchCommand(command).type(), "The buy was expected second");
+        assertTrue(command.hasArguments(2), "The buy was expected with its arguments");
+        assertEquals(CommandType.SELL, batch.nextBatchCommand(command).type(), "The blank command was expected "
+                + "to be skipped");
+        assertEquals(null, batch.nextBatchCommand(command), "No more commands were expected");
+        assertEquals(null, decode("buy BTC 10").nextBatchCommand(command),
+                "Only a batch was expected to have commands");
+    }
+
+    @Test
+    public void testNumbersAreParsedAsDoubleParseDouble() {
+        String[] numbers = {"0", "-0", "1", "+7", "12.5", "0.1", ".5", "5.", "1e10", "1.5E-7", "8.988465674311579E307",
+            "123456789012345678901234", "0.000000000000000000000000001", "1d", "0x1p3", "Infinity", "NaN", "4.9E-324"};
+        for (String number : numbers) {
+            assertEquals(Double.parseDouble(number), parse(number), "Unexpected value of " + number);
+        }
+
+        Random random = new Random(42);
+        for (int i = 0; i < 10_000; i++) {
+            String number = Double.toString(random.nextDouble() * Math.pow(10, random.nextInt(40) - 20));
+            assertEquals(Double.parseDouble(number), parse(number), "Unexpected value of " + number);
+            String plain = (random.nextInt(2_000_000) - 1_000_000) + "." + random.nextInt(1000);
+            assertEquals(Double.parseDouble(plain), parse(plain), "Unexpected value of " + plain);
+        }
+    }
+
+    @Test
+    public void testInvalidNumbersAreRejected() {
+        assertThrows(NumberFormatException.class, () -> parse("abc"), "Letters were not expected to be a number");
+        assertThrows(NumberFormatException.class, () -> parse("."), "A dot was not expected to be a number");
+        assertThrows(NumberFormatException.class, () -> parse("1e"), "A missing exponent was not expected");
+        assertThrows(NumberFormatException.class, () -> parse("1.2.3"), "Two dots were not expected");
+    }
+}
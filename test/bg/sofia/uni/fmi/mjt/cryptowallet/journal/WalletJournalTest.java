@@ -0,0 +1,164 @@
+package bg.sofia.uni.fmi.mjt.cryptowallet.journal;
+
+import bg.sofia.uni.fmi.mjt.cryptowallet.coinapi.dto.CryptoInformation;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertIterableEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class WalletJournalTest {
+
+    private static final CryptoInformation BTC = new CryptoInformation("BTC", "Bitcoin", 1, 20000.0);
+
+    private Path directory;
+
+    @BeforeEach
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("wallet-journal");
+    }
+
+    private List<JournalEvent> replay(List<Long> sequences) throws IOException {
+        List<JournalEvent> events = new ArrayList<>();
+        try (WalletJournal journal = new WalletJournal(directory, FsyncPolicy.NEVER, Duration.ZERO)) {
+            journal.replay((event, sequence) -> {
+                events.add(event);
+                sequences.add(sequence);
+            });
+        }
+        return events;
+    }
+
+    private long countSegments() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.count();
+        }
+    }
+
+    @Test
+    public void testAppendedEventsAreReplayedInOrder() throws IOException {
+        List<JournalEvent> appended = List.of(JournalEvent.register("niki", "77777"),
+                JournalEvent.deposit("niki", 1500), JournalEvent.buy("niki", BTC, 1000),
+                JournalEvent.sell("niki", BTC));
+
+        try (WalletJournal journal = new WalletJournal(directory, FsyncPolicy.EVERY_EVENT, Duration.ZERO)) {
+            journal.start();
+            for (var event : appended) {
+                journal.append(event);
+            }
+        }
+
+        List<Long> sequences = new ArrayList<>();
+        assertIterableEquals(appended, replay(sequences), "The appended events were expected after replay");
+        assertIterableEquals(List.of(1L, 2L, 3L, 4L), sequences, "Increasing sequence numbers were expected");
+    }
+
+    @Test
+    public void testTornRecordAtTheEndIsDiscarded() throws IOException {
+        try (WalletJournal journal = new WalletJournal(directory, FsyncPolicy.INTERVAL, Duration.ofMillis(10))) {
+            journal.start();
+            journal.append(JournalEvent.deposit("niki", 1500));
+        }
+
+        Path segment;
+        try (Stream<Path> files = Files.list(directory)) {
+            segment = files.findFirst().orElseThrow();
+        }
+        long validSize = Files.size(segment);
+        Files.write(segment, new byte[] {0, 0, 0, 42, 1, 2}, StandardOpenOption.APPEND);
+
+        List<Long> sequences = new ArrayList<>();
+        assertIterableEquals(List.of(JournalEvent.deposit("niki", 1500)), replay(sequences),
+                "Only the complete record was expected after replay");
+        assertEquals(validSize, Files.size(segment), "The torn record was expected to be cut off");
+    }
+
+    @Test
+    public void testCorruptRecordBeforeTheLastSegmentFailsTheReplay() throws IOException {
+        try (WalletJournal journal = new WalletJournal(directory, FsyncPolicy.EVERY_EVENT, Duration.ZERO)) {
+            journal.start();
+            journal.append(JournalEvent.deposit("niki", 1500));
+        }
+
+        Path segment;
+        try (Stream<Path> files = Files.list(directory)) {
+            segment = files.findFirst().orElseThrow();
+        }
+        long validSize = Files.size(segment);
+        Files.copy(segment, directory.resolve("segment-000002.log"));
+        Files.write(segment, new byte[] {0, 0, 0, 42, 1, 2}, StandardOpenOption.APPEND);
+
+        IOException exception = assertThrows(IOException.class, () -> replay(new ArrayList<>()),
+                "A corrupt record before the last segment was expected to fail the replay");
+        assertTrue(exception.getMessage().contains(segment.getFileName() + " at offset " + validSize),
+                "The segment and the offset were expected in the message: " + exception.getMessage());
+    }
+
+    @Test
+    public void testCompactionFoldsOldSegmentsIntoSnapshot() throws IOException {
+        List<String> snapshots = new ArrayList<>();
+        try (WalletJournal journal = new WalletJournal(directory, FsyncPolicy.NEVER, Duration.ZERO)) {
+            journal.start();
+            journal.append(JournalEvent.deposit("niki", 1500));
+            journal.compact(new SnapshotWriter<byte[]>() {
+                @Override
+                public byte[] capture() {
+                    return "snapshot".getBytes(StandardCharsets.UTF_8);
+                }
+
+                @Override
+                public void write(byte[] snapshot) {
+                    snapshots.add(new String(snapshot, StandardCharsets.UTF_8));
+                }
+            });
+            journal.append(JournalEvent.deposit("niki", 500));
+        }
+
+        List<Long> sequences = new ArrayList<>();
+        assertIterableEquals(List.of("snapshot"), snapshots, "One snapshot was expected to be written");
+        assertIterableEquals(List.of(JournalEvent.deposit("niki", 500)), replay(sequences),
+                "Only the events after the compaction were expected to be kept");
+        assertIterableEquals(List.of(2L), sequences, "Sequence numbers were expected to continue after compaction");
+        assertEquals(1, countSegments(), "The folded segment was expected to be deleted");
+    }
+
+    @Test
+    public void testFailedBackgroundWriteIsReportedByLaterAppends() throws IOException {
+        try (WalletJournal journal = new WalletJournal(directory, FsyncPolicy.NEVER, Duration.ZERO)) {
+            journal.start();
+            journal.append(JournalEvent.deposit("niki", 1500));
+            try (Stream<Path> files = Files.list(directory)) {
+                for (var file : files.toList()) {
+                    Files.delete(file);
+                }
+            }
+            Files.delete(directory);
+
+            // the next segment cannot be created in the deleted directory
+            assertThrows(IOException.class, () -> journal.compact(new SnapshotWriter<byte[]>() {
+                @Override
+                public byte[] capture() {
+                    return new byte[0];
+                }
+
+                @Override
+                public void write(byte[] snapshot) {
+                }
+            }), "The failed rotation was expected to fail the compaction");
+            assertThrows(IOException.class, () -> journal.append(JournalEvent.deposit("niki", 500)),
+                    "An append after a failed background write was expected to fail");
+        }
+    }
+}
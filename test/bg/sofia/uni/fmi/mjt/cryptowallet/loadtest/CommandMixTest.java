@@ -0,0 +1,50 @@
+package bg.sofia.uni.fmi.mjt.cryptowallet.loadtest;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class CommandMixTest {
+
+    @Test
+    public void testParseKeepsOrder() {
+        CommandMix mix = CommandMix.parse("buy=3, sell=1,get-wallet-summary=6");
+
+        assertEquals(List.of("buy", "sell", "get-wallet-summary"), mix.getCommands(),
+                "The commands were expected in the given order");
+    }
+
+    @Test
+    public void testNextFollowsWeights() {
+        CommandMix mix = CommandMix.parse("buy=1,get-wallet-summary=3");
+        Random random = new Random(7);
+        Map<String, Integer> picks = new HashMap<>();
+        for (int i = 0; i < 40_000; i++) {
+            picks.merge(mix.next(random), 1, Integer::sum);
+        }
+
+        double ratio = picks.get("get-wallet-summary") / (double) picks.get("buy");
+        assertTrue(ratio > 2.8 && ratio < 3.2, "The commands were expected to be picked by weight but were " + picks);
+    }
+
+    @Test
+    public void testParseUnknownCommand() {
+        assertThrows(IllegalArgumentException.class, () -> CommandMix.parse("buy=1,transfer=2"),
+                "IllegalArgumentException was expected for an unknown command");
+    }
+
+    @Test
+    public void testParseInvalidWeight() {
+        assertThrows(IllegalArgumentException.class, () -> CommandMix.parse("buy=abc"),
+                "IllegalArgumentException was expected for a weight which is not a number");
+        assertThrows(IllegalArgumentException.class, () -> CommandMix.parse("buy=0"),
+                "IllegalArgumentException was expected for a zero weight");
+    }
+}
@@ -0,0 +1,90 @@
+package bg.sofia.uni.fmi.mjt.cryptowallet.logging;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class AccessLogTest {
+
+    private Path directory;
+    private Path file;
+
+    @BeforeEach
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("access-log");
+        file = directory.resolve("access.txt");
+    }
+
+    @AfterEach
+    public void tearDown() throws IOException {
+        try (var files = Files.list(directory)) {
+            for (var path : files.toList()) {
+                Files.delete(path);
+            }
+        }
+        Files.delete(directory);
+    }
+
+    @Test
+    public void testRequestIsWrittenWithItsFields() throws IOException {
+        AccessLog accessLog = new AccessLog(file, LogLevel.INFO, 1);
+        assertTrue(accessLog.sampleRequest(), "Every request was expected to be sampled");
+        accessLog.request("alice", "buy", 2_500_000, 42);
+        accessLog.close();
+
+        List<String> lines = Files.readAllLines(file);
+        assertEquals(1, lines.size(), "One line was expected per request");
+        assertTrue(lines.get(0).endsWith(" INFO request client=- user=alice command=buy latency_us=2500 bytes=42"),
+                "Unexpected access log line: " + lines.get(0));
+    }
+
+    @Test
+    public void testEventsBelowTheLevelAreNotWritten() throws IOException {
+        AccessLog accessLog = new AccessLog(file, LogLevel.WARN, 1);
+        assertFalse(accessLog.sampleRequest(), "Requests were not expected to be logged at WARN");
+        accessLog.connection(LogLevel.DEBUG, "accepted", "/127.0.0.1:5000");
+        accessLog.connection(LogLevel.WARN, "slow-client-closed", "/127.0.0.1:5000");
+        accessLog.close();
+
+        List<String> lines = Files.readAllLines(file);
+        assertEquals(1, lines.size(), "Only the warning was expected in the log");
+        assertTrue(lines.get(0).contains(" WARN slow-client-closed client=/127.0.0.1:5000 user=- "),
+                "Unexpected access log line: " + lines.get(0));
+    }
+
+    @Test
+    public void testOffDisablesEveryEvent() {
+        AccessLog accessLog = new AccessLog(file, LogLevel.OFF, 1);
+        assertFalse(accessLog.isEnabled(LogLevel.ERROR), "Nothing was expected to be logged when the log is off");
+        assertFalse(accessLog.sampleRequest(), "Nothing was expected to be logged when the log is off");
+        accessLog.close();
+    }
+
+    @Test
+    public void testRequestsAreSampled() {
+        AccessLog accessLog = new AccessLog(file, LogLevel.INFO, 100);
+        int sampled = 0;
+        for (int i = 0; i < 10_000; i++) {
+            sampled += accessLog.sampleRequest() ? 1 : 0;
+        }
+        accessLog.close();
+
+        assertTrue(sampled > 0 && sampled < 1_000, "About one in a hundred requests was expected to be sampled");
+    }
+
+    @Test
+    public void testSampleRateMustBePositive() {
+        assertThrows(IllegalArgumentException.class, () -> new AccessLog(file, LogLevel.INFO, 0),
+                "A sample rate of zero was expected to be rejected");
+    }
+}
@@ -0,0 +1,125 @@
+package bg.sofia.uni.fmi.mjt.cryptowallet.logging;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class AsyncAppenderTest {
+
+    private Path directory;
+    private Path file;
+
+    @BeforeEach
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("appender");
+        file = directory.resolve("log.txt");
+    }
+
+    @AfterEach
+    public void tearDown() throws IOException {
+        try (var files = Files.list(directory)) {
+            for (var path : files.toList()) {
+                Files.delete(path);
+            }
+        }
+        Files.delete(directory);
+    }
+
+    @Test
+    public void testRecordsAreWrittenOnClose() throws IOException {
+        AsyncAppender<String> appender = new AsyncAppender<>(file, 16, 1024, 1, 1, Function.identity(), "test-writer");
+        appender.append("first");
+        appender.append("second");
+        appender.close();
+
+        assertEquals(List.of("first", "second"), Files.readAllLines(file), "Every record was expected in the file");
+    }
+
+    @Test
+    public void testFileIsRotatedBySize() throws IOException {
+        AsyncAppender<String> appender = new AsyncAppender<>(file, 64, 20, 2, 1, Function.identity(), "test-writer");
+        for (int i = 0; i < 6; i++) {
+            appender.append("record-" + i);
+        }
+        appender.close();
+
+        assertTrue(Files.size(file) <= 20, "The current file was expected to stay within the maximum size");
+        assertTrue(Files.exists(Path.of(file + ".1")), "The previous file was expected to be kept");
+        assertTrue(Files.exists(Path.of(file + ".2")), "The older file was expected to be kept");
+        assertTrue(Files.notExists(Path.of(file + ".3")), "Only two rotated files were expected to be kept");
+    }
+
+    @Test
+    public void testFileIsRotatedByEncodedSize() throws IOException {
+        AsyncAppender<String> appender = new AsyncAppender<>(file, 64, 20, 1, 1, Function.identity(), "test-writer");
+        appender.append("ЖЖЖЖЖЖ");
+        appender.append("ЖЖЖЖЖЖ");
+        appender.close();
+
+        assertTrue(Files.size(file) <= 20, "The maximum size was expected to count the UTF-8 bytes");
+        assertEquals(13, AsyncAppender.utf8Length("ЖЖЖЖЖЖ\n"),
+                "Two bytes were expected for every Cyrillic letter");
+        assertEquals(4, AsyncAppender.utf8Length("\uD83D\uDE00"), "Four bytes were expected for a surrogate pair");
+    }
+
+    @Test
+    public void testWriterRecoversAfterAFailedWrite() throws IOException, InterruptedException {
+        Files.createDirectory(file);
+        AsyncAppender<String> appender = new AsyncAppender<>(file, 16, 1024, 1, 1, Function.identity(), "test-writer");
+        appender.append("lost");
+
+        long deadline = System.currentTimeMillis() + 5000;
+        while (appender.getDroppedCount() == 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(1, appender.getDroppedCount(),
+                "The record which could not be written was expected to be dropped");
+
+        Files.delete(file);
+        appender.append("kept");
+        appender.close();
+
+        List<String> lines = Files.readAllLines(file);
+        assertTrue(lines.contains("kept"), "The writer was expected to write again after the failure: " + lines);
+        assertTrue(lines.contains("dropped=1 total_dropped=1"), "The lost record was expected to be noted: " + lines);
+    }
+
+    @Test
+    public void testRecordsAreDroppedWhenSaturated() throws IOException, InterruptedException {
+        CountDownLatch writerBlocked = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        AsyncAppender<String> appender = new AsyncAppender<>(file, 8, 1024 * 1024, 1, 1_000_000, record -> {
+            writerBlocked.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return record;
+        }, "test-writer");
+
+        appender.append("blocking");
+        writerBlocked.await();
+        int accepted = 0;
+        for (int i = 0; i < 100; i++) {
+            accepted += appender.append("record-" + i) ? 1 : 0;
+        }
+        release.countDown();
+        appender.close();
+
+        assertTrue(accepted < 100, "Records were expected to be dropped while the writer was blocked");
+        assertEquals(100 - accepted, appender.getDroppedCount(), "Every rejected record was expected to be counted");
+        List<String> lines = Files.readAllLines(file);
+        assertTrue(lines.get(lines.size() - 1).startsWith("dropped="), "The drops were expected to be noted");
+    }
+}
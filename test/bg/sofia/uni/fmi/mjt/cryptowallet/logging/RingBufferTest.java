@@ -0,0 +1,59 @@
+package bg.sofia.uni.fmi.mjt.cryptowallet.logging;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class RingBufferTest {
+
+    @Test
+    public void testCapacityIsRoundedToPowerOfTwo() {
+        assertEquals(8, new RingBuffer<String>(5).capacity(), "The capacity was expected to be rounded up");
+        assertEquals(1, new RingBuffer<String>(1).capacity(), "A capacity of one was expected to be kept");
+    }
+
+    @Test
+    public void testOfferAndPollInOrder() {
+        RingBuffer<String> buffer = new RingBuffer<>(2);
+
+        assertTrue(buffer.offer("first"), "The first item was expected to fit");
+        assertTrue(buffer.offer("second"), "The second item was expected to fit");
+        assertFalse(buffer.offer("third"), "A full buffer was expected to reject the item");
+        assertEquals("first", buffer.poll(), "The items were expected in the order they were offered");
+        assertTrue(buffer.offer("third"), "A polled slot was expected to be reused");
+        assertEquals("second", buffer.poll(), "The items were expected in the order they were offered");
+        assertEquals("third", buffer.poll(), "The items were expected in the order they were offered");
+        assertNull(buffer.poll(), "An empty buffer was expected to return null");
+    }
+
+    @Test
+    public void testConcurrentProducers() throws InterruptedException {
+        RingBuffer<Integer> buffer = new RingBuffer<>(1 << 16);
+        Thread[] producers = new Thread[4];
+        for (int i = 0; i < producers.length; i++) {
+            int producer = i;
+            producers[i] = new Thread(() -> {
+                for (int j = 0; j < 10_000; j++) {
+                    buffer.offer(producer * 10_000 + j);
+                }
+            });
+            producers[i].start();
+        }
+        for (var producer : producers) {
+            producer.join();
+        }
+
+        Set<Integer> items = new HashSet<>();
+        Integer item;
+        while ((item = buffer.poll()) != null) {
+            items.add(item);
+        }
+        assertEquals(40_000, items.size(), "Every offered item was expected exactly once");
+    }
+}
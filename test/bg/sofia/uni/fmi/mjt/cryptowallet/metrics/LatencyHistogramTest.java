@@ -0,0 +1,60 @@
+package bg.sofia.uni.fmi.mjt.cryptowallet.metrics;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class LatencyHistogramTest {
+
+    @Test
+    public void testSmallValuesAreExact() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 1; i <= 100; i++) {
+            histogram.record(i);
+        }
+
+        assertEquals(100, histogram.getCount(), "Every recorded value was expected to be counted");
+        assertEquals(50, histogram.getValueAtPercentile(50.0), "Values below 128 were expected to be exact");
+        assertEquals(99, histogram.getValueAtPercentile(99.0), "Values below 128 were expected to be exact");
+        assertEquals(100, histogram.getValueAtPercentile(100.0), "The maximum was expected at the 100th percentile");
+    }
+
+    @Test
+    public void testLargeValuesWithinPrecision() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (long value = 1_000; value <= 1_000_000; value += 1_000) {
+            histogram.record(value);
+        }
+
+        long median = histogram.getValueAtPercentile(50.0);
+        assertTrue(median >= 500_000 && median <= 500_000 * 1.016,
+                "The median was expected within the precision of the histogram but was " + median);
+        assertEquals(1_000_000, histogram.getMax(), "The maximum was expected to be exact");
+    }
+
+    @Test
+    public void testBucketsCoverAllValues() {
+        long[] values = {0, 127, 128, 129, 255, 256, 1_000_003, Long.MAX_VALUE};
+        for (var value : values) {
+            int bucket = LatencyHistogram.bucketOf(value);
+            assertTrue(LatencyHistogram.highestValueOf(bucket) >= value,
+                    "The bucket of " + value + " was expected to contain it");
+            assertTrue(bucket == 0 || LatencyHistogram.highestValueOf(bucket - 1) < value,
+                    "The previous bucket of " + value + " was expected to be below it");
+        }
+    }
+
+    @Test
+    public void testEmptyHistogram() {
+        assertEquals(0, new LatencyHistogram().getValueAtPercentile(99.0),
+                "Zero was expected for a histogram without values");
+    }
+
+    @Test
+    public void testNegativeValue() {
+        assertThrows(IllegalArgumentException.class, () -> new LatencyHistogram().record(-1),
+                "IllegalArgumentException was expected for a negative value");
+    }
+}
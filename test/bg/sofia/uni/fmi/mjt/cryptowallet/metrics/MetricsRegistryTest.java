@@ -0,0 +1,51 @@
+package bg.sofia.uni.fmi.mjt.cryptowallet.metrics;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+public class MetricsRegistryTest {
+
+    @Test
+    public void testMetricsAreCreatedOnce() {
+        MetricsRegistry metrics = new MetricsRegistry();
+
+        assertSame(metrics.counter("requests"), metrics.counter("requests"),
+                "The same counter was expected for the same name");
+        assertSame(metrics.histogram("latency"), metrics.histogram("latency"),
+                "The same histogram was expected for the same name");
+    }
+
+    @Test
+    public void testReportIsSortedByName() {
+        MetricsRegistry metrics = new MetricsRegistry();
+        metrics.counter("b.counter").add(3);
+        metrics.gauge("a.gauge", () -> 7);
+        metrics.histogram("c.latency").record(2_000);
+
+        assertEquals("a.gauge=7 b.counter=3 c.latency:count=1,p50=2us,p90=2us,p99=2us,p99.9=2us,max=2us",
+                metrics.report(" ").toString(), "The metrics were expected sorted by name");
+    }
+
+    @Test
+    public void testDumpWritesOneMetricPerLine() throws IOException {
+        MetricsRegistry metrics = new MetricsRegistry();
+        metrics.counter("requests").increment();
+        metrics.gauge("connections", () -> 2);
+        Path file = Files.createTempFile("metrics", ".txt");
+        try {
+            metrics.dump(file);
+
+            assertEquals(List.of("connections=2", "requests=1"), Files.readAllLines(file),
+                    "Every metric was expected on its own line");
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+}
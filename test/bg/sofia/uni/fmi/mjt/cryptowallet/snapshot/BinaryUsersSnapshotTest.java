@@ -0,0 +1,112 @@
+package bg.sofia.uni.fmi.mjt.cryptowallet.snapshot;
+
+import bg.sofia.uni.fmi.mjt.cryptowallet.coinapi.dto.CryptoInformation;
+import bg.sofia.uni.fmi.mjt.cryptowallet.exception.InsufficientAvailabilityException;
+import bg.sofia.uni.fmi.mjt.cryptowallet.exception.InvalidSellingException;
+import bg.sofia.uni.fmi.mjt.cryptowallet.user.User;
+import bg.sofia.uni.fmi.mjt.cryptowallet.user.UserRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class BinaryUsersSnapshotTest {
+
+    private Path directory;
+    private User first;
+    private User second;
+
+    @BeforeEach
+    public void setUp() throws IOException, InsufficientAvailabilityException, InvalidSellingException {
+        directory = Files.createTempDirectory("users-snapshot");
+        CryptoInformation btc = new CryptoInformation("BTC", "Bitcoin", 1, 20000.0);
+        CryptoInformation eth = new CryptoInformation("ETH", "Ethereum", 1, 1000.0);
+
+        first = new User("niki", "77777");
+        first.depositMoney(5000.0);
+        first.buyCrypto(btc, 2000.0);
+        first.buyCrypto(eth, 500.0);
+        first.sellCrypto(new CryptoInformation("ETH", "Ethereum", 1, 1500.0));
+        first.setJournalSequence(42);
+
+        second = new User("ivan", "123456");
+        second.depositMoney(100.0);
+        second.buyCrypto(btc, 100.0);
+    }
+
+    @AfterEach
+    public void tearDown() throws IOException {
+        try (var files = Files.list(directory)) {
+            for (var file : files.toList()) {
+                Files.delete(file);
+            }
+        }
+        Files.delete(directory);
+    }
+
+    @Test
+    public void testRoundTripKeepsUsers() throws IOException {
+        List<User> users = BinaryUsersSnapshot.decode(ByteBuffer.wrap(BinaryUsersSnapshot.encode(List.of(first,
+                second))));
+
+        assertEquals(2, users.size(), "Two users were expected after decoding");
+        User decoded = users.get(0);
+        assertEquals("niki", decoded.getUsername(), "The username was expected to be kept");
+        assertArrayEquals(first.getPasswordBytes(), decoded.getPasswordBytes(), "The password was expected to be kept");
+        assertEquals(first.getMoney(), decoded.getMoney(), "The money were expected to be kept");
+        assertEquals(42, decoded.getJournalSequence(), "The journal sequence was expected to be kept");
+        assertEquals(first.getBoughtCryptocurrencies(), decoded.getBoughtCryptocurrencies(),
+                "The bought cryptocurrencies were expected to be kept");
+        assertEquals(first.getSoldCryptocurrencies(), decoded.getSoldCryptocurrencies(),
+                "The sold cryptocurrencies were expected to be kept");
+    }
+
+    @Test
+    public void testDecodedUsersShareCryptoInformation() throws IOException {
+        List<User> users = BinaryUsersSnapshot.decode(ByteBuffer.wrap(BinaryUsersSnapshot.encode(List.of(first,
+                second))));
+
+        CryptoInformation firstBtc = users.get(0).getBoughtCryptocurrencies().stream()
+                .filter(bought -> bought.boughtCrypto().assetID().equals("BTC"))
+                .findFirst().orElseThrow().boughtCrypto();
+        CryptoInformation secondBtc = users.get(1).getBoughtCryptocurrencies().iterator().next().boughtCrypto();
+        assertSame(firstBtc, secondBtc, "Equal cryptocurrencies were expected to be stored once");
+    }
+
+    @Test
+    public void testReadConvertedJsonFile() throws IOException {
+        Path jsonFile = directory.resolve("UsersInformation.txt");
+        Path binaryFile = directory.resolve("UsersInformation.bin");
+        Files.writeString(jsonFile, "[{\"username\":\"niki\",\"passwordBytes\":[55,55],\"money\":10.5,"
+                + "\"boughtCryptocurrencies\":[{\"boughtCrypto\":{\"asset_id\":\"BTC\",\"name\":\"Bitcoin\","
+                + "\"price_usd\":20000.0},\"buyingPrice\":100.0,\"buyingCount\":0.005}],"
+                + "\"soldCryptocurrencies\":[]}]");
+
+        UsersSnapshotConverter.convert(jsonFile, binaryFile);
+        List<User> users = BinaryUsersSnapshot.read(binaryFile);
+
+        assertEquals(1, users.size(), "One user was expected after the conversion");
+        assertEquals(10.5, users.get(0).getMoney(), "The money were expected to be converted");
+        assertNotNull(new UserRegistry(users).login("niki", "77"), "The converted user was expected to log in with the same password");
+        assertTrue(users.get(0).getBoughtCryptocurrencies().iterator().next().boughtCrypto().assetID().equals("BTC"),
+                "The bought cryptocurrency was expected to be converted");
+    }
+
+    @Test
+    public void testDecodeRejectsUnknownFormat() {
+        assertThrows(IOException.class, () -> BinaryUsersSnapshot.decode(ByteBuffer.wrap(new byte[] {1, 2, 3, 4})),
+                "An IOException was expected for data which is not a users snapshot");
+    }
+}
@@ -0,0 +1,119 @@
+package bg.sofia.uni.fmi.mjt.cryptowallet.snapshot;
+
+import bg.sofia.uni.fmi.mjt.cryptowallet.coinapi.dto.CryptoInformation;
+import bg.sofia.uni.fmi.mjt.cryptowallet.exception.InsufficientAvailabilityException;
+import bg.sofia.uni.fmi.mjt.cryptowallet.exception.InvalidSellingException;
+import bg.sofia.uni.fmi.mjt.cryptowallet.user.User;
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class JsonUsersSnapshotTest {
+
+    private Path directory;
+    private User first;
+    private User second;
+
+    @BeforeEach
+    public void setUp() throws IOException, InsufficientAvailabilityException, InvalidSellingException {
+        directory = Files.createTempDirectory("users-json");
+        CryptoInformation btc = new CryptoInformation("BTC", "Bitcoin", 1, 20000.0);
+        CryptoInformation eth = new CryptoInformation("ETH", "Ethereum", 1, 1000.0);
+
+        first = new User("niki", "77777");
+        first.depositMoney(5000.0);
+        first.buyCrypto(btc, 2000.0);
+        first.buyCrypto(eth, 500.0);
+        first.sellCrypto(new CryptoInformation("ETH", "Ethereum", 1, 1500.0));
+        first.setJournalSequence(42);
+
+        second = new User("ivan=<&>", "123456");
+        second.depositMoney(100.0);
+        second.buyCrypto(btc, 100.0);
+    }
+
+    @AfterEach
+    public void tearDown() throws IOException {
+        try (var files = Files.list(directory)) {
+            for (var file : files.toList()) {
+                Files.delete(file);
+            }
+        }
+        Files.delete(directory);
+    }
+
+    private void assertSameWallet(User expected, User actual) {
+        assertEquals(expected.getUsername(), actual.getUsername(), "The username should be kept");
+        assertArrayEquals(expected.getPasswordBytes(), actual.getPasswordBytes(), "The password should be kept");
+        assertEquals(expected.getMoney(), actual.getMoney(), "The money should be kept");
+        assertEquals(expected.getJournalSequence(), actual.getJournalSequence(), "The sequence should be kept");
+        assertEquals(expected.getWalletSummary().toString(), actual.getWalletSummary().toString(),
+                "The investments should be kept");
+    }
+
+    @Test
+    public void testEncodeWritesWhatGsonWrites() {
+        Gson gson = new GsonBuilder().excludeFieldsWithoutExposeAnnotation().create();
+        List<User> users = List.of(first, second);
+
+        assertEquals(gson.toJson(users), new String(JsonUsersSnapshot.encode(users), StandardCharsets.UTF_8),
+                "The users file should not change");
+    }
+
+    @Test
+    public void testReadsWhatGsonWrites() throws IOException {
+        Gson gson = new GsonBuilder().excludeFieldsWithoutExposeAnnotation().create();
+
+        List<User> users = JsonUsersSnapshot.read(new StringReader(gson.toJson(List.of(first, second))));
+        assertEquals(2, users.size(), "Both users should be read");
+        assertSameWallet(first, users.get(0));
+        assertSameWallet(second, users.get(1));
+        assertEquals(first.getSoldCryptocurrencies().iterator().next().profit(),
+                users.get(0).getSoldCryptocurrencies().iterator().next().profit(),
+                "The finished investments should be kept");
+    }
+
+    @Test
+    public void testFileRoundTrip() throws IOException {
+        Path file = directory.resolve("UsersInformation.txt");
+        JsonUsersSnapshot.write(file, List.of(first, second));
+
+        List<User> users = JsonUsersSnapshot.read(file);
+        assertEquals(2, users.size(), "Both users should be read");
+        assertSameWallet(first, users.get(0));
+        assertSameWallet(second, users.get(1));
+    }
+
+    @Test
+    public void testReadPassesEveryUserToTheConsumer() throws IOException {
+        Path file = directory.resolve("UsersInformation.txt");
+        JsonUsersSnapshot.write(file, () -> List.of(first, second).iterator());
+
+        List<User> users = new ArrayList<>();
+        JsonUsersSnapshot.read(file, users::add);
+        assertEquals(2, users.size(), "Both users should be passed to the consumer");
+        assertSameWallet(first, users.get(0));
+        assertSameWallet(second, users.get(1));
+    }
+
+    @Test
+    public void testReadEmptyFile() throws IOException {
+        Path file = Files.createFile(directory.resolve("UsersInformation.txt"));
+
+        assertTrue(JsonUsersSnapshot.read(file).isEmpty(), "An empty file should have no users");
+    }
+}
@@ -0,0 +1,144 @@
+package bg.sofia.uni.fmi.mjt.cryptowallet.storage;
+
+import bg.sofia.uni.fmi.mjt.cryptowallet.user.User;
+import bg.sofia.uni.fmi.mjt.cryptowallet.user.UserLocks;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.locks.Lock;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class CachingUserRegistryTest {
+
+    private static final long MEMTABLE_LIMIT_BYTES = 1024 * 1024;
+
+    private Path directory;
+    private LsmUserRepository repository;
+    private UserLocks userLocks;
+
+    @BeforeEach
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("caching-registry");
+        repository = new LsmUserRepository(directory, MEMTABLE_LIMIT_BYTES);
+        userLocks = new UserLocks(4);
+        for (var username : new String[] {"niki", "ivan", "maria"}) {
+            repository.save(new User(username, "77777"));
+        }
+    }
+
+    @AfterEach
+    public void tearDown() throws IOException {
+        repository.close();
+        try (Stream<Path> files = Files.walk(directory)) {
+            for (var file : files.sorted(Comparator.reverseOrder()).toList()) {
+                Files.delete(file);
+            }
+        }
+    }
+
+    @Test
+    public void testLoginReadsTheUserOnlyOnce() {
+        CachingUserRegistry registry = new CachingUserRegistry(repository, userLocks, 2);
+        assertEquals(0, registry.size(), "No user should be read before a login");
+
+        User user = registry.login("niki", "77777");
+        registry.release(user);
+        assertSame(user, registry.login("niki", "77777"), "The cached user was expected on the second login");
+        assertEquals(1, registry.getMisses(), "Only the first login should read the user");
+        assertEquals(1, registry.getHits(), "The second login should find the cached user");
+    }
+
+    @Test
+    public void testLoginWithWrongPassword() {
+        CachingUserRegistry registry = new CachingUserRegistry(repository, userLocks, 2);
+
+        assertNull(registry.login("niki", "123456"), "Null was expected for a wrong password");
+        assertNull(registry.login("petar", "77777"), "Null was expected for an unknown username");
+    }
+
+    @Test
+    public void testReleasedUsersAreEvictedInLeastRecentlyUsedOrder() {
+        CachingUserRegistry registry = new CachingUserRegistry(repository, userLocks, 2);
+        registry.release(registry.login("niki", "77777"));
+        registry.release(registry.login("ivan", "77777"));
+        registry.release(registry.login("niki", "77777"));
+        registry.release(registry.login("maria", "77777"));
+
+        assertEquals(2, registry.size(), "No more than the maximum users should be cached");
+        assertEquals(1, registry.getEvictions(), "The least recently used user should be evicted");
+        assertTrue(registry.getUsers().stream().noneMatch(user -> user.getUsername().equals("ivan")),
+                "The least recently used user should be evicted");
+    }
+
+    @Test
+    public void testLoggedInUsersAreNotEvicted() {
+        CachingUserRegistry registry = new CachingUserRegistry(repository, userLocks, 1);
+        User niki = registry.login("niki", "77777");
+        User ivan = registry.login("ivan", "77777");
+
+        assertEquals(2, registry.size(), "The logged in users should stay cached over the maximum");
+        assertSame(niki, registry.get("niki"), "The logged in user should not be read again");
+
+        registry.release(niki);
+        registry.release(ivan);
+        assertEquals(1, registry.size(), "A released user should be evicted over the maximum");
+        assertEquals(1, registry.getEvictions(), "One eviction was expected");
+    }
+
+    @Test
+    public void testUserIsNotEvictedWhileLocked() throws InterruptedException {
+        CachingUserRegistry registry = new CachingUserRegistry(repository, userLocks, 0);
+        User user = registry.login("niki", "77777");
+        CountDownLatch locked = new CountDownLatch(1);
+        CountDownLatch released = new CountDownLatch(1);
+        Thread saving = new Thread(() -> {
+            Lock lock = userLocks.lockFor("niki");
+            lock.lock();
+            try {
+                locked.countDown();
+                released.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                lock.unlock();
+            }
+        });
+        saving.start();
+
+        locked.await();
+        registry.release(user);
+        released.countDown();
+        saving.join();
+        assertEquals(1, registry.size(), "A user should not be evicted while its lock is held");
+        assertEquals(0, registry.getEvictions(), "No eviction was expected while the lock is held");
+    }
+
+    @Test
+    public void testRegisterChecksTheStoredUsers() throws IOException {
+        CachingUserRegistry registry = new CachingUserRegistry(repository, userLocks, 0);
+        User user = new User("petar", "123456");
+
+        assertFalse(registry.register(new User("niki", "123456")),
+                "Registration was expected to fail for a stored username");
+        assertTrue(registry.register(user), "Registration was expected to succeed for a new username");
+        assertEquals(1, registry.size(), "The registered user should stay cached until it is released");
+
+        repository.save(user);
+        registry.release(user);
+        assertEquals(0, registry.size(), "The released user should be evicted");
+        assertNotNull(registry.login("petar", "123456"), "The saved user should be read on login");
+    }
+}
@@ -0,0 +1,119 @@
+package bg.sofia.uni.fmi.mjt.cryptowallet.storage;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class LsmKeyValueStoreTest {
+
+    private Path directory;
+
+    @BeforeEach
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("lsm-store");
+    }
+
+    @AfterEach
+    public void tearDown() throws IOException {
+        try (Stream<Path> files = Files.walk(directory)) {
+            for (var file : files.sorted(Comparator.reverseOrder()).toList()) {
+                Files.delete(file);
+            }
+        }
+    }
+
+    private static byte[] bytes(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static String string(byte[] value) {
+        return value == null ? null : new String(value, StandardCharsets.UTF_8);
+    }
+
+    @Test
+    public void testGetReturnsTheNewestValue() throws IOException {
+        try (LsmKeyValueStore store = new LsmKeyValueStore(directory, 1024 * 1024)) {
+            store.put("niki", bytes("first"));
+            store.put("ivan", bytes("other"));
+            store.put("niki", bytes("second"));
+
+            assertEquals("second", string(store.get("niki")), "The newest value should be returned");
+            assertNull(store.get("petar"), "Null was expected for a key which was never put");
+        }
+    }
+
+    @Test
+    public void testLookupsAcrossSegmentsAndCompaction() throws IOException {
+        try (LsmKeyValueStore store = new LsmKeyValueStore(directory, 1024)) {
+            for (int round = 0; round < 5; round++) {
+                for (int i = 0; i < 100; i++) {
+                    store.put("user" + i, bytes("value" + i + "-" + round));
+                }
+            }
+
+            for (int i = 0; i < 100; i++) {
+                assertEquals("value" + i + "-4", string(store.get("user" + i)),
+                        "The value of the last round should be returned for user" + i);
+            }
+            store.awaitFlush();
+            assertTrue(store.getSegmentsCount() < LsmKeyValueStore.COMPACTION_THRESHOLD,
+                    "The segments should be compacted");
+        }
+    }
+
+    @Test
+    public void testReopenKeepsEveryValue() throws IOException {
+        try (LsmKeyValueStore store = new LsmKeyValueStore(directory, 2048)) {
+            for (int i = 0; i < 200; i++) {
+                store.put("user" + i, bytes("value" + i));
+            }
+        }
+
+        try (LsmKeyValueStore reopened = new LsmKeyValueStore(directory, 2048)) {
+            for (int i = 0; i < 200; i++) {
+                assertEquals("value" + i, string(reopened.get("user" + i)), "user" + i + " should be kept");
+            }
+        }
+    }
+
+    @Test
+    public void testReopenReplaysTheLogOfAStoreWhichWasNotClosed() throws IOException {
+        LsmKeyValueStore crashed = new LsmKeyValueStore(directory, 1024 * 1024);
+        crashed.put("niki", bytes("logged"));
+        crashed.sync();
+
+        try (LsmKeyValueStore reopened = new LsmKeyValueStore(directory, 1024 * 1024)) {
+            assertEquals("logged", string(reopened.get("niki")), "The logged put should be replayed");
+        }
+    }
+
+    @Test
+    public void testForEachVisitsTheNewestValuesInKeyOrder() throws IOException {
+        try (LsmKeyValueStore store = new LsmKeyValueStore(directory, 256)) {
+            for (int i = 9; i >= 0; i--) {
+                store.put("key" + i, bytes("old"));
+            }
+            store.put("key3", bytes("new"));
+
+            List<String> visited = new ArrayList<>();
+            store.forEach((key, value) -> visited.add(key + "=" + string(value)));
+
+            assertEquals(10, visited.size(), "Every key should be visited once");
+            assertEquals("key0=old", visited.get(0), "The keys should be visited in order");
+            assertEquals("key3=new", visited.get(3), "The newest value should be visited");
+        }
+    }
+}
@@ -0,0 +1,136 @@
+package bg.sofia.uni.fmi.mjt.cryptowallet.storage;
+
+import bg.sofia.uni.fmi.mjt.cryptowallet.user.User;
+import bg.sofia.uni.fmi.mjt.cryptowallet.user.UserLocks;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class ShardedUserStoreTest {
+
+    private Path directory;
+    private UserLocks locks;
+
+    @BeforeEach
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("user-shards");
+        locks = new UserLocks(8);
+    }
+
+    @AfterEach
+    public void tearDown() throws IOException {
+        try (Stream<Path> files = Files.walk(directory)) {
+            for (var file : files.sorted(Comparator.reverseOrder()).toList()) {
+                Files.delete(file);
+            }
+        }
+    }
+
+    private List<User> createUsers(int count) {
+        List<User> users = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            User user = new User("user" + i, "password" + i);
+            user.depositMoney(i + 1);
+            users.add(user);
+        }
+        return users;
+    }
+
+    private long countShardFiles() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.count();
+        }
+    }
+
+    @Test
+    public void testInvalidShardsCount() {
+        assertThrows(IllegalArgumentException.class, () -> new ShardedUserStore(directory, 0, locks),
+                "IllegalArgumentException was expected for zero shards");
+    }
+
+    @Test
+    public void testFlushWritesOnlyDirtyShards() throws IOException {
+        ShardedUserStore store = new ShardedUserStore(directory, 16, locks);
+        List<User> users = createUsers(100);
+        for (var user : users) {
+            store.save(user);
+        }
+
+        assertEquals(16, store.flushDirtyShards(), "Every shard with a new user should be written");
+        assertEquals(0, store.getDirtyShardsCount(), "No shard should be dirty after a flush");
+
+        users.get(7).depositMoney(10);
+        store.save(users.get(7));
+        assertEquals(1, store.flushDirtyShards(), "Only the shard of the changed user should be written");
+        assertEquals(0, store.flushDirtyShards(), "Nothing should be written without changes");
+    }
+
+    @Test
+    public void testLoadReadsTheFlushedUsers() throws IOException {
+        ShardedUserStore store = new ShardedUserStore(directory, 4, locks);
+        for (var user : createUsers(20)) {
+            store.save(user);
+        }
+        store.close();
+
+        List<User> loaded = new ShardedUserStore(directory, 4, locks).loadAll();
+
+        assertEquals(20, loaded.size(), "Every flushed user should be loaded");
+        User user = loaded.stream().filter(u -> u.getUsername().equals("user5")).findFirst().orElseThrow();
+        assertEquals(6, user.getMoney(), "The money of the user should be kept");
+    }
+
+    @Test
+    public void testLoadMovesUsersAfterChangingTheShardsCount() throws IOException {
+        ShardedUserStore store = new ShardedUserStore(directory, 8, locks);
+        for (var user : createUsers(50)) {
+            store.save(user);
+        }
+        store.close();
+
+        ShardedUserStore resized = new ShardedUserStore(directory, 2, locks);
+        assertEquals(50, resized.loadAll().size(), "Every user should be loaded from the old shards");
+        assertTrue(resized.getDirtyShardsCount() > 0, "The moved users should make their shards dirty");
+        resized.close();
+
+        assertEquals(2, countShardFiles(), "The files of the removed shards should be deleted");
+        assertEquals(50, new ShardedUserStore(directory, 2, locks).loadAll().size(),
+                "Every user should be in the new shards");
+    }
+
+    @Test
+    public void testFindAndSaveWithoutLoadKeepTheStoredUsers() throws IOException {
+        ShardedUserStore store = new ShardedUserStore(directory, 1, locks);
+        for (var user : createUsers(10)) {
+            store.save(user);
+        }
+        store.close();
+
+        ShardedUserStore reopened = new ShardedUserStore(directory, 1, locks);
+        User stored = reopened.find("user3");
+        assertNotNull(stored, "A stored user should be found without loading the store");
+        assertEquals(4, stored.getMoney(), "The money of the stored user should be kept");
+        reopened.save(new User("newcomer", "password"));
+        reopened.close();
+
+        ShardedUserStore registering = new ShardedUserStore(directory, 1, locks);
+        registering.save(new User("latecomer", "password"));
+        registering.close();
+
+        assertEquals(12, new ShardedUserStore(directory, 1, locks).loadAll().size(),
+                "Rewriting a shard should keep its stored users");
+    }
+}
@@ -0,0 +1,88 @@
+package bg.sofia.uni.fmi.mjt.cryptowallet.storage;
+
+import bg.sofia.uni.fmi.mjt.cryptowallet.coinapi.dto.CryptoInformation;
+import bg.sofia.uni.fmi.mjt.cryptowallet.exception.InsufficientAvailabilityException;
+import bg.sofia.uni.fmi.mjt.cryptowallet.user.User;
+import bg.sofia.uni.fmi.mjt.cryptowallet.user.UserLocks;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+public class UserRepositoryTest {
+
+    private Path directory;
+    private User user;
+
+    @BeforeEach
+    public void setUp() throws IOException, InsufficientAvailabilityException {
+        directory = Files.createTempDirectory("user-repository");
+        user = new User("niki", "77777");
+        user.depositMoney(1500);
+        user.buyCrypto(new CryptoInformation("BTC", "Bitcoin", 1, 20000), 1000);
+    }
+
+    @AfterEach
+    public void tearDown() throws IOException {
+        try (Stream<Path> files = Files.walk(directory)) {
+            for (var file : files.sorted(Comparator.reverseOrder()).toList()) {
+                Files.delete(file);
+            }
+        }
+    }
+
+    private void assertSameWallet(User expected, User actual) {
+        assertEquals(expected.getUsername(), actual.getUsername(), "The username should be kept");
+        assertEquals(expected.getMoney(), actual.getMoney(), "The money should be kept");
+        assertEquals(expected.getWalletSummary().toString(), actual.getWalletSummary().toString(),
+                "The investments should be kept");
+    }
+
+    @Test
+    public void testJsonFileRepositoryWritesOnFlush() throws IOException {
+        Path file = directory.resolve("UsersInformation.txt");
+        JsonFileUserRepository repository = new JsonFileUserRepository(file, new UserLocks(1));
+        repository.save(user);
+        repository.flush();
+
+        JsonFileUserRepository reopened = new JsonFileUserRepository(file, new UserLocks(1));
+        assertEquals(1, reopened.loadAll().size(), "The flushed user should be read");
+        assertSameWallet(user, reopened.find("niki"));
+        assertNull(reopened.find("ivan"), "Null was expected for a user which was never saved");
+    }
+
+    @Test
+    public void testKeyValueStoreFindsUsersWithoutLoadingAll() throws IOException {
+        try (LsmUserRepository repository = new LsmUserRepository(directory, 1024)) {
+            for (int i = 0; i < 100; i++) {
+                repository.save(new User("user" + i, "password"));
+            }
+            repository.save(user);
+        }
+
+        try (LsmUserRepository reopened = new LsmUserRepository(directory, 1024)) {
+            assertSameWallet(user, reopened.find("niki"));
+            assertNull(reopened.find("ivan"), "Null was expected for a user which was never saved");
+            assertEquals(101, reopened.loadAll().size(), "Every saved user should be loaded");
+        }
+    }
+
+    @Test
+    public void testKeyValueStoreKeepsTheLastSave() throws IOException {
+        try (LsmUserRepository repository = new LsmUserRepository(directory, 1024 * 1024)) {
+            repository.save(user);
+            user.depositMoney(500);
+            repository.save(user);
+
+            assertEquals(1000, repository.find("niki").getMoney(), "The last saved state should be found");
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package bg.sofia.uni.fmi.mjt.cryptowallet.user;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class UserLocksTest {
+
+    @Test
+    public void testStripesCountIsRoundedUpToPowerOfTwo() {
+        assertEquals(64, new UserLocks(50).stripesCount(), "The stripes count should be rounded up");
+        assertEquals(16, new UserLocks(16).stripesCount(), "A power of two should be kept");
+    }
+
+    @Test
+    public void testInvalidStripesCount() {
+        assertThrows(IllegalArgumentException.class, () -> new UserLocks(0),
+                "IllegalArgumentException was expected for zero stripes");
+    }
+
+    @Test
+    public void testSameUserGetsSameLock() {
+        UserLocks locks = new UserLocks(8);
+
+        assertSame(locks.lockFor("niki"), locks.lockFor(new String("niki")),
+                "Every session of a user should get the same lock");
+    }
+
+    @Test
+    public void testConcurrentDepositsToOneUserAreNotLost() throws InterruptedException {
+        UserLocks locks = new UserLocks(8);
+        User user = new User("niki", "77777");
+        int threadsCount = 8;
+        int depositsCount = 1000;
+
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < threadsCount; i++) {
+            threads.add(Thread.ofPlatform().start(() -> {
+                for (int j = 0; j < depositsCount; j++) {
+                    Lock lock = locks.lockFor(user.getUsername());
+                    lock.lock();
+                    try {
+                        user.depositMoney(1);
+                    } finally {
+                        lock.unlock();
+                    }
+                }
+            }));
+        }
+        for (var thread : threads) {
+            thread.join();
+        }
+
+        assertEquals(threadsCount * depositsCount, user.getMoney(), "No deposit should be lost");
+    }
+
+    @Test
+    public void testCopyEachWaitsOnlyForTheStripeOfTheUser() throws InterruptedException {
+        UserLocks locks = new UserLocks(4);
+        User niki = new User("niki", "77777");
+        niki.depositMoney(100);
+        CountDownLatch copied = new CountDownLatch(1);
+        List<User> copies = new ArrayList<>();
+
+        Lock lock = locks.lockFor("niki");
+        lock.lock();
+        try {
+            Thread.ofPlatform().start(() -> {
+                copies.addAll(locks.copyEach(List.of(niki)));
+                copied.countDown();
+            });
+            assertFalse(copied.await(100, TimeUnit.MILLISECONDS), "The copy should wait for the user's stripe");
+            niki.depositMoney(50);
+        } finally {
+            lock.unlock();
+        }
+
+        assertTrue(copied.await(5, TimeUnit.SECONDS), "The copy should be taken after the stripe is released");
+        niki.depositMoney(25);
+        assertEquals(150, copies.get(0).getMoney(), "The copy should keep the wallet it saw under the lock");
+    }
+}
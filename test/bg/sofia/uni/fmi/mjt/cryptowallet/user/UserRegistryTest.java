@@ -0,0 +1,52 @@
+package bg.sofia.uni.fmi.mjt.cryptowallet.user;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class UserRegistryTest {
+
+    private UserRegistry registry;
+    private User user;
+
+    @BeforeEach
+    public void setUp() {
+        registry = new UserRegistry();
+        user = new User("niki", "77777");
+        registry.register(user);
+    }
+
+    @Test
+    public void testRegisterNewUsername() {
+        assertTrue(registry.register(new User("ivan", "123456")),
+                "Registration was expected to succeed for a new username");
+        assertEquals(2, registry.size(), "Two registered users were expected");
+    }
+
+    @Test
+    public void testRegisterExistingUsername() {
+        assertFalse(registry.register(new User("niki", "123456")),
+                "Registration was expected to fail for an existing username");
+        assertSame(user, registry.get("niki"), "The first registered user was expected to be kept");
+    }
+
+    @Test
+    public void testLoginSuccessfully() {
+        assertSame(user, registry.login("niki", "77777"), "The registered user was expected after login");
+    }
+
+    @Test
+    public void testLoginWrongPassword() {
+        assertNull(registry.login("niki", "7777"), "No user was expected when the password is wrong");
+    }
+
+    @Test
+    public void testLoginUnknownUsername() {
+        assertNull(registry.login("ivan", "77777"), "No user was expected when the username is unknown");
+    }
+}
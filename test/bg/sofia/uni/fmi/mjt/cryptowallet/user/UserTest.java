@@ -4,15 +4,19 @@ import bg.sofia.uni.fmi.mjt.cryptowallet.coinapi.dto.CryptoInformation;
 import bg.sofia.uni.fmi.mjt.cryptowallet.coinapi.dto.Cryptocurrencies;
 import bg.sofia.uni.fmi.mjt.cryptowallet.exception.InsufficientAvailabilityException;
 import bg.sofia.uni.fmi.mjt.cryptowallet.exception.InvalidSellingException;
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertIterableEquals;
 import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 public class UserTest {
 
@@ -71,6 +75,21 @@ public class UserTest {
                 "InsufficientAvailabilityException was expected when you don't have enough money");
     }
 
+    @Test
+    public void testChecksDoNotChangeTheWallet() throws InsufficientAvailabilityException {
+        CryptoInformation info = new CryptoInformation("BTC", "Bitcoin",1,20525.4561);
+        user.depositMoney(500);
+
+        user.checkDeposit(100);
+        user.checkBuy(info, 500);
+        assertThrows(InsufficientAvailabilityException.class, () -> user.checkBuy(info, 1000),
+                "InsufficientAvailabilityException was expected when you don't have enough money");
+        assertThrows(InvalidSellingException.class, () -> user.checkSell(info),
+                "InvalidSellingException was expected when selling cryptocurrency which is not bought");
+        assertEquals(500, user.getMoney(), "The checks were expected to leave the money unchanged");
+        assertTrue(user.getBoughtCryptocurrencies().isEmpty(), "The checks were expected not to buy anything");
+    }
+
     @Test
     public void testBuyCryptoNegativeInvestedMoney() {
         CryptoInformation info = new CryptoInformation("BTC", "Bitcoin",1,20525.4561);
@@ -219,4 +238,101 @@ public class UserTest {
         assertEquals(builder.toString(), user.getWalletOverall(crypto).toString(),
                 "Invalid overall wallet summary was returned");
     }
+
+    private static Cryptocurrencies snapshotOf(CryptoInformation... infos) {
+        return Cryptocurrencies.of(Set.of(infos), "2023-02-14 16:00:00");
+    }
+
+    @Test
+    public void testGetWalletOverallFollowsThePriceSnapshot() throws InsufficientAvailabilityException {
+        user.depositMoney(1500);
+        user.buyCrypto(new CryptoInformation("BTC", "Bitcoin", 1, 20000), 1000);
+        user.buyCrypto(new CryptoInformation("ETH", "Ethereum", 1, 1000), 200);
+
+        Cryptocurrencies higher = snapshotOf(new CryptoInformation("BTC", "Bitcoin", 1, 30000),
+                new CryptoInformation("ETH", "Ethereum", 1, 500));
+        assertTrue(user.getWalletOverall(higher).toString().endsWith("overallProfit:400.0  "),
+                "The overall profit should be valued at the prices of the given snapshot");
+
+        Cryptocurrencies withoutEth = snapshotOf(new CryptoInformation("BTC", "Bitcoin", 1, 20000));
+        assertTrue(user.getWalletOverall(withoutEth).toString().endsWith("overallProfit:0.0  "),
+                "Assets missing from the snapshot should not count towards the overall profit");
+    }
+
+    @Test
+    public void testSellCryptoAfterRepeatedBuys() throws InsufficientAvailabilityException, InvalidSellingException {
+        CryptoInformation info = new CryptoInformation("BTC", "Bitcoin", 1, 20000);
+        user.depositMoney(1500);
+        user.buyCrypto(info, 100);
+        user.buyCrypto(info, 100);
+
+        user.sellCrypto(new CryptoInformation("BTC", "Bitcoin", 1, 30000));
+
+        assertEquals(1600, user.getMoney(), 1e-9, "The whole position should be sold at the current price");
+        assertTrue(user.getWalletOverall(snapshotOf(info)).toString().endsWith("overallProfit:100.0  "),
+                "The realized profit should be part of the overall profit");
+    }
+
+    @Test
+    public void testGetWalletOverallAfterAnotherSale() throws InsufficientAvailabilityException,
+            InvalidSellingException {
+        CryptoInformation btc = new CryptoInformation("BTC", "Bitcoin", 1, 20000);
+        CryptoInformation eth = new CryptoInformation("ETH", "Ethereum", 1, 1000);
+        user.depositMoney(1500);
+        user.buyCrypto(btc, 100);
+        user.sellCrypto(btc);
+        assertTrue(user.getWalletOverall(snapshotOf(btc, eth)).toString().contains("ID:BTC"),
+                "The first sale should be a finished investment");
+
+        user.buyCrypto(eth, 100);
+        user.sellCrypto(eth);
+        String overall = user.getWalletOverall(snapshotOf(btc, eth)).toString();
+        assertTrue(overall.contains("ID:BTC") && overall.contains("ID:ETH"),
+                "The finished investments should be rendered again after another sale");
+    }
+
+    @Test
+    public void testGetWalletOverallOfRestoredUser() {
+        CryptoInformation btc = new CryptoInformation("BTC", "Bitcoin", 1, 20000);
+        CryptoInformation eth = new CryptoInformation("ETH", "Ethereum", 1, 1000);
+        Set<BoughtCryptocurrency> bought = new HashSet<>(Set.of(new BoughtCryptocurrency(btc, 1000, 0.05)));
+        Set<SoldCryptocurrency> sold = new HashSet<>(Set.of(new SoldCryptocurrency(eth, 300, 100)));
+        User restored = User.restore("niki", "77777".getBytes(), 0, bought, sold, 0);
+
+        Cryptocurrencies snapshot = snapshotOf(new CryptoInformation("BTC", "Bitcoin", 1, 40000), eth);
+        assertTrue(restored.getWalletOverall(snapshot).toString().endsWith("overallProfit:1100.0  "),
+                "The aggregates of a restored user should be built from its investments");
+    }
+
+    @Test
+    public void testBuyCryptoRepeatedlyKeepsOnePositionPerAsset() throws InsufficientAvailabilityException {
+        CryptoInformation info = new CryptoInformation("BTC", "Bitcoin", 1, 20000);
+        user.depositMoney(1500);
+        user.buyCrypto(info, 100);
+        user.buyCrypto(info, 100);
+        user.buyCrypto(info, 100);
+
+        assertEquals(3, user.getBoughtCryptocurrencies().size(), "Every bought lot should be kept");
+        assertEquals("Money: 1200.0 ActiveInvestments:  ID:BTC Name:Bitcoin boughtPrice:300.0 boughtCount:0.015  ",
+                user.getWalletSummary().toString(), "The lots of one asset should be summed into one position");
+    }
+
+    @Test
+    public void testGsonKeepsTheBoughtLots() throws InsufficientAvailabilityException {
+        CryptoInformation btc = new CryptoInformation("BTC", "Bitcoin", 1, 20000);
+        CryptoInformation eth = new CryptoInformation("ETH", "Ethereum", 1, 1000);
+        user.depositMoney(1500);
+        user.buyCrypto(btc, 100);
+        user.buyCrypto(eth, 200);
+        user.buyCrypto(btc, 100);
+
+        Gson gson = new GsonBuilder().excludeFieldsWithoutExposeAnnotation().create();
+        String json = gson.toJson(List.of(user));
+        User read = gson.fromJson(json, User[].class)[0];
+
+        assertTrue(json.contains("\"boughtCryptocurrencies\":[{"), "The lots should be written as a flat array");
+        assertEquals(3, read.getBoughtCryptocurrencies().size(), "Every bought lot should be read back");
+        assertEquals(user.getWalletSummary().toString(), read.getWalletSummary().toString(),
+                "The read user should have the same wallet summary");
+    }
 }